@@ -0,0 +1,120 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the public entry points of {@link MarchingSquares} over whole fields and many isovalues.
+ * <br><br>
+ * The full parameter space is large: narrow it down with {@code -p size=1024 -p isovalues=100}, and run with {@code -prof gc}
+ * for allocation rates.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx8g", "--add-modules", "jdk.incubator.vector" } )
+public class PipelineBenchmark
+{
+    @Param( { "256", "1024", "4096", "8192" } )
+    public int size;
+
+    @Param( { "BUMPS", "NOISE", "CHECKERBOARD" } )
+    public SyntheticFields.Shape shape;
+
+    @Param( { "1", "10", "100", "500" } )
+    public int isovalues;
+
+    protected DoubleScalarField field;
+    protected FloatScalarField floatField;
+    protected MinMaxIndex index;
+    protected double[] levels;
+
+    @Setup( Level.Trial )
+    public void setUp( )
+    {
+        field = DoubleScalarField.regular( SyntheticFields.values( shape, size, 17L ), size, size, 0.0, 0.0, 1.0, 1.0 );
+        float[] floats = new float[size * size];
+        for ( int i = 0; i < floats.length; i++ )
+        {
+            floats[i] = (float) field.getValues( )[i];
+        }
+        floatField = FloatScalarField.regular( floats, size, size, 0.0, 0.0, 1.0, 1.0 );
+        index = new MinMaxIndex( field );
+        levels = SyntheticFields.isovalues( isovalues );
+    }
+
+    @Benchmark
+    public IsolineMap<Point> computeIsoLines( )
+    {
+        return MarchingSquares.computeIsoLines( field, levels );
+    }
+
+    @Benchmark
+    public IsolineMap<Point> parallelComputeIsoLines( )
+    {
+        return MarchingSquares.parallelComputeIsoLines( field, levels );
+    }
+
+    @Benchmark
+    public IsolineMap<Point> bandedComputeIsoLines( )
+    {
+        return MarchingSquares.bandedComputeIsoLines( field, levels );
+    }
+
+    @Benchmark
+    public IsolineMap<Point> indexedComputeIsoLines( )
+    {
+        return MarchingSquares.computeIsoLines( field, index, levels );
+    }
+
+    @Benchmark
+    public IsolineMap<Point> singlePassComputeIsoLines( )
+    {
+        return MarchingSquares.singlePassComputeIsoLines( field, levels );
+    }
+
+    @Benchmark
+    public PackedIsolineMap packedComputeIsoLines( )
+    {
+        return MarchingSquares.packedComputeIsoLines( field, levels, false );
+    }
+
+    @Benchmark
+    public PackedIsolineMap floatPackedComputeIsoLines( )
+    {
+        return MarchingSquares.packedComputeIsoLines( floatField, levels, true );
+    }
+
+    @Benchmark
+    public PackedIsolineMap singlePassPackedComputeIsoLines( )
+    {
+        return MarchingSquares.singlePassPackedComputeIsoLines( field, levels, false );
+    }
+
+    @Benchmark
+    public ContourStatistics computeStatistics( )
+    {
+        return MarchingSquares.computeStatistics( field, levels );
+    }
+
+    @Benchmark
+    public List<IsobandCollection> computeIsoBands( )
+    {
+        return MarchingSquares.computeIsoBands( field, levels );
+    }
+}
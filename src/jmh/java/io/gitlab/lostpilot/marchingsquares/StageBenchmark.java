@@ -0,0 +1,74 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of each stage of {@link MarchingSquares} for a single isovalue. Every stage leaves the engine as the next stage expects it,
+ * so the engine is run through all stages once per trial, and each benchmark then repeats its own stage alone.
+ * <br><br>
+ * Run with {@code -prof gc} for the allocation rate of each stage.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx8g", "--add-modules", "jdk.incubator.vector" } )
+public class StageBenchmark
+{
+    @Param( { "256", "1024", "4096", "8192" } )
+    public int size;
+
+    @Param( { "BUMPS", "NOISE", "CHECKERBOARD" } )
+    public SyntheticFields.Shape shape;
+
+    protected double[] z;
+    protected MarchingSquares marchingSquares;
+
+    @Setup( Level.Trial )
+    public void setUp( )
+    {
+        z = SyntheticFields.values( shape, size, 17L );
+        marchingSquares = new MarchingSquares( DoubleScalarField.regular( z, size, size, 0.0, 0.0, 1.0, 1.0 ), 0.5 );
+        marchingSquares.computeIsoLines( );
+    }
+
+    @Benchmark
+    public Grid gridConstruction( )
+    {
+        return new Grid( SyntheticFields.points( z, size ) );
+    }
+
+    @Benchmark
+    public Point[][] computeInterpolationPoints( )
+    {
+        marchingSquares.computeInterpolationPoints( );
+        return marchingSquares.horizontalEdgePoints;
+    }
+
+    @Benchmark
+    public int[][] computeSegments( )
+    {
+        marchingSquares.computeSegments( );
+        return marchingSquares.binary;
+    }
+
+    @Benchmark
+    public IsolineCollection<Point> computeContours( )
+    {
+        return marchingSquares.computeContours( );
+    }
+}
@@ -0,0 +1,127 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Random;
+
+/**
+ * Square synthetic fields with z values in [0, 1], for benchmarks.
+ */
+public class SyntheticFields
+{
+    public enum Shape
+    {
+        /**
+         * A smooth sum of Gaussian bumps: long isolines, few saddles.
+         */
+        BUMPS,
+
+        /**
+         * Uniform noise: short isolines, many saddles.
+         */
+        NOISE,
+
+        /**
+         * A checkerboard of smooth peaks and pits, slightly perturbed: a saddle every few cells.
+         */
+        CHECKERBOARD
+    }
+
+    /**
+     * @return Row-major z values of an {@code n} x {@code n} field.
+     */
+    public static double[] values( Shape shape, int n, long seed )
+    {
+        Random random = new Random( seed );
+        double[] z = new double[n * n];
+        switch ( shape )
+        {
+            case BUMPS ->
+            {
+                int nBumps = 16;
+                double[] centerRows = new double[nBumps];
+                double[] centerCols = new double[nBumps];
+                double[] widths = new double[nBumps];
+                for ( int i = 0; i < nBumps; i++ )
+                {
+                    centerRows[i] = random.nextDouble( ) * n;
+                    centerCols[i] = random.nextDouble( ) * n;
+                    widths[i] = n * ( 0.05 + 0.1 * random.nextDouble( ) );
+                }
+                for ( int row = 0; row < n; row++ )
+                {
+                    for ( int col = 0; col < n; col++ )
+                    {
+                        double sum = 0.0;
+                        for ( int i = 0; i < nBumps; i++ )
+                        {
+                            double dr = ( row - centerRows[i] ) / widths[i];
+                            double dc = ( col - centerCols[i] ) / widths[i];
+                            sum += Math.exp( -0.5 * ( dr * dr + dc * dc ) );
+                        }
+                        z[row * n + col] = sum;
+                    }
+                }
+                normalize( z );
+            }
+            case NOISE ->
+            {
+                for ( int i = 0; i < z.length; i++ )
+                {
+                    z[i] = random.nextDouble( );
+                }
+            }
+            case CHECKERBOARD ->
+            {
+                for ( int row = 0; row < n; row++ )
+                {
+                    for ( int col = 0; col < n; col++ )
+                    {
+                        double checker = Math.sin( 0.5 * Math.PI * ( row + 0.5 ) ) * Math.sin( 0.5 * Math.PI * ( col + 0.5 ) );
+                        z[row * n + col] = 0.5 + 0.45 * checker + 0.05 * ( random.nextDouble( ) - 0.5 );
+                    }
+                }
+            }
+        }
+        return z;
+    }
+
+    /**
+     * @return {@code count} isovalues evenly spread over (0, 1).
+     */
+    public static double[] isovalues( int count )
+    {
+        double[] isovalues = new double[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            isovalues[i] = ( i + 0.5 ) / count;
+        }
+        return isovalues;
+    }
+
+    public static Point[][] points( double[] z, int n )
+    {
+        Point[][] points = new Point[n][n];
+        for ( int row = 0; row < n; row++ )
+        {
+            for ( int col = 0; col < n; col++ )
+            {
+                points[row][col] = new Point( col, row, z[row * n + col] );
+            }
+        }
+        return points;
+    }
+
+    protected static void normalize( double[] z )
+    {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for ( double value : z )
+        {
+            min = Math.min( min, value );
+            max = Math.max( max, value );
+        }
+        for ( int i = 0; i < z.length; i++ )
+        {
+            z[i] = ( z[i] - min ) / ( max - min );
+        }
+    }
+}
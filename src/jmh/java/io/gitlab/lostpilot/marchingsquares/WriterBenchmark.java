@@ -0,0 +1,103 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization throughput of {@link GeoJsonWriter} and {@link WkbWriter}, without contouring, into a channel that drops
+ * everything. The {@code bytes} counter is the output rate in bytes per second.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx8g", "--add-modules", "jdk.incubator.vector" } )
+public class WriterBenchmark
+{
+    @Param( { "1024" } )
+    public int size;
+
+    @Param( { "BUMPS", "NOISE" } )
+    public SyntheticFields.Shape shape;
+
+    @Param( { "10" } )
+    public int isovalues;
+
+    protected PackedIsolineMap isolines;
+
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.OPERATIONS )
+    public static class Output
+    {
+        public long bytes;
+
+        protected final WritableByteChannel channel = new WritableByteChannel( )
+        {
+            @Override
+            public int write( ByteBuffer src )
+            {
+                int n = src.remaining( );
+                src.position( src.limit( ) );
+                bytes += n;
+                return n;
+            }
+
+            @Override
+            public boolean isOpen( )
+            {
+                return true;
+            }
+
+            @Override
+            public void close( )
+            {
+            }
+        };
+
+        @Setup( Level.Iteration )
+        public void clear( )
+        {
+            bytes = 0;
+        }
+    }
+
+    @Setup( Level.Trial )
+    public void setUp( )
+    {
+        DoubleScalarField field = DoubleScalarField.regular( SyntheticFields.values( shape, size, 17L ), size, size, 0.0, 0.0, 1.0, 1.0 );
+        isolines = MarchingSquares.packedComputeIsoLines( field, SyntheticFields.isovalues( isovalues ), false );
+    }
+
+    @Benchmark
+    public void geoJson( Output output ) throws IOException
+    {
+        GeoJsonWriter writer = new GeoJsonWriter( output.channel );
+        writer.write( isolines );
+        writer.finish( );
+    }
+
+    @Benchmark
+    public void wkb( Output output ) throws IOException
+    {
+        WkbWriter writer = new WkbWriter( output.channel );
+        writer.write( isolines );
+        writer.finish( );
+    }
+}
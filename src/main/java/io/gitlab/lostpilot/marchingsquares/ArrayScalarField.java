@@ -0,0 +1,119 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Base class for scalar fields whose z values are stored in a flat, row-major primitive array and whose
+ * x and y coordinates are given by one axis per dimension: x depends only on the column and y only on the row.
+ * <br><br>
+ * No per-vertex objects are created, so a regular raster costs one array of z values plus two small axis arrays.
+ * Alternatively, the coordinates are given by a {@link GridGeometry}, in which case the field is contoured in index space.
+ */
+public abstract class ArrayScalarField implements ScalarField
+{
+    protected final int rows;
+    protected final int cols;
+
+    protected final double[] xAxis;
+    protected final double[] yAxis;
+
+    // Null unless contoured in index space, in which case the axes are null
+    protected final GridGeometry geometry;
+
+    protected ArrayScalarField( long length, int rows, int cols, double[] xAxis, double[] yAxis )
+    {
+        if ( rows < 2 || cols < 2 )
+        {
+            throw new IllegalArgumentException( "Field must have at least 2 rows and 2 cols: " + rows + " x " + cols );
+        }
+        if ( length != (long) rows * cols )
+        {
+            throw new IllegalArgumentException( "Expected " + rows + " x " + cols + " z values but got " + length );
+        }
+        if ( xAxis.length != cols )
+        {
+            throw new IllegalArgumentException( "Expected " + cols + " x coordinates but got " + xAxis.length );
+        }
+        if ( yAxis.length != rows )
+        {
+            throw new IllegalArgumentException( "Expected " + rows + " y coordinates but got " + yAxis.length );
+        }
+
+        this.rows = rows;
+        this.cols = cols;
+        this.xAxis = xAxis;
+        this.yAxis = yAxis;
+        this.geometry = null;
+    }
+
+    protected ArrayScalarField( long length, GridGeometry geometry )
+    {
+        if ( length != (long) geometry.getRows( ) * geometry.getCols( ) )
+        {
+            throw new IllegalArgumentException( "Expected " + geometry.getRows( ) + " x " + geometry.getCols( ) + " z values but got " + length );
+        }
+
+        this.rows = geometry.getRows( );
+        this.cols = geometry.getCols( );
+        this.xAxis = null;
+        this.yAxis = null;
+        this.geometry = geometry;
+    }
+
+    /**
+     * @return An axis of {@code n} evenly spaced coordinates starting at {@code origin}.
+     */
+    protected static double[] axis( double origin, double spacing, int n )
+    {
+        double[] axis = new double[n];
+        for ( int i = 0; i < n; i++ )
+        {
+            axis[i] = origin + i * spacing;
+        }
+        return axis;
+    }
+
+    @Override
+    public int getRows( )
+    {
+        return rows;
+    }
+
+    @Override
+    public int getCols( )
+    {
+        return cols;
+    }
+
+    @Override
+    public double getX( int row, int col )
+    {
+        return geometry == null ? xAxis[col] : geometry.getX( row, col );
+    }
+
+    @Override
+    public double getY( int row, int col )
+    {
+        return geometry == null ? yAxis[row] : geometry.getY( row, col );
+    }
+
+    @Override
+    public GridGeometry getGeometry( )
+    {
+        return geometry;
+    }
+
+    /**
+     * @return The x coordinate of each column, or null if the field has a geometry.
+     */
+    public double[] getXAxis( )
+    {
+        return xAxis;
+    }
+
+    /**
+     * @return The y coordinate of each row, or null if the field has a geometry.
+     */
+    public double[] getYAxis( )
+    {
+        return yAxis;
+    }
+}
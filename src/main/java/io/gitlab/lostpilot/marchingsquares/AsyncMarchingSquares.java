@@ -0,0 +1,298 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contours fields asynchronously on a bounded executor, one task per isovalue, returning {@link CompletableFuture}s that can be
+ * cancelled or given a deadline.
+ * <br><br>
+ * Cancelling a future, or reaching its deadline, which completes it with a {@link java.util.concurrent.TimeoutException}, stops
+ * its job: running tasks notice it between rows of the grid, and queued ones do not start.
+ * <br><br>
+ * A job never has more than {@code tasksPerJob} tasks in the executor, and each task goes back to the end of the queue after every
+ * isovalue, so that concurrent jobs share the executor fairly instead of the first one taking it over. Any executor works: a
+ * dedicated pool, see {@link #withDedicatedPool(int)}, a caller's pool, or a thread-per-task executor around I/O-heavy pipelines.
+ */
+public class AsyncMarchingSquares implements AutoCloseable
+{
+    protected final Executor executor;
+    protected final int tasksPerJob;
+
+    // Shut down on close if created here
+    protected final ExecutorService dedicated;
+
+    /**
+     * @param tasksPerJob Maximum number of isovalues of a single job contoured at the same time.
+     */
+    public AsyncMarchingSquares( Executor executor, int tasksPerJob )
+    {
+        this( executor, tasksPerJob, null );
+    }
+
+    protected AsyncMarchingSquares( Executor executor, int tasksPerJob, ExecutorService dedicated )
+    {
+        if ( tasksPerJob < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal number of tasks per job: " + tasksPerJob );
+        }
+        this.executor = executor;
+        this.tasksPerJob = tasksPerJob;
+        this.dedicated = dedicated;
+    }
+
+    /**
+     * @return An instance running on its own pool of {@code parallelism} daemon threads, shut down by {@link #close()}.
+     */
+    public static AsyncMarchingSquares withDedicatedPool( int parallelism )
+    {
+        AtomicInteger threadCount = new AtomicInteger( );
+        ExecutorService pool = Executors.newFixedThreadPool( parallelism, ( runnable ) -> {
+            Thread thread = new Thread( runnable, "marching-squares-" + threadCount.incrementAndGet( ) );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        return new AsyncMarchingSquares( pool, parallelism, pool );
+    }
+
+    /**
+     * Same as {@link MarchingSquares#computeIsoLines(ScalarField, double[])}, asynchronously.
+     */
+    public CompletableFuture<IsolineMap<Point>> computeIsoLines( ScalarField field, double[] isovalues )
+    {
+        return computeIsoLines( field, isovalues, null );
+    }
+
+    /**
+     * Same as {@link MarchingSquares#computeIsoLines(ScalarField, double[])}, asynchronously, failing with a
+     * {@link java.util.concurrent.TimeoutException} unless done within {@code timeout}, if not null.
+     */
+    public CompletableFuture<IsolineMap<Point>> computeIsoLines( ScalarField field, double[] isovalues, Duration timeout )
+    {
+        IsolineCollection<Point>[] results = newCollections( isovalues.length );
+        Job<IsolineMap<Point>> job = new Job<>( field, isovalues )
+        {
+            @Override
+            protected void done( int level, IsolineCollection<Point> isolines )
+            {
+                results[level] = isolines;
+            }
+
+            @Override
+            protected IsolineMap<Point> result( )
+            {
+                IsolineMap<Point> isolineMap = new IsolineMap<>( );
+                for ( int level = 0; level < isovalues.length; level++ )
+                {
+                    isolineMap.put( isovalues[level], results[level] );
+                }
+                return isolineMap;
+            }
+        };
+        return start( job, timeout );
+    }
+
+    /**
+     * Passes the isolines of each isovalue to {@code consumer} as soon as the isovalue is done, without keeping them. Isovalues
+     * may complete in any order, but the consumer is never called concurrently for the same job.
+     *
+     * @param timeout Time allowed for the whole job, or null.
+     */
+    public CompletableFuture<Void> computeIsoLines( ScalarField field, double[] isovalues, Duration timeout, IsolineConsumer consumer )
+    {
+        Job<Void> job = new Job<>( field, isovalues )
+        {
+            @Override
+            protected synchronized void done( int level, IsolineCollection<Point> isolines )
+            {
+                for ( Isoline<Point> isoline : isolines.getIsolines( ) )
+                {
+                    consumer.accept( isovalues[level], isoline );
+                }
+            }
+
+            @Override
+            protected Void result( )
+            {
+                return null;
+            }
+        };
+        return start( job, timeout );
+    }
+
+    protected <T> CompletableFuture<T> start( Job<T> job, Duration timeout )
+    {
+        if ( timeout != null )
+        {
+            job.future.orTimeout( timeout.toNanos( ), TimeUnit.NANOSECONDS );
+        }
+        if ( job.isovalues.length == 0 )
+        {
+            job.future.complete( job.result( ) );
+        }
+        for ( int i = 0; i < Math.min( tasksPerJob, job.isovalues.length ); i++ )
+        {
+            job.submit( );
+        }
+        return job.future;
+    }
+
+    /**
+     * Shuts down the dedicated pool, if any, letting running jobs finish. A caller-supplied executor is left alone.
+     */
+    @Override
+    public void close( )
+    {
+        if ( dedicated != null )
+        {
+            dedicated.shutdown( );
+        }
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    protected static IsolineCollection<Point>[] newCollections( int n )
+    {
+        return new IsolineCollection[n];
+    }
+
+    /**
+     * The isovalues of one call, handed out one at a time to the tasks running it.
+     */
+    protected abstract class Job<T> implements Runnable
+    {
+        protected final ScalarField field;
+        protected final double[] isovalues;
+        protected final CompletableFuture<T> future;
+
+        protected final AtomicInteger next;
+        protected final AtomicInteger remaining;
+
+        protected Job( ScalarField field, double[] isovalues )
+        {
+            this.field = field;
+            this.isovalues = isovalues.clone( );
+            this.future = new CompletableFuture<>( );
+            this.next = new AtomicInteger( );
+            this.remaining = new AtomicInteger( isovalues.length );
+        }
+
+        protected abstract void done( int level, IsolineCollection<Point> isolines );
+
+        protected abstract T result( );
+
+        protected void submit( )
+        {
+            try
+            {
+                executor.execute( this );
+            }
+            catch ( RuntimeException e )
+            {
+                future.completeExceptionally( e );
+            }
+        }
+
+        @Override
+        public void run( )
+        {
+            if ( future.isDone( ) )
+            {
+                return;
+            }
+            int level = next.getAndIncrement( );
+            if ( level >= isovalues.length )
+            {
+                return;
+            }
+
+            try
+            {
+                done( level, new CheckedMarchingSquares( field, isovalues[level], this ).computeIsoLines( ) );
+            }
+            catch ( CancellationException e )
+            {
+                // The future is already done
+                return;
+            }
+            catch ( Throwable t )
+            {
+                future.completeExceptionally( t );
+                return;
+            }
+
+            if ( remaining.decrementAndGet( ) == 0 )
+            {
+                future.complete( result( ) );
+            }
+            else if ( next.get( ) < isovalues.length )
+            {
+                // Back to the end of the queue, behind the tasks of other jobs
+                submit( );
+            }
+        }
+
+        /**
+         * Aborts the current task if the job was cancelled, timed out or failed.
+         */
+        protected void check( )
+        {
+            if ( future.isDone( ) )
+            {
+                throw new CancellationException( );
+            }
+        }
+    }
+
+    /**
+     * Checks its job between rows of each stage.
+     */
+    protected static class CheckedMarchingSquares extends MarchingSquares
+    {
+        protected final Job<?> job;
+
+        protected CheckedMarchingSquares( ScalarField field, double isovalue, Job<?> job )
+        {
+            super( field, isovalue );
+            this.job = job;
+        }
+
+        @Override
+        protected void computeInterpolationPoints( )
+        {
+            for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+            {
+                job.check( );
+                computeInterpolationPoints( gridRow, gridRow + 1 );
+            }
+        }
+
+        @Override
+        protected void computeSegments( )
+        {
+            for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+            {
+                job.check( );
+                computeSegments( gridRow, gridRow + 1 );
+            }
+        }
+
+        @Override
+        protected EdgeTracer linkSegments( )
+        {
+            EdgeTracer tracer = workspace.getTracer( );
+            for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+            {
+                job.check( );
+                addSegments( gridRow, 0, nGridCols, tracer );
+            }
+            job.check( );
+            return tracer;
+        }
+    }
+}
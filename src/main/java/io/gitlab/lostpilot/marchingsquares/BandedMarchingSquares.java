@@ -0,0 +1,364 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Computes the isolines of a single isovalue in parallel by splitting the grid into horizontal bands of grid rows.
+ * <br><br>
+ * Interpolation points, segments and contour tracing are computed band by band on a {@link ForkJoinPool}. Each band traces
+ * its own segments into fragments, and fragments that end on a seam between two bands are then stitched together.
+ * The resulting isolines, including their order, are the same as those of {@link MarchingSquares#computeContours()}.
+ * <br><br>
+ * All bands link their segments into one shared {@link EdgeTracer}. This is safe without synchronization since every edge
+ * starts at most one segment and ends at most one segment, and a band never follows a segment beyond a seam.
+ */
+public class BandedMarchingSquares extends MarchingSquares
+{
+    /**
+     * Below this many grid rows per band, the overhead of tasks and stitching outweighs the parallelism.
+     */
+    protected static final int MIN_BAND_ROWS = 16;
+
+    protected final ForkJoinPool pool;
+    protected final int nBands;
+
+    protected EdgeTracer tracer;
+
+    // Rank of the segment starting at each edge in the order of MarchingSquares.computeContours()
+    protected int[] ranks;
+
+    protected BandedMarchingSquares( ScalarField field, double isovalue, ForkJoinPool pool )
+    {
+        this( field, isovalue, pool, Math.max( 1, Math.min( ( field.getRows( ) - 1 ) / MIN_BAND_ROWS, 4 * pool.getParallelism( ) ) ) );
+    }
+
+    protected BandedMarchingSquares( ScalarField field, double isovalue, ForkJoinPool pool, int nBands )
+    {
+        super( field, isovalue );
+        this.pool = pool;
+        this.nBands = Math.max( 1, Math.min( nBands, nGridRows ) );
+    }
+
+    @Override
+    protected IsolineCollection<Point> computeIsoLines( )
+    {
+        this.tracer = workspace.getTracer( );
+        this.ranks = new int[edges.size( )];
+
+        Band[] bands = new Band[nBands];
+        for ( int i = 0; i < nBands; i++ )
+        {
+            int fromRow = (int) ( (long) nGridRows * i / nBands );
+            int toRow = (int) ( (long) nGridRows * ( i + 1 ) / nBands );
+            bands[i] = new Band( fromRow, toRow );
+        }
+
+        // Only needed for the points of the fragments, but a band's fragments may end on the first row of the next band
+        forEachBand( bands, band -> computeInterpolationPoints( band.fromRow, band.toRow ) );
+        forEachBand( bands, band -> {
+            computeSegments( band.fromRow, band.toRow );
+            band.linkSegments( );
+            band.computeFragments( );
+        } );
+
+        return stitch( bands );
+    }
+
+    protected void forEachBand( Band[] bands, Consumer<Band> action )
+    {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>( bands.length );
+        for ( Band band : bands )
+        {
+            tasks.add( ForkJoinTask.adapt( ( ) -> action.accept( band ) ) );
+        }
+        pool.invoke( ForkJoinTask.adapt( ( ) -> ForkJoinTask.invokeAll( tasks ) ) );
+    }
+
+    /**
+     * Joins the fragments of all bands into isolines ordered as in {@link MarchingSquares#computeContours()}:
+     * first the open isolines by descending rank of their starting edge, then the closed isolines by ascending rank
+     * of their first segment, each starting at that segment.
+     */
+    protected IsolineCollection<Point> stitch( Band[] bands )
+    {
+        Int2ObjectMap<Fragment> heads = new Int2ObjectOpenHashMap<>( );
+        List<Fragment> fragments = new ArrayList<>( );
+        for ( Band band : bands )
+        {
+            for ( Fragment fragment : band.fragments )
+            {
+                fragments.add( fragment );
+                if ( !fragment.closed )
+                {
+                    heads.put( fragment.edges.getInt( 0 ), fragment );
+                }
+            }
+        }
+
+        for ( Fragment fragment : fragments )
+        {
+            if ( !fragment.closed )
+            {
+                Fragment next = heads.get( fragment.edges.getInt( fragment.edges.size( ) - 1 ) );
+                if ( next != null )
+                {
+                    fragment.next = next;
+                    next.hasPrevious = true;
+                }
+            }
+        }
+
+        // Open isolines start at a fragment without predecessor
+        List<Fragment> openHeads = new ArrayList<>( );
+        for ( Fragment fragment : fragments )
+        {
+            if ( !fragment.closed && !fragment.hasPrevious )
+            {
+                openHeads.add( fragment );
+                for ( Fragment f = fragment; f != null; f = f.next )
+                {
+                    f.visited = true;
+                }
+            }
+        }
+        openHeads.sort( Comparator.comparingInt( ( Fragment f ) -> f.headRank ).reversed( ) );
+
+        // Closed isolines either lie within one band or are cycles of fragments, started at the fragment holding the lowest rank
+        List<Fragment> loopStarts = new ArrayList<>( );
+        for ( Fragment fragment : fragments )
+        {
+            if ( fragment.closed )
+            {
+                loopStarts.add( fragment );
+            }
+            else if ( !fragment.visited )
+            {
+                Fragment start = fragment;
+                Fragment f = fragment;
+                do
+                {
+                    f.visited = true;
+                    if ( f.minRank < start.minRank )
+                    {
+                        start = f;
+                    }
+                    f = f.next;
+                }
+                while ( f != fragment );
+                loopStarts.add( start );
+            }
+        }
+        loopStarts.sort( Comparator.comparingInt( ( Fragment f ) -> f.minRank ) );
+
+        IsolineCollection<Point> contours = new IsolineCollection<>( );
+        for ( Fragment head : openHeads )
+        {
+            Isoline<Point> contour = new Isoline<>( );
+            addPoints( head, 0, head.edges.size( ), contour );
+            for ( Fragment f = head.next; f != null; f = f.next )
+            {
+                addPoints( f, 1, f.edges.size( ), contour );
+            }
+            contours.add( contour );
+        }
+        for ( Fragment start : loopStarts )
+        {
+            Isoline<Point> contour = new Isoline<>( );
+            if ( start.closed )
+            {
+                addPoints( start, 0, start.edges.size( ), contour );
+            }
+            else
+            {
+                addPoints( start, start.minIndex, start.edges.size( ), contour );
+                for ( Fragment f = start.next; f != start; f = f.next )
+                {
+                    addPoints( f, 1, f.edges.size( ), contour );
+                }
+                addPoints( start, 1, start.minIndex + 1, contour );
+            }
+            contours.add( contour );
+        }
+
+        return contours;
+    }
+
+    protected void addPoints( Fragment fragment, int from, int to, Isoline<Point> contour )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            contour.add( edgePoint( fragment.edges.getInt( i ) ) );
+        }
+    }
+
+    /**
+     * A piece of an isoline that lies within a single band.
+     */
+    protected static class Fragment
+    {
+        protected final IntArrayList edges = new IntArrayList( );
+        protected final boolean closed;
+
+        protected int headRank;
+        protected int minRank = Integer.MAX_VALUE;
+        protected int minIndex;
+
+        protected Fragment next;
+        protected boolean hasPrevious;
+        protected boolean visited;
+
+        protected Fragment( boolean closed )
+        {
+            this.closed = closed;
+        }
+    }
+
+    protected class Band implements EdgeTracer.Visitor
+    {
+        protected final int fromRow;
+        protected final int toRow;
+
+        // Starting edges of the band's segments in row-major cell order
+        protected final IntArrayList starts = new IntArrayList( );
+
+        protected final List<Fragment> fragments = new ArrayList<>( );
+        protected Fragment fragment;
+
+        protected Band( int fromRow, int toRow )
+        {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        /**
+         * Same as {@link MarchingSquares#addSegments(int, int, int, EdgeTracer)} for the band, also recording the rank of each segment.
+         */
+        protected void linkSegments( )
+        {
+            for ( int gridRow = fromRow; gridRow < toRow; gridRow++ )
+            {
+                int[] binaryRow = binary[gridRow];
+                for ( int gridCol = 0; gridCol < nGridCols; gridCol++ )
+                {
+                    int[] sides = segmentSides( binaryRow[gridCol] );
+                    for ( int i = 0; i < sides.length; i += 2 )
+                    {
+                        int start = edges.cellEdge( gridRow, gridCol, sides[i] );
+                        tracer.link( start, edges.cellEdge( gridRow, gridCol, sides[i + 1] ) );
+                        starts.add( start );
+                        ranks[start] = 2 * ( gridRow * nGridCols + gridCol ) + i / 2;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return Whether the edge lies on a seam with another band, in which case the contour continues in that band.
+         */
+        protected boolean isSeam( int edge )
+        {
+            if ( !edges.isHorizontal( edge ) )
+            {
+                return false;
+            }
+            int vertexRow = edges.row( edge );
+            return ( vertexRow == fromRow && fromRow > 0 ) || ( vertexRow == toRow && toRow < nGridRows );
+        }
+
+        /**
+         * Same as {@link EdgeTracer#trace(EdgeTracer.Visitor)} restricted to the band: fragments also start at the seam edges
+         * where contours enter the band, and stop at the seam edges where they leave it.
+         */
+        protected void computeFragments( )
+        {
+            int[] next = tracer.next;
+            boolean[] incoming = tracer.incoming;
+
+            for ( int i = 0; i < starts.size( ); i++ )
+            {
+                int start = starts.getInt( i );
+                if ( next[start] >= 0 && ( isSeam( start ) || !incoming[start] ) )
+                {
+                    computeFragment( start, false, next, incoming );
+                }
+            }
+
+            for ( int i = 0; i < starts.size( ); i++ )
+            {
+                int start = starts.getInt( i );
+                if ( next[start] >= 0 )
+                {
+                    computeFragment( start, true, next, incoming );
+                }
+            }
+        }
+
+        protected void computeFragment( int startingEdge, boolean closed, int[] next, boolean[] incoming )
+        {
+            beginContour( closed );
+            edge( startingEdge );
+
+            int edge = next[startingEdge];
+            next[startingEdge] = -1;
+            while ( edge >= 0 )
+            {
+                // The incoming flag of a seam edge belongs to this band iff this band's segment ends on it
+                incoming[edge] = false;
+                edge( edge );
+                if ( isSeam( edge ) )
+                {
+                    break;
+                }
+
+                int nextEdge = next[edge];
+                next[edge] = -1;
+                edge = nextEdge;
+            }
+
+            endContour( );
+        }
+
+        @Override
+        public void beginContour( boolean closed )
+        {
+            fragment = new Fragment( closed );
+        }
+
+        @Override
+        public void edge( int edge )
+        {
+            IntArrayList fragmentEdges = fragment.edges;
+            if ( fragmentEdges.isEmpty( ) )
+            {
+                fragment.headRank = ranks[edge];
+            }
+            fragmentEdges.add( edge );
+        }
+
+        @Override
+        public void endContour( )
+        {
+            // Every edge but the last starts one of the fragment's segments
+            IntArrayList fragmentEdges = fragment.edges;
+            for ( int i = 0; i < fragmentEdges.size( ) - 1; i++ )
+            {
+                int rank = ranks[fragmentEdges.getInt( i )];
+                if ( rank < fragment.minRank )
+                {
+                    fragment.minRank = rank;
+                    fragment.minIndex = i;
+                }
+            }
+            fragments.add( fragment );
+        }
+    }
+}
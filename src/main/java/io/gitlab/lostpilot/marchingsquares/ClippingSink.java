@@ -0,0 +1,270 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+
+/**
+ * Clips isolines to a rectangle on the fly before passing them on to another sink, segment by segment with Liang-Barsky.
+ * <br><br>
+ * The parts of an isoline inside the rectangle, borders included, are passed on as open isolines, starting and ending exactly on the
+ * border where the isoline crosses it. Closed isolines entirely inside the rectangle are passed on unchanged. When a closed isoline
+ * starts inside the rectangle and leaves it, its first part is held back and appended to its last part, so that the part through its
+ * starting vertex is not split in two.
+ */
+public class ClippingSink implements IsolineSink
+{
+    protected final IsolineSink sink;
+    protected final double minX;
+    protected final double minY;
+    protected final double maxX;
+    protected final double maxY;
+
+    protected double isovalue;
+    protected boolean closed;
+    protected int nVertices;
+    protected double firstX;
+    protected double firstY;
+    protected double previousX;
+    protected double previousY;
+
+    // Current part; its first vertex is only passed on with the second one, so that single points are dropped
+    protected boolean inPart;
+    protected int partVertices;
+    protected double partX;
+    protected double partY;
+
+    // Whether the current part is the first part of a closed isoline, held back in head
+    protected boolean buffering;
+    protected final DoubleArrayList head = new DoubleArrayList( );
+
+    // Parameters of the part of the last clipped segment inside the rectangle
+    protected double t0;
+    protected double t1;
+
+    public ClippingSink( IsolineSink sink, double minX, double minY, double maxX, double maxY )
+    {
+        if ( !( minX <= maxX && minY <= maxY ) )
+        {
+            throw new IllegalArgumentException( "Illegal rectangle: [" + minX + ", " + maxX + "] x [" + minY + ", " + maxY + "]" );
+        }
+        this.sink = sink;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    @Override
+    public void beginIsoline( double isovalue, boolean closed )
+    {
+        this.isovalue = isovalue;
+        this.closed = closed;
+        this.nVertices = 0;
+        this.inPart = false;
+        this.buffering = closed;
+        this.head.clear( );
+    }
+
+    @Override
+    public void vertex( double x, double y )
+    {
+        if ( nVertices++ == 0 )
+        {
+            firstX = x;
+            firstY = y;
+            if ( inside( x, y ) )
+            {
+                startPart( x, y );
+            }
+            else
+            {
+                buffering = false;
+            }
+        }
+        else
+        {
+            segment( previousX, previousY, x, y );
+        }
+        previousX = x;
+        previousY = y;
+    }
+
+    @Override
+    public void endIsoline( )
+    {
+        if ( !closed || nVertices == 0 )
+        {
+            if ( inPart )
+            {
+                endPart( );
+            }
+            return;
+        }
+
+        if ( buffering )
+        {
+            // Never left the rectangle
+            sink.beginIsoline( isovalue, true );
+            for ( int i = 0; i < head.size( ); i += 2 )
+            {
+                sink.vertex( head.getDouble( i ), head.getDouble( i + 1 ) );
+            }
+            sink.endIsoline( );
+            return;
+        }
+
+        segment( previousX, previousY, firstX, firstY );
+        if ( inPart )
+        {
+            // Back at the starting vertex, which is the first vertex of the head
+            for ( int i = 2; i < head.size( ); i += 2 )
+            {
+                add( head.getDouble( i ), head.getDouble( i + 1 ) );
+            }
+            endPart( );
+        }
+    }
+
+    protected boolean inside( double x, double y )
+    {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    /**
+     * Passes on the part of the segment from (x0, y0) to (x1, y1) inside the rectangle, (x0, y0) having been handled already.
+     */
+    protected void segment( double x0, double y0, double x1, double y1 )
+    {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        t0 = 0.0;
+        t1 = 1.0;
+        if ( !( clip( -dx, x0 - minX ) && clip( dx, maxX - x0 ) && clip( -dy, y0 - minY ) && clip( dy, maxY - y0 ) ) )
+        {
+            return;
+        }
+
+        if ( !inPart )
+        {
+            if ( t1 <= t0 )
+            {
+                // Touches the border in a single point, which starts a part if the segment ends there
+                if ( t1 == 1.0 )
+                {
+                    startPart( x1, y1 );
+                }
+                return;
+            }
+            if ( t0 > 0.0 )
+            {
+                startPart( clampX( x0 + t0 * dx ), clampY( y0 + t0 * dy ) );
+            }
+            else
+            {
+                // Back inside from a vertex on the border where the previous part ended
+                startPart( x0, y0 );
+            }
+        }
+
+        if ( t1 < 1.0 )
+        {
+            if ( t1 > t0 )
+            {
+                add( clampX( x0 + t1 * dx ), clampY( y0 + t1 * dy ) );
+            }
+            endPart( );
+        }
+        else
+        {
+            add( x1, y1 );
+        }
+    }
+
+    /**
+     * Narrows [t0, t1] to the side of one border of the rectangle, see Liang-Barsky.
+     *
+     * @return Whether anything is left.
+     */
+    protected boolean clip( double p, double q )
+    {
+        if ( p == 0.0 )
+        {
+            return q >= 0.0;
+        }
+        double r = q / p;
+        if ( p < 0.0 )
+        {
+            if ( r > t1 )
+            {
+                return false;
+            }
+            t0 = Math.max( t0, r );
+        }
+        else
+        {
+            if ( r < t0 )
+            {
+                return false;
+            }
+            t1 = Math.min( t1, r );
+        }
+        return true;
+    }
+
+    protected double clampX( double x )
+    {
+        return Math.min( Math.max( x, minX ), maxX );
+    }
+
+    protected double clampY( double y )
+    {
+        return Math.min( Math.max( y, minY ), maxY );
+    }
+
+    protected void startPart( double x, double y )
+    {
+        inPart = true;
+        partVertices = 1;
+        if ( buffering )
+        {
+            head.add( x );
+            head.add( y );
+        }
+        else
+        {
+            partX = x;
+            partY = y;
+        }
+    }
+
+    protected void add( double x, double y )
+    {
+        if ( buffering )
+        {
+            head.add( x );
+            head.add( y );
+        }
+        else
+        {
+            if ( partVertices == 1 )
+            {
+                sink.beginIsoline( isovalue, false );
+                sink.vertex( partX, partY );
+            }
+            sink.vertex( x, y );
+        }
+        partVertices++;
+    }
+
+    protected void endPart( )
+    {
+        if ( buffering )
+        {
+            buffering = false;
+        }
+        else if ( partVertices >= 2 )
+        {
+            sink.endIsoline( );
+        }
+        inPart = false;
+    }
+}
@@ -0,0 +1,84 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event holding {@link ContourMetrics}. Install {@link #LISTENER} with {@link MarchingSquares#setMetricsListener(ContourMetrics.Listener)}
+ * and enable {@value #NAME} in the recording settings. Events are committed after the call, so their own duration is meaningless:
+ * see the stage timings instead.
+ */
+@Name( ContourEvent.NAME )
+@Label( "Contour" )
+@Category( "Marching Squares" )
+@Description( "Contouring of a whole field at one isovalue" )
+public class ContourEvent extends Event
+{
+    public static final String NAME = "io.gitlab.lostpilot.marchingsquares.Contour";
+
+    public static final ContourMetrics.Listener LISTENER = ContourEvent::commit;
+
+    @Label( "Isovalue" )
+    public double isovalue;
+
+    @Label( "Interpolation" )
+    @Timespan( Timespan.NANOSECONDS )
+    public long interpolation;
+
+    @Label( "Segments" )
+    @Description( "Classification of cells, saddle resolution included" )
+    @Timespan( Timespan.NANOSECONDS )
+    public long segmentation;
+
+    @Label( "Tracing" )
+    @Timespan( Timespan.NANOSECONDS )
+    public long tracing;
+
+    @Label( "Cells" )
+    public long cells;
+
+    @Label( "Crossing Cells" )
+    public long crossingCells;
+
+    @Label( "Saddle Cells" )
+    public long saddleCells;
+
+    @Label( "Segment Count" )
+    public long segments;
+
+    @Label( "Open Isolines" )
+    public long openIsolines;
+
+    @Label( "Closed Isolines" )
+    public long closedIsolines;
+
+    @Label( "Allocated" )
+    @DataAmount( DataAmount.BYTES )
+    public long allocated;
+
+    protected static void commit( ContourMetrics metrics )
+    {
+        ContourEvent event = new ContourEvent( );
+        if ( !event.isEnabled( ) )
+        {
+            return;
+        }
+        event.isovalue = metrics.isovalue;
+        event.interpolation = metrics.interpolationNanos;
+        event.segmentation = metrics.segmentNanos;
+        event.tracing = metrics.tracingNanos;
+        event.cells = metrics.cells;
+        event.crossingCells = metrics.crossingCells;
+        event.saddleCells = metrics.saddleCells;
+        event.segments = metrics.segments;
+        event.openIsolines = metrics.openIsolines;
+        event.closedIsolines = metrics.closedIsolines;
+        event.allocated = metrics.allocatedBytes;
+        event.commit( );
+    }
+}
@@ -0,0 +1,143 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Timings of each stage and counters of a single call contouring a whole field at one isovalue, passed to the {@link Listener}
+ * set with {@link MarchingSquares#setMetricsListener(Listener)}. See {@link ContourEvent} to record them as JFR events.
+ * <br><br>
+ * Saddle cells are resolved while their segments are generated, so their cost is part of {@link #getSegmentNanos()}.
+ * Allocated bytes are those of the calling thread during the call, or -1 where the JVM cannot tell. Calls that skip
+ * interpolation, such as {@link MarchingSquares#computeIsoLines(ScalarField, double[], IsolineSink)}, report 0 for it.
+ */
+public class ContourMetrics
+{
+    /**
+     * Receives the metrics of each call as it returns, on the thread that made it.
+     */
+    @FunctionalInterface
+    public interface Listener
+    {
+        void contoured( ContourMetrics metrics );
+    }
+
+    protected static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean( );
+
+    protected final double isovalue;
+
+    protected long interpolationNanos;
+    protected long segmentNanos;
+    protected long tracingNanos;
+
+    protected long cells;
+    protected long crossingCells;
+    protected long saddleCells;
+    protected long segments;
+    protected long openIsolines;
+    protected long closedIsolines;
+    protected long allocatedBytes = -1;
+
+    public ContourMetrics( double isovalue )
+    {
+        this.isovalue = isovalue;
+    }
+
+    public double getIsovalue( )
+    {
+        return isovalue;
+    }
+
+    public long getInterpolationNanos( )
+    {
+        return interpolationNanos;
+    }
+
+    /**
+     * @return Time spent classifying cells and resolving saddles.
+     */
+    public long getSegmentNanos( )
+    {
+        return segmentNanos;
+    }
+
+    /**
+     * @return Time spent linking segments and following them into isolines.
+     */
+    public long getTracingNanos( )
+    {
+        return tracingNanos;
+    }
+
+    public long getTotalNanos( )
+    {
+        return interpolationNanos + segmentNanos + tracingNanos;
+    }
+
+    public long getCells( )
+    {
+        return cells;
+    }
+
+    /**
+     * @return Number of cells crossed by the isovalue, saddles included.
+     */
+    public long getCrossingCells( )
+    {
+        return crossingCells;
+    }
+
+    /**
+     * @return Number of cells of the ambiguous cases 5 and 10.
+     */
+    public long getSaddleCells( )
+    {
+        return saddleCells;
+    }
+
+    public long getSegments( )
+    {
+        return segments;
+    }
+
+    public long getIsolines( )
+    {
+        return openIsolines + closedIsolines;
+    }
+
+    public long getOpenIsolines( )
+    {
+        return openIsolines;
+    }
+
+    public long getClosedIsolines( )
+    {
+        return closedIsolines;
+    }
+
+    public long getAllocatedBytes( )
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return Bytes allocated so far by the current thread, or -1 if unknown.
+     */
+    protected static long threadAllocatedBytes( )
+    {
+        if ( THREADS instanceof com.sun.management.ThreadMXBean threads && threads.isThreadAllocatedMemoryEnabled( ) )
+        {
+            return threads.getThreadAllocatedBytes( Thread.currentThread( ).getId( ) );
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString( )
+    {
+        return "ContourMetrics[isovalue=" + isovalue + ", interpolationNanos=" + interpolationNanos + ", segmentNanos=" + segmentNanos
+                + ", tracingNanos=" + tracingNanos + ", cells=" + cells + ", crossingCells=" + crossingCells + ", saddleCells=" + saddleCells
+                + ", segments=" + segments + ", openIsolines=" + openIsolines + ", closedIsolines=" + closedIsolines
+                + ", allocatedBytes=" + allocatedBytes + "]";
+    }
+}
@@ -0,0 +1,224 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Collection;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectLinkedOpenHashMap;
+
+/**
+ * Aggregates isolines into a summary per isovalue as they are passed, holding nothing but a few primitive accumulators per isovalue:
+ * the number of open and closed isolines and of vertices, the total length, the area enclosed by closed isolines and the bounding box.
+ * <br><br>
+ * Pass it to any method taking an {@link IsolineSink}, or use {@link MarchingSquares#computeStatistics(ScalarField, double[])}.
+ * Areas are computed with the shoelace formula relative to the first vertex of each isoline, which keeps them accurate far from
+ * the origin. {@link Summary#getArea()} adds up the areas of all closed isolines, whereas in {@link Summary#getSignedArea()}
+ * counter-clockwise isolines count positively and clockwise ones negatively: since lower values are on the left of isolines,
+ * it is the area of the regions below the isovalue enclosed by closed isolines, minus that of the regions above it.
+ */
+public class ContourStatistics implements IsolineSink
+{
+    /**
+     * Aggregates of the isolines of a single isovalue. The bounding box is empty, with min &gt; max, if there are none.
+     */
+    public static class Summary
+    {
+        protected final double isovalue;
+
+        protected long openIsolines;
+        protected long closedIsolines;
+        protected long vertices;
+        protected double length;
+        protected double area;
+        protected double signedArea;
+
+        protected double minX = Double.POSITIVE_INFINITY;
+        protected double minY = Double.POSITIVE_INFINITY;
+        protected double maxX = Double.NEGATIVE_INFINITY;
+        protected double maxY = Double.NEGATIVE_INFINITY;
+
+        protected Summary( double isovalue )
+        {
+            this.isovalue = isovalue;
+        }
+
+        public double getIsovalue( )
+        {
+            return isovalue;
+        }
+
+        public long getOpenIsolineCount( )
+        {
+            return openIsolines;
+        }
+
+        public long getClosedIsolineCount( )
+        {
+            return closedIsolines;
+        }
+
+        public long getIsolineCount( )
+        {
+            return openIsolines + closedIsolines;
+        }
+
+        public long getVertexCount( )
+        {
+            return vertices;
+        }
+
+        /**
+         * @return Total length of the isolines, including the closing segment of closed isolines.
+         */
+        public double getLength( )
+        {
+            return length;
+        }
+
+        /**
+         * @return Total area enclosed by closed isolines.
+         */
+        public double getArea( )
+        {
+            return area;
+        }
+
+        /**
+         * @return Total signed area of closed isolines, positive for counter-clockwise ones.
+         */
+        public double getSignedArea( )
+        {
+            return signedArea;
+        }
+
+        public double getMinX( )
+        {
+            return minX;
+        }
+
+        public double getMinY( )
+        {
+            return minY;
+        }
+
+        public double getMaxX( )
+        {
+            return maxX;
+        }
+
+        public double getMaxY( )
+        {
+            return maxY;
+        }
+
+        @Override
+        public String toString( )
+        {
+            return "Summary[isovalue=" + isovalue + ", open=" + openIsolines + ", closed=" + closedIsolines + ", vertices=" + vertices
+                    + ", length=" + length + ", area=" + area + ", box=[" + minX + ", " + maxX + "] x [" + minY + ", " + maxY + "]]";
+        }
+    }
+
+    protected final Double2ObjectLinkedOpenHashMap<Summary> summaries = new Double2ObjectLinkedOpenHashMap<>( );
+
+    // Isoline being passed
+    protected Summary summary;
+    protected boolean closed;
+    protected boolean first;
+    protected double firstX;
+    protected double firstY;
+    protected double previousX;
+    protected double previousY;
+    protected double length;
+    protected double doubleArea;
+
+    /**
+     * @return The summary of {@code isovalue}, added empty if it has not been seen yet.
+     */
+    public Summary getSummary( double isovalue )
+    {
+        Summary summary = summaries.get( isovalue );
+        if ( summary == null )
+        {
+            summary = new Summary( isovalue );
+            summaries.put( isovalue, summary );
+        }
+        return summary;
+    }
+
+    /**
+     * @return The summaries in the order their isovalues were first seen.
+     */
+    public Collection<Summary> getSummaries( )
+    {
+        return summaries.values( );
+    }
+
+    public int size( )
+    {
+        return summaries.size( );
+    }
+
+    @Override
+    public void beginIsoline( double isovalue, boolean closed )
+    {
+        if ( summary == null || Double.compare( summary.isovalue, isovalue ) != 0 )
+        {
+            summary = getSummary( isovalue );
+        }
+        this.closed = closed;
+        this.first = true;
+        this.length = 0.0;
+        this.doubleArea = 0.0;
+    }
+
+    @Override
+    public void vertex( double x, double y )
+    {
+        Summary summary = this.summary;
+        summary.vertices++;
+        summary.minX = Math.min( summary.minX, x );
+        summary.minY = Math.min( summary.minY, y );
+        summary.maxX = Math.max( summary.maxX, x );
+        summary.maxY = Math.max( summary.maxY, y );
+
+        if ( first )
+        {
+            first = false;
+            firstX = x;
+            firstY = y;
+        }
+        else
+        {
+            segment( x, y );
+        }
+        previousX = x;
+        previousY = y;
+    }
+
+    protected void segment( double x, double y )
+    {
+        double dx = x - previousX;
+        double dy = y - previousY;
+        length += Math.sqrt( dx * dx + dy * dy );
+        doubleArea += ( previousX - firstX ) * ( y - firstY ) - ( x - firstX ) * ( previousY - firstY );
+    }
+
+    @Override
+    public void endIsoline( )
+    {
+        if ( closed )
+        {
+            if ( !first )
+            {
+                segment( firstX, firstY );
+            }
+            summary.closedIsolines++;
+            summary.area += Math.abs( doubleArea ) / 2;
+            summary.signedArea += doubleArea / 2;
+        }
+        else
+        {
+            summary.openIsolines++;
+        }
+        summary.length += length;
+    }
+}
@@ -0,0 +1,52 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * A scalar field backed by a flat, row-major {@code double[]} of z values: z(row, col) = z[row * cols + col].
+ */
+public class DoubleScalarField extends ArrayScalarField
+{
+    protected final double[] z;
+
+    /**
+     * @param z Row-major z values, row 0 at the bottom.
+     * @param rows Number of vertex rows.
+     * @param cols Number of vertex columns.
+     * @param xAxis x coordinate of each column.
+     * @param yAxis y coordinate of each row.
+     */
+    public DoubleScalarField( double[] z, int rows, int cols, double[] xAxis, double[] yAxis )
+    {
+        super( z.length, rows, cols, xAxis, yAxis );
+        this.z = z;
+    }
+
+    /**
+     * Creates a field contoured in index space, whose coordinates are given by a geometry.
+     *
+     * @param z Row-major z values, row 0 at the bottom.
+     */
+    public DoubleScalarField( double[] z, GridGeometry geometry )
+    {
+        super( z.length, geometry );
+        this.z = z;
+    }
+
+    /**
+     * Creates a field on a regular grid, where x(col) = x0 + col * dx and y(row) = y0 + row * dy.
+     */
+    public static DoubleScalarField regular( double[] z, int rows, int cols, double x0, double y0, double dx, double dy )
+    {
+        return new DoubleScalarField( z, rows, cols, axis( x0, dx, cols ), axis( y0, dy, rows ) );
+    }
+
+    @Override
+    public double getZ( int row, int col )
+    {
+        return z[row * cols + col];
+    }
+
+    public double[] getValues( )
+    {
+        return z;
+    }
+}
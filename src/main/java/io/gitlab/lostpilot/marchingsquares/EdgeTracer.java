@@ -0,0 +1,133 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Links segments by the {@link GridEdges numbers} of their starting and ending edges and follows them into contours,
+ * using only primitive arrays indexed by edge.
+ * <br><br>
+ * Contours are traced exactly as {@link MarchingSquares} always has: first the non-closed contours, starting from the edges
+ * that no segment ends on, the last added first; then the closed contours, starting from the first remaining starting edge in
+ * the order the segments were added. Closed contours end with their starting edge.
+ * <br><br>
+ * Tracing consumes all segments and leaves the arrays cleared, so that a tracer can be reused for another isovalue
+ * on a grid with the same number of edges without reallocating anything.
+ */
+public class EdgeTracer
+{
+    /**
+     * Receives the edges of each contour as it is traced.
+     */
+    public interface Visitor
+    {
+        void beginContour( boolean closed );
+
+        void edge( int edge );
+
+        void endContour( );
+    }
+
+    // Ending edge of the segment starting at each edge, or -1
+    protected final int[] next;
+
+    // Whether a segment ends at each edge
+    protected final boolean[] incoming;
+
+    // Starting edges in the order the segments were added
+    protected final IntArrayList starts;
+
+    public EdgeTracer( int nEdges )
+    {
+        this.next = new int[nEdges];
+        Arrays.fill( this.next, -1 );
+        this.incoming = new boolean[nEdges];
+        this.starts = new IntArrayList( );
+    }
+
+    public int size( )
+    {
+        return next.length;
+    }
+
+    public void addSegment( int start, int end )
+    {
+        link( start, end );
+        starts.add( start );
+    }
+
+    /**
+     * Links a segment without recording its starting edge, for callers that keep track of starting edges themselves.
+     */
+    protected void link( int start, int end )
+    {
+        next[start] = end;
+        incoming[end] = true;
+    }
+
+    /**
+     * Drops all segments added since the last trace.
+     */
+    public void clear( )
+    {
+        Arrays.fill( next, -1 );
+        Arrays.fill( incoming, false );
+        starts.clear( );
+    }
+
+    /**
+     * @return Number of segments added since the last trace.
+     */
+    public int getSegmentCount( )
+    {
+        return starts.size( );
+    }
+
+    public void trace( Visitor visitor )
+    {
+        int[] starts = this.starts.elements( );
+        int nStarts = this.starts.size( );
+
+        // Handle non-closed contours; a starting edge already traced as part of another contour has lost both its links
+        for ( int i = nStarts - 1; i >= 0; i-- )
+        {
+            if ( !incoming[starts[i]] && next[starts[i]] >= 0 )
+            {
+                trace( starts[i], false, visitor );
+            }
+        }
+
+        // Handle closed contours
+        for ( int i = 0; i < nStarts; i++ )
+        {
+            if ( next[starts[i]] >= 0 )
+            {
+                trace( starts[i], true, visitor );
+            }
+        }
+
+        this.starts.clear( );
+    }
+
+    protected void trace( int startingEdge, boolean closed, Visitor visitor )
+    {
+        visitor.beginContour( closed );
+        visitor.edge( startingEdge );
+
+        // Follow contour from starting edge, unlinking segments as we go
+        int edge = next[startingEdge];
+        next[startingEdge] = -1;
+        while ( edge >= 0 )
+        {
+            incoming[edge] = false;
+            visitor.edge( edge );
+
+            int nextEdge = next[edge];
+            next[edge] = -1;
+            edge = nextEdge;
+        }
+
+        visitor.endContour( );
+    }
+}
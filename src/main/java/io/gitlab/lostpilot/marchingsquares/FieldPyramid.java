@@ -0,0 +1,115 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * A field together with coarser and coarser copies of it, halving the number of cells in each direction at each level.
+ * <br><br>
+ * Vertex (row, col) of level k sits exactly on vertex (2 row, 2 col) of level k - 1, or on its last row or column, so all levels
+ * share the same extent and every vertex keeps its coordinates. Its z value is that of the finer vertex smoothed by a [1 2 1] / 4
+ * filter in each direction, edges clamped, to keep small features from aliasing into spurious contours.
+ * <br><br>
+ * Coordinates are read along row 0 and column 0, so the field must be rectilinear, as any {@link ArrayScalarField} is.
+ * Coarser levels are {@link DoubleScalarField}s.
+ */
+public class FieldPyramid
+{
+    protected final ScalarField[] levels;
+
+    /**
+     * Builds levels until the coarsest has at most {@code maxCells} cells in each direction.
+     */
+    public FieldPyramid( ScalarField field, int maxCells )
+    {
+        if ( maxCells < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal number of cells: " + maxCells );
+        }
+
+        int nLevels = 1;
+        for ( int rows = field.getRows( ), cols = field.getCols( ); rows - 1 > maxCells || cols - 1 > maxCells; nLevels++ )
+        {
+            rows = coarser( rows );
+            cols = coarser( cols );
+        }
+
+        this.levels = new ScalarField[nLevels];
+        levels[0] = field;
+        for ( int level = 1; level < nLevels; level++ )
+        {
+            levels[level] = downsample( levels[level - 1] );
+        }
+    }
+
+    public int getLevelCount( )
+    {
+        return levels.length;
+    }
+
+    /**
+     * @return Level {@code level}, 0 being the field itself.
+     */
+    public ScalarField getLevel( int level )
+    {
+        return levels[level];
+    }
+
+    /**
+     * @return Number of vertices along a dimension of the next coarser level.
+     */
+    protected static int coarser( int n )
+    {
+        // ceil((n - 1) / 2) cells
+        return n / 2 + 1;
+    }
+
+    protected static DoubleScalarField downsample( ScalarField field )
+    {
+        int rows = field.getRows( );
+        int cols = field.getCols( );
+        int coarseRows = coarser( rows );
+        int coarseCols = coarser( cols );
+
+        double[] xAxis = new double[coarseCols];
+        for ( int col = 0; col < coarseCols; col++ )
+        {
+            xAxis[col] = field.getX( 0, fine( col, cols ) );
+        }
+        double[] yAxis = new double[coarseRows];
+        for ( int row = 0; row < coarseRows; row++ )
+        {
+            yAxis[row] = field.getY( fine( row, rows ), 0 );
+        }
+
+        // Filter along rows first, on the coarse columns only, then along columns
+        double[] across = new double[rows * coarseCols];
+        for ( int row = 0; row < rows; row++ )
+        {
+            for ( int col = 0; col < coarseCols; col++ )
+            {
+                int center = fine( col, cols );
+                across[row * coarseCols + col] = 0.25 * ( field.getZ( row, Math.max( center - 1, 0 ) ) + 2 * field.getZ( row, center )
+                        + field.getZ( row, Math.min( center + 1, cols - 1 ) ) );
+            }
+        }
+        double[] z = new double[coarseRows * coarseCols];
+        for ( int row = 0; row < coarseRows; row++ )
+        {
+            int center = fine( row, rows );
+            int below = Math.max( center - 1, 0 ) * coarseCols;
+            int above = Math.min( center + 1, rows - 1 ) * coarseCols;
+            for ( int col = 0; col < coarseCols; col++ )
+            {
+                z[row * coarseCols + col] = 0.25 * ( across[below + col] + 2 * across[center * coarseCols + col] + across[above + col] );
+            }
+        }
+
+        return new DoubleScalarField( z, coarseRows, coarseCols, xAxis, yAxis );
+    }
+
+    /**
+     * @return Index in the finer level of the coarse vertex {@code i}, along a dimension of {@code n} fine vertices.
+     */
+    protected static int fine( int i, int n )
+    {
+        return Math.min( 2 * i, n - 1 );
+    }
+}
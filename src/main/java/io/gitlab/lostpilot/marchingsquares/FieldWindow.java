@@ -0,0 +1,81 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * The vertices of rows [fromRow, toRow) and columns [fromCol, toCol) of a field, seen as a field of their own without copying anything.
+ * <br><br>
+ * Contour a window with a {@link WindowMarchingSquares}, which interpolates edge points on the underlying field, so that the isolines
+ * of a window are exactly those of the whole field clipped to it.
+ */
+public class FieldWindow implements ScalarField
+{
+    protected final ScalarField field;
+    protected final int fromRow;
+    protected final int fromCol;
+    protected final int rows;
+    protected final int cols;
+
+    /**
+     * @param fromRow First vertex row, inclusive.
+     * @param toRow Last vertex row, exclusive.
+     * @param fromCol First vertex column, inclusive.
+     * @param toCol Last vertex column, exclusive.
+     */
+    public FieldWindow( ScalarField field, int fromRow, int toRow, int fromCol, int toCol )
+    {
+        if ( fromRow < 0 || toRow > field.getRows( ) || toRow - fromRow < 2 || fromCol < 0 || toCol > field.getCols( ) || toCol - fromCol < 2 )
+        {
+            throw new IllegalArgumentException( "Illegal window: rows [" + fromRow + ", " + toRow + "), cols [" + fromCol + ", " + toCol
+                    + ") of a " + field.getRows( ) + " x " + field.getCols( ) + " field" );
+        }
+        this.field = field;
+        this.fromRow = fromRow;
+        this.fromCol = fromCol;
+        this.rows = toRow - fromRow;
+        this.cols = toCol - fromCol;
+    }
+
+    public ScalarField getField( )
+    {
+        return field;
+    }
+
+    public int getFromRow( )
+    {
+        return fromRow;
+    }
+
+    public int getFromCol( )
+    {
+        return fromCol;
+    }
+
+    @Override
+    public int getRows( )
+    {
+        return rows;
+    }
+
+    @Override
+    public int getCols( )
+    {
+        return cols;
+    }
+
+    @Override
+    public double getX( int row, int col )
+    {
+        return field.getX( fromRow + row, fromCol + col );
+    }
+
+    @Override
+    public double getY( int row, int col )
+    {
+        return field.getY( fromRow + row, fromCol + col );
+    }
+
+    @Override
+    public double getZ( int row, int col )
+    {
+        return field.getZ( fromRow + row, fromCol + col );
+    }
+}
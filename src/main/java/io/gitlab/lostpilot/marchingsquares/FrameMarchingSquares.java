@@ -0,0 +1,192 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Contours a sequence of frames of the same grid, such as the time steps of a forecast, at the same isovalues.
+ * <br><br>
+ * The axes, the edge numbering and the buffers of the engine are kept across frames: each frame only costs classifying its cells,
+ * interpolating and tracing. Work is pipelined over (frame, isovalue) pairs: while the caller's thread traces and emits the
+ * isolines of a pair, the edge points and lookup indices of the next pair, possibly of the next frame, are computed on another
+ * thread, in a second set of buffers. The wall time of a run therefore approaches the time of the slower of the two stages rather
+ * than their sum, with memory for only two sets of buffers whatever the number of isovalues.
+ */
+public class FrameMarchingSquares
+{
+    /**
+     * Receives the isolines of each frame, in order, on the thread that called
+     * {@link FrameMarchingSquares#computeIsoLines(Iterator, FrameConsumer)}.
+     */
+    @FunctionalInterface
+    public interface FrameConsumer
+    {
+        void accept( int frame, IsolineMap<Point> isolines );
+    }
+
+    protected final double[] xAxis;
+    protected final double[] yAxis;
+    protected final double[] isovalues;
+    protected final Executor executor;
+
+    // The stages of consecutive pairs alternate between these
+    protected final Workspace[] workspaces;
+
+    /**
+     * Runs the first stage on a thread of its own, started by each call.
+     */
+    public FrameMarchingSquares( double[] xAxis, double[] yAxis, double[] isovalues )
+    {
+        this( xAxis, yAxis, isovalues, null );
+    }
+
+    /**
+     * @param xAxis x coordinate of each column.
+     * @param yAxis y coordinate of each row.
+     * @param executor Runs the first stage, or null for a thread of its own.
+     */
+    public FrameMarchingSquares( double[] xAxis, double[] yAxis, double[] isovalues, Executor executor )
+    {
+        this.xAxis = xAxis;
+        this.yAxis = yAxis;
+        this.isovalues = isovalues.clone( );
+        this.executor = executor;
+        this.workspaces = new Workspace[] { new Workspace( yAxis.length, xAxis.length ), new Workspace( yAxis.length, xAxis.length ) };
+    }
+
+    /**
+     * Contours a single frame, without pipelining.
+     *
+     * @param z Row-major z values, row 0 at the bottom.
+     */
+    public IsolineMap<Point> computeIsoLines( double[] z )
+    {
+        DoubleScalarField field = frame( z );
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+        for ( double isovalue : isovalues )
+        {
+            isolineMap.put( isovalue, new MarchingSquares( field, isovalue, workspaces[0] ).computeIsoLines( ) );
+        }
+        return isolineMap;
+    }
+
+    /**
+     * Contours every frame of {@code frames}, passing the isolines of each to {@code consumer} as soon as all its isovalues are done.
+     * Frames are read one ahead of the frame being traced. Not thread-safe: runs must not overlap.
+     */
+    public void computeIsoLines( Iterator<double[]> frames, FrameConsumer consumer )
+    {
+        ExecutorService own = executor == null ? Executors.newSingleThreadExecutor( FrameMarchingSquares::daemon ) : null;
+        Executor executor = own != null ? own : this.executor;
+        try
+        {
+            run( frames, consumer, executor );
+        }
+        finally
+        {
+            if ( own != null )
+            {
+                own.shutdown( );
+            }
+        }
+    }
+
+    protected void run( Iterator<double[]> frames, FrameConsumer consumer, Executor executor )
+    {
+        if ( isovalues.length == 0 )
+        {
+            for ( int frame = 0; frames.hasNext( ); frame++ )
+            {
+                frame( frames.next( ) );
+                consumer.accept( frame, new IsolineMap<>( ) );
+            }
+            return;
+        }
+
+        DoubleScalarField field = frames.hasNext( ) ? frame( frames.next( ) ) : null;
+        int frame = 0;
+        int level = 0;
+        int pair = 0;
+        CompletableFuture<MarchingSquares> pending = field != null ? prepare( field, level, pair, executor ) : null;
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+
+        while ( pending != null )
+        {
+            MarchingSquares current = join( pending );
+
+            // Start on the next pair before tracing this one
+            if ( level + 1 < isovalues.length )
+            {
+                pending = prepare( field, level + 1, pair + 1, executor );
+            }
+            else if ( frames.hasNext( ) )
+            {
+                field = frame( frames.next( ) );
+                pending = prepare( field, 0, pair + 1, executor );
+            }
+            else
+            {
+                pending = null;
+            }
+
+            isolineMap.put( isovalues[level], current.computeContours( ) );
+            pair++;
+            if ( ++level == isovalues.length )
+            {
+                consumer.accept( frame++, isolineMap );
+                isolineMap = new IsolineMap<>( );
+                level = 0;
+            }
+        }
+    }
+
+    /**
+     * Runs the first stage for the given frame and isovalue: edge points and lookup indices.
+     */
+    protected CompletableFuture<MarchingSquares> prepare( DoubleScalarField field, int level, int pair, Executor executor )
+    {
+        Workspace workspace = workspaces[pair & 1];
+        return CompletableFuture.supplyAsync( ( ) -> {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalues[level], workspace );
+            marchingSquares.computeInterpolationPoints( );
+            marchingSquares.computeSegments( );
+            return marchingSquares;
+        }, executor );
+    }
+
+    protected DoubleScalarField frame( double[] z )
+    {
+        return new DoubleScalarField( z, yAxis.length, xAxis.length, xAxis, yAxis );
+    }
+
+    protected static <T> T join( CompletableFuture<T> future )
+    {
+        try
+        {
+            return future.join( );
+        }
+        catch ( CompletionException e )
+        {
+            if ( e.getCause( ) instanceof RuntimeException cause )
+            {
+                throw cause;
+            }
+            if ( e.getCause( ) instanceof Error cause )
+            {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    protected static Thread daemon( Runnable runnable )
+    {
+        Thread thread = new Thread( runnable, "marching-squares-frames" );
+        thread.setDaemon( true );
+        return thread;
+    }
+}
@@ -0,0 +1,208 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes isolines as a GeoJSON FeatureCollection: a LineString per open isoline, a Polygon with a single ring per closed one,
+ * each with its isovalue as the {@code level} property.
+ * <br><br>
+ * Coordinates are written with a fixed number of decimals by a dedicated encoder, trailing zeros dropped, which is much faster
+ * than {@link Double#toString(double)} and, with 6 decimals, precise to about 10 cm in degrees. Levels are written in full.
+ * Values beyond the range of the encoder fall back to {@link Double#toString(double)}, and non-finite values are written as
+ * {@code null}, JSON having no literal for them.
+ */
+public class GeoJsonWriter extends IsolineWriter
+{
+    public static final int DEFAULT_DECIMALS = 6;
+
+    protected static final byte[] HEADER = ascii( "{\"type\":\"FeatureCollection\",\"features\":[" );
+    protected static final byte[] FOOTER = ascii( "]}" );
+    protected static final byte[] LEVEL = ascii( "{\"type\":\"Feature\",\"properties\":{\"level\":" );
+    protected static final byte[] LINE_STRING = ascii( "},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[" );
+    protected static final byte[] POLYGON = ascii( "},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[" );
+    protected static final byte[] NULL = ascii( "null" );
+
+    // Largest scaled value whose units are still exact in a double
+    protected static final double MAX_SCALED = 1e15;
+
+    protected final int decimals;
+    protected final long scale;
+    protected final byte[] digits = new byte[20];
+
+    // Encoded level of the last isovalue, since isolines come grouped by isovalue
+    protected double level = Double.NaN;
+    protected byte[] levelBytes;
+
+    protected int nFeatures;
+    protected boolean closed;
+    protected int nVertices;
+    protected double firstX;
+    protected double firstY;
+
+    public GeoJsonWriter( WritableByteChannel channel )
+    {
+        this( channel, DEFAULT_DECIMALS, DEFAULT_BUFFER_SIZE );
+    }
+
+    /**
+     * @param decimals Number of decimals of coordinates, from 0 to 15.
+     */
+    public GeoJsonWriter( WritableByteChannel channel, int decimals, int bufferSize )
+    {
+        super( channel, bufferSize );
+        if ( decimals < 0 || decimals > 15 )
+        {
+            throw new IllegalArgumentException( "Illegal number of decimals: " + decimals );
+        }
+        this.decimals = decimals;
+        this.scale = (long) Math.pow( 10, decimals );
+        buffer.put( HEADER );
+    }
+
+    @Override
+    public void beginIsoline( double isovalue, boolean closed )
+    {
+        this.closed = closed;
+        this.nVertices = 0;
+
+        ensure( MIN_BUFFER_SIZE );
+        if ( nFeatures++ > 0 )
+        {
+            buffer.put( (byte) ',' );
+        }
+        buffer.put( LEVEL );
+        if ( Double.isFinite( isovalue ) )
+        {
+            if ( levelBytes == null || Double.compare( level, isovalue ) != 0 )
+            {
+                level = isovalue;
+                levelBytes = ascii( Double.toString( isovalue ) );
+            }
+            buffer.put( levelBytes );
+        }
+        else
+        {
+            buffer.put( NULL );
+        }
+        buffer.put( closed ? POLYGON : LINE_STRING );
+    }
+
+    @Override
+    public void vertex( double x, double y )
+    {
+        if ( nVertices++ == 0 )
+        {
+            firstX = x;
+            firstY = y;
+        }
+        else
+        {
+            ensure( 1 );
+            buffer.put( (byte) ',' );
+        }
+        putPosition( x, y );
+    }
+
+    @Override
+    public void endIsoline( )
+    {
+        if ( closed && nVertices > 0 )
+        {
+            // Linear rings end where they start
+            ensure( 1 );
+            buffer.put( (byte) ',' );
+            putPosition( firstX, firstY );
+        }
+        ensure( 8 );
+        if ( closed )
+        {
+            buffer.put( (byte) ']' );
+        }
+        buffer.put( (byte) ']' ).put( (byte) '}' ).put( (byte) '}' );
+    }
+
+    @Override
+    public void finish( ) throws IOException
+    {
+        ensure( FOOTER.length );
+        buffer.put( FOOTER );
+        super.finish( );
+    }
+
+    protected void putPosition( double x, double y )
+    {
+        ensure( 3 + 2 * 25 );
+        buffer.put( (byte) '[' );
+        putDouble( x );
+        buffer.put( (byte) ',' );
+        putDouble( y );
+        buffer.put( (byte) ']' );
+    }
+
+    /**
+     * Writes {@code value} rounded to {@link #decimals} decimals, in at most 25 bytes.
+     */
+    protected void putDouble( double value )
+    {
+        if ( !Double.isFinite( value ) )
+        {
+            buffer.put( NULL );
+            return;
+        }
+        double scaled = Math.abs( value ) * scale;
+        if ( scaled >= MAX_SCALED )
+        {
+            buffer.put( ascii( Double.toString( value ) ) );
+            return;
+        }
+
+        long units = Math.round( scaled );
+        if ( units == 0 )
+        {
+            buffer.put( (byte) '0' );
+            return;
+        }
+        if ( value < 0 )
+        {
+            buffer.put( (byte) '-' );
+        }
+        putLong( units / scale );
+
+        long fraction = units % scale;
+        if ( fraction != 0 )
+        {
+            int n = decimals;
+            while ( fraction % 10 == 0 )
+            {
+                fraction /= 10;
+                n--;
+            }
+            buffer.put( (byte) '.' );
+            for ( int i = n - 1; i >= 0; i-- )
+            {
+                digits[i] = (byte) ( '0' + fraction % 10 );
+                fraction /= 10;
+            }
+            buffer.put( digits, 0, n );
+        }
+    }
+
+    protected void putLong( long value )
+    {
+        int n = digits.length;
+        do
+        {
+            digits[--n] = (byte) ( '0' + value % 10 );
+            value /= 10;
+        }
+        while ( value != 0 );
+        buffer.put( digits, n, digits.length - n );
+    }
+
+    protected static byte[] ascii( String s )
+    {
+        return s.getBytes( StandardCharsets.US_ASCII );
+    }
+}
@@ -0,0 +1,109 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Implicit numbering of the edges of a grid of nGridRows x nGridCols cells, so that an edge, and hence its
+ * interpolation point, can be referred to by a single int.
+ * <br><br>
+ * Horizontal edges (vertexRow, gridCol) are numbered first, row by row, followed by vertical edges (gridRow, vertexCol).
+ */
+public class GridEdges
+{
+    // Sides of a cell, counter-clockwise from the bottom: p01, p12, p23 and p30
+    public static final int BOTTOM = 0;
+    public static final int RIGHT = 1;
+    public static final int TOP = 2;
+    public static final int LEFT = 3;
+
+    protected final int nGridRows;
+    protected final int nGridCols;
+
+    protected final int nHorizontalEdges;
+    protected final int nEdges;
+
+    public GridEdges( int nGridRows, int nGridCols )
+    {
+        this.nGridRows = nGridRows;
+        this.nGridCols = nGridCols;
+
+        long nHorizontalEdges = (long) ( nGridRows + 1 ) * nGridCols;
+        long nEdges = nHorizontalEdges + (long) nGridRows * ( nGridCols + 1 );
+        if ( nEdges > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Too many edges for a grid of " + nGridRows + " x " + nGridCols + " cells" );
+        }
+        this.nHorizontalEdges = (int) nHorizontalEdges;
+        this.nEdges = (int) nEdges;
+    }
+
+    public static GridEdges of( ScalarField field )
+    {
+        return new GridEdges( field.getRows( ) - 1, field.getCols( ) - 1 );
+    }
+
+    public int size( )
+    {
+        return nEdges;
+    }
+
+    public int horizontal( int vertexRow, int gridCol )
+    {
+        return vertexRow * nGridCols + gridCol;
+    }
+
+    public int vertical( int gridRow, int vertexCol )
+    {
+        return nHorizontalEdges + gridRow * ( nGridCols + 1 ) + vertexCol;
+    }
+
+    public boolean isHorizontal( int edge )
+    {
+        return edge < nHorizontalEdges;
+    }
+
+    /**
+     * @return The vertex row of a horizontal edge, or the grid row of a vertical edge.
+     */
+    public int row( int edge )
+    {
+        return edge < nHorizontalEdges ? edge / nGridCols : ( edge - nHorizontalEdges ) / ( nGridCols + 1 );
+    }
+
+    /**
+     * @return The grid column of a horizontal edge, or the vertex column of a vertical edge.
+     */
+    public int col( int edge )
+    {
+        return edge < nHorizontalEdges ? edge % nGridCols : ( edge - nHorizontalEdges ) % ( nGridCols + 1 );
+    }
+
+    /**
+     * @param side One of {@link #BOTTOM}, {@link #RIGHT}, {@link #TOP} or {@link #LEFT}.
+     * @return The edge on the given side of cell (gridRow, gridCol).
+     */
+    public int cellEdge( int gridRow, int gridCol, int side )
+    {
+        return switch ( side )
+        {
+            case BOTTOM -> horizontal( gridRow, gridCol );
+            case RIGHT -> vertical( gridRow, gridCol + 1 );
+            case TOP -> horizontal( gridRow + 1, gridCol );
+            case LEFT -> vertical( gridRow, gridCol );
+            default -> throw new IllegalArgumentException( "Illegal side: " + side );
+        };
+    }
+
+    /**
+     * @return The interpolation point of the given isovalue on the given edge, exactly as computed by {@link MarchingSquares}.
+     */
+    public Point point( ScalarField field, int edge, double isovalue )
+    {
+        if ( edge < nHorizontalEdges )
+        {
+            return MarchingSquares.horizontalEdgePoint( field, row( edge ), col( edge ), isovalue );
+        }
+        else
+        {
+            return MarchingSquares.verticalEdgePoint( field, row( edge ), col( edge ), isovalue );
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Maps positions in index space, (row, col) with fractional parts, to world coordinates.
+ * <br><br>
+ * A field with a geometry, see {@link ScalarField#getGeometry()}, is contoured in index space: the isovalue is located on each
+ * crossed edge as a fraction of the edge, and only the resulting position is converted to x and y. A {@link Regular} geometry
+ * needs no coordinate arrays at all, a {@link Rectilinear} one needs one axis per dimension and a {@link Curvilinear} one stores
+ * x and y for every vertex, as a {@code Point[][]} does.
+ * <br><br>
+ * Positions are given on grid edges, where {@code row} or {@code col} is a whole number; between vertices, coordinates vary linearly.
+ */
+public interface GridGeometry
+{
+    /**
+     * @return Number of vertex rows.
+     */
+    int getRows( );
+
+    /**
+     * @return Number of vertex columns.
+     */
+    int getCols( );
+
+    double getX( double row, double col );
+
+    double getY( double row, double col );
+
+    /**
+     * A regular grid, where x(col) = x0 + col * dx and y(row) = y0 + row * dy.
+     */
+    class Regular implements GridGeometry
+    {
+        protected final int rows;
+        protected final int cols;
+        protected final double x0;
+        protected final double y0;
+        protected final double dx;
+        protected final double dy;
+
+        public Regular( int rows, int cols, double x0, double y0, double dx, double dy )
+        {
+            if ( rows < 2 || cols < 2 )
+            {
+                throw new IllegalArgumentException( "Grid must have at least 2 rows and 2 cols: " + rows + " x " + cols );
+            }
+            this.rows = rows;
+            this.cols = cols;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.dx = dx;
+            this.dy = dy;
+        }
+
+        @Override
+        public int getRows( )
+        {
+            return rows;
+        }
+
+        @Override
+        public int getCols( )
+        {
+            return cols;
+        }
+
+        @Override
+        public double getX( double row, double col )
+        {
+            return x0 + col * dx;
+        }
+
+        @Override
+        public double getY( double row, double col )
+        {
+            return y0 + row * dy;
+        }
+    }
+
+    /**
+     * A rectilinear grid, where x depends only on the column and y only on the row.
+     */
+    class Rectilinear implements GridGeometry
+    {
+        protected final double[] xAxis;
+        protected final double[] yAxis;
+
+        /**
+         * @param xAxis x coordinate of each column.
+         * @param yAxis y coordinate of each row.
+         */
+        public Rectilinear( double[] xAxis, double[] yAxis )
+        {
+            if ( yAxis.length < 2 || xAxis.length < 2 )
+            {
+                throw new IllegalArgumentException( "Grid must have at least 2 rows and 2 cols: " + yAxis.length + " x " + xAxis.length );
+            }
+            this.xAxis = xAxis;
+            this.yAxis = yAxis;
+        }
+
+        @Override
+        public int getRows( )
+        {
+            return yAxis.length;
+        }
+
+        @Override
+        public int getCols( )
+        {
+            return xAxis.length;
+        }
+
+        @Override
+        public double getX( double row, double col )
+        {
+            return interpolate( xAxis, col );
+        }
+
+        @Override
+        public double getY( double row, double col )
+        {
+            return interpolate( yAxis, row );
+        }
+
+        protected static double interpolate( double[] axis, double index )
+        {
+            int i = (int) index;
+            double f = index - i;
+            return f == 0 ? axis[i] : axis[i] + f * ( axis[i + 1] - axis[i] );
+        }
+    }
+
+    /**
+     * A curvilinear grid, with the x and y coordinates of every vertex in flat, row-major arrays.
+     */
+    class Curvilinear implements GridGeometry
+    {
+        protected final int rows;
+        protected final int cols;
+        protected final double[] x;
+        protected final double[] y;
+
+        /**
+         * @param x Row-major x coordinates, row 0 at the bottom.
+         * @param y Row-major y coordinates, row 0 at the bottom.
+         */
+        public Curvilinear( double[] x, double[] y, int rows, int cols )
+        {
+            if ( rows < 2 || cols < 2 )
+            {
+                throw new IllegalArgumentException( "Grid must have at least 2 rows and 2 cols: " + rows + " x " + cols );
+            }
+            if ( x.length != rows * cols || y.length != rows * cols )
+            {
+                throw new IllegalArgumentException( "Expected " + rows + " x " + cols + " coordinates but got " + x.length + " and " + y.length );
+            }
+            this.rows = rows;
+            this.cols = cols;
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * @return The geometry of the points of a {@code Point[][]}, ignoring their z values.
+         */
+        public static Curvilinear of( Point[][] points )
+        {
+            int rows = points.length;
+            int cols = rows > 0 ? points[0].length : 0;
+            double[] x = new double[rows * cols];
+            double[] y = new double[rows * cols];
+            for ( int row = 0; row < rows; row++ )
+            {
+                for ( int col = 0; col < cols; col++ )
+                {
+                    x[row * cols + col] = points[row][col].getX( );
+                    y[row * cols + col] = points[row][col].getY( );
+                }
+            }
+            return new Curvilinear( x, y, rows, cols );
+        }
+
+        @Override
+        public int getRows( )
+        {
+            return rows;
+        }
+
+        @Override
+        public int getCols( )
+        {
+            return cols;
+        }
+
+        @Override
+        public double getX( double row, double col )
+        {
+            return interpolate( x, row, col );
+        }
+
+        @Override
+        public double getY( double row, double col )
+        {
+            return interpolate( y, row, col );
+        }
+
+        /**
+         * Linear interpolation along the edge holding (row, col), exact at vertices; bilinear inside cells.
+         */
+        protected double interpolate( double[] values, double row, double col )
+        {
+            int r = (int) row;
+            int c = (int) col;
+            double t = row - r;
+            double s = col - c;
+            int index = r * cols + c;
+            if ( t == 0 )
+            {
+                return s == 0 ? values[index] : values[index] + s * ( values[index + 1] - values[index] );
+            }
+            if ( s == 0 )
+            {
+                return values[index] + t * ( values[index + cols] - values[index] );
+            }
+            double bottom = values[index] + s * ( values[index + 1] - values[index] );
+            double top = values[index + cols] + s * ( values[index + cols + 1] - values[index + cols] );
+            return bottom + t * ( top - bottom );
+        }
+    }
+}
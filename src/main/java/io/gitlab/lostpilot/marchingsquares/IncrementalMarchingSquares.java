@@ -0,0 +1,317 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
+
+/**
+ * Keeps the isolines of a single isovalue up to date as parts of a mutable field change.
+ * <br><br>
+ * The engine keeps its lookup indices ({@link #binary}), edge points, the links between segments and the traced isolines.
+ * After the z values of a rectangle of vertices have changed, {@link #update(int, int, int, int)} recomputes only the cells touching
+ * that rectangle, then re-traces only the isolines that passed through them, together with the new segments. The cost of an update is
+ * therefore proportional to the size of the rectangle plus the length of the isolines crossing it, not to the size of the grid.
+ * <br><br>
+ * The isolines are always the same as those of {@link MarchingSquares#computeIsoLines(ScalarField, double[])} on the current values,
+ * including the starting point of closed isolines, but re-traced isolines move to the end of {@link #getIsoLines()}.
+ * For several isovalues, keep one engine per isovalue.
+ */
+public class IncrementalMarchingSquares extends MarchingSquares
+{
+    // Ending edge of the segment starting at each edge, or -1
+    protected final int[] next;
+
+    // Starting edge of the segment ending at each edge, or -1
+    protected final int[] previous;
+
+    // Id of the isoline going through each edge, or -1
+    protected final int[] isolineOf;
+
+    protected final Int2ObjectLinkedOpenHashMap<Isoline<Point>> isolines;
+    protected final Int2ObjectLinkedOpenHashMap<IntArrayList> isolineEdges;
+    protected int nextIsolineId;
+
+    public IncrementalMarchingSquares( ScalarField field, double isovalue )
+    {
+        super( field, isovalue );
+
+        this.next = new int[edges.size( )];
+        this.previous = new int[edges.size( )];
+        this.isolineOf = new int[edges.size( )];
+        Arrays.fill( next, -1 );
+        Arrays.fill( previous, -1 );
+        Arrays.fill( isolineOf, -1 );
+
+        this.isolines = new Int2ObjectLinkedOpenHashMap<>( );
+        this.isolineEdges = new Int2ObjectLinkedOpenHashMap<>( );
+
+        computeInterpolationPoints( );
+        computeSegments( );
+        linkSegments( ).trace( new IsolineRecorder( ) );
+        for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+        {
+            link( gridRow, gridRow + 1, 0, nGridCols, null );
+        }
+    }
+
+    /**
+     * @return The current isolines.
+     */
+    public IsolineCollection<Point> getIsoLines( )
+    {
+        IsolineCollection<Point> isolineCollection = new IsolineCollection<>( );
+        for ( Isoline<Point> isoline : isolines.values( ) )
+        {
+            isolineCollection.add( isoline );
+        }
+        return isolineCollection;
+    }
+
+    public double getIsovalue( )
+    {
+        return isovalue;
+    }
+
+    /**
+     * Brings the isolines up to date after the z values of vertices in rows {@code fromRow} (inclusive) to {@code toRow} (exclusive)
+     * and columns {@code fromCol} (inclusive) to {@code toCol} (exclusive) have changed in the field.
+     */
+    public void update( int fromRow, int toRow, int fromCol, int toCol )
+    {
+        if ( fromRow < 0 || toRow > nGridRows + 1 || fromRow >= toRow || fromCol < 0 || toCol > nGridCols + 1 || fromCol >= toCol )
+        {
+            throw new IllegalArgumentException( "Illegal rectangle: rows [" + fromRow + ", " + toRow + "), cols [" + fromCol + ", " + toCol + ")" );
+        }
+
+        // Cells touching a changed vertex
+        int fromGridRow = Math.max( fromRow - 1, 0 );
+        int toGridRow = Math.min( toRow, nGridRows );
+        int fromGridCol = Math.max( fromCol - 1, 0 );
+        int toGridCol = Math.min( toCol, nGridCols );
+
+        // Drop the old segments of these cells, along with the isolines going through them
+        IntLinkedOpenHashSet seeds = new IntLinkedOpenHashSet( );
+        for ( int gridRow = fromGridRow; gridRow < toGridRow; gridRow++ )
+        {
+            for ( int gridCol = fromGridCol; gridCol < toGridCol; gridCol++ )
+            {
+                int[] sides = segmentSides( binary[gridRow][gridCol] );
+                for ( int i = 0; i < sides.length; i += 2 )
+                {
+                    int start = edges.cellEdge( gridRow, gridCol, sides[i] );
+                    int end = edges.cellEdge( gridRow, gridCol, sides[i + 1] );
+                    removeIsoline( isolineOf[start], seeds );
+                    next[start] = -1;
+                    previous[end] = -1;
+                }
+            }
+        }
+
+        computeEdgePoints( fromGridRow, toGridRow, fromGridCol, toGridCol );
+        computeSegments( fromGridRow, toGridRow, fromGridCol, toGridCol );
+        link( fromGridRow, toGridRow, fromGridCol, toGridCol, seeds );
+
+        // Re-trace what is left of the old isolines together with the new segments: open isolines first, then closed ones
+        for ( int edge : seeds )
+        {
+            if ( next[edge] >= 0 && previous[edge] < 0 && isolineOf[edge] < 0 )
+            {
+                trace( edge, false );
+            }
+        }
+        for ( int edge : seeds )
+        {
+            if ( next[edge] >= 0 && isolineOf[edge] < 0 )
+            {
+                trace( firstStart( edge ), true );
+            }
+        }
+    }
+
+    /**
+     * Computes the edge points of all edges of the cells in the given rectangle, clearing those that are no longer crossed.
+     */
+    protected void computeEdgePoints( int fromGridRow, int toGridRow, int fromGridCol, int toGridCol )
+    {
+        ScalarField field = this.field;
+
+        for ( int vertexRow = fromGridRow; vertexRow <= toGridRow; vertexRow++ )
+        {
+            for ( int gridCol = fromGridCol; gridCol < toGridCol; gridCol++ )
+            {
+                boolean crossed = ( field.getZ( vertexRow, gridCol ) < isovalue ) != ( field.getZ( vertexRow, gridCol + 1 ) < isovalue );
+                horizontalEdgePoints[vertexRow][gridCol] = crossed ? horizontalEdgePoint( field, vertexRow, gridCol, isovalue ) : null;
+            }
+        }
+        for ( int gridRow = fromGridRow; gridRow < toGridRow; gridRow++ )
+        {
+            for ( int vertexCol = fromGridCol; vertexCol <= toGridCol; vertexCol++ )
+            {
+                boolean crossed = ( field.getZ( gridRow, vertexCol ) < isovalue ) != ( field.getZ( gridRow + 1, vertexCol ) < isovalue );
+                verticalEdgePoints[gridRow][vertexCol] = crossed ? verticalEdgePoint( field, gridRow, vertexCol, isovalue ) : null;
+            }
+        }
+    }
+
+    /**
+     * Links the segments of the cells in the given rectangle, adding their edges to {@code seeds} if not null.
+     */
+    protected void link( int fromGridRow, int toGridRow, int fromGridCol, int toGridCol, IntLinkedOpenHashSet seeds )
+    {
+        for ( int gridRow = fromGridRow; gridRow < toGridRow; gridRow++ )
+        {
+            for ( int gridCol = fromGridCol; gridCol < toGridCol; gridCol++ )
+            {
+                int[] sides = segmentSides( binary[gridRow][gridCol] );
+                for ( int i = 0; i < sides.length; i += 2 )
+                {
+                    int start = edges.cellEdge( gridRow, gridCol, sides[i] );
+                    int end = edges.cellEdge( gridRow, gridCol, sides[i + 1] );
+                    next[start] = end;
+                    previous[end] = start;
+                    if ( seeds != null )
+                    {
+                        seeds.add( start );
+                        seeds.add( end );
+                    }
+                }
+            }
+        }
+    }
+
+    protected void removeIsoline( int id, IntLinkedOpenHashSet seeds )
+    {
+        if ( id < 0 )
+        {
+            return;
+        }
+        IntArrayList edgeList = isolineEdges.remove( id );
+        isolines.remove( id );
+        for ( int i = 0; i < edgeList.size( ); i++ )
+        {
+            int edge = edgeList.getInt( i );
+            isolineOf[edge] = -1;
+            seeds.add( edge );
+        }
+    }
+
+    /**
+     * @return The starting edge of the first segment, in the order of {@link #computeContours()}, of the closed isoline through {@code edge}.
+     */
+    protected int firstStart( int edge )
+    {
+        int first = edge;
+        long firstRank = rank( edge );
+        for ( int current = next[edge]; current != edge; current = next[current] )
+        {
+            long rank = rank( current );
+            if ( rank < firstRank )
+            {
+                first = current;
+                firstRank = rank;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return The position, in row-major cell order then segment order within the cell, of the segment starting at {@code start}.
+     */
+    protected long rank( int start )
+    {
+        int row = edges.row( start );
+        int col = edges.col( start );
+        if ( edges.isHorizontal( start ) )
+        {
+            long rank = rank( row, col, GridEdges.BOTTOM );
+            return rank >= 0 ? rank : rank( row - 1, col, GridEdges.TOP );
+        }
+        else
+        {
+            long rank = rank( row, col, GridEdges.LEFT );
+            return rank >= 0 ? rank : rank( row, col - 1, GridEdges.RIGHT );
+        }
+    }
+
+    protected long rank( int gridRow, int gridCol, int startSide )
+    {
+        if ( gridRow < 0 || gridRow >= nGridRows || gridCol < 0 || gridCol >= nGridCols )
+        {
+            return -1;
+        }
+        int[] sides = segmentSides( binary[gridRow][gridCol] );
+        for ( int i = 0; i < sides.length; i += 2 )
+        {
+            if ( sides[i] == startSide )
+            {
+                return 2L * ( (long) gridRow * nGridCols + gridCol ) + i / 2;
+            }
+        }
+        return -1;
+    }
+
+    protected void trace( int start, boolean closed )
+    {
+        int id = nextIsolineId++;
+        Isoline<Point> isoline = new Isoline<>( );
+        IntArrayList edgeList = new IntArrayList( );
+
+        int edge = start;
+        do
+        {
+            isoline.add( edgePoint( edge ) );
+            edgeList.add( edge );
+            isolineOf[edge] = id;
+            edge = next[edge];
+        }
+        while ( edge >= 0 && edge != start );
+
+        if ( closed )
+        {
+            isoline.add( isoline.get( 0 ) );
+        }
+        isolines.put( id, isoline );
+        isolineEdges.put( id, edgeList );
+    }
+
+    /**
+     * Records the isolines of the initial trace along with their edges.
+     */
+    protected class IsolineRecorder implements EdgeTracer.Visitor
+    {
+        protected Isoline<Point> isoline;
+        protected IntArrayList edgeList;
+        protected int id;
+
+        @Override
+        public void beginContour( boolean closed )
+        {
+            id = nextIsolineId++;
+            isoline = new Isoline<>( );
+            edgeList = new IntArrayList( );
+        }
+
+        @Override
+        public void edge( int edge )
+        {
+            if ( isolineOf[edge] == id )
+            {
+                // Closed isolines end with their very starting point
+                isoline.add( isoline.get( 0 ) );
+                return;
+            }
+            isoline.add( edgePoint( edge ) );
+            edgeList.add( edge );
+            isolineOf[edge] = id;
+        }
+
+        @Override
+        public void endContour( )
+        {
+            isolines.put( id, isoline );
+            isolineEdges.put( id, edgeList );
+        }
+    }
+}
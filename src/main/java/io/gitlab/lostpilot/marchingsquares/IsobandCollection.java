@@ -0,0 +1,56 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The polygons of the isoband holding the z values in [lower, upper).
+ */
+public class IsobandCollection
+{
+    protected final double lower;
+    protected final double upper;
+    protected final List<IsobandPolygon> polygons;
+
+    public IsobandCollection( double lower, double upper )
+    {
+        this.lower = lower;
+        this.upper = upper;
+        this.polygons = new ArrayList<>( );
+    }
+
+    public boolean add( IsobandPolygon polygon )
+    {
+        return this.polygons.add( polygon );
+    }
+
+    public IsobandPolygon get( int index )
+    {
+        return this.polygons.get( index );
+    }
+
+    public List<IsobandPolygon> getPolygons( )
+    {
+        return this.polygons;
+    }
+
+    public double getLower( )
+    {
+        return lower;
+    }
+
+    public double getUpper( )
+    {
+        return upper;
+    }
+
+    public boolean isEmpty( )
+    {
+        return this.polygons.isEmpty( );
+    }
+
+    public int size( )
+    {
+        return polygons.size( );
+    }
+}
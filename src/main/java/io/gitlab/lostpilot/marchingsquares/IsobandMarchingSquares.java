@@ -0,0 +1,566 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Computes the filled isoband between a lower and an upper isovalue as polygons with holes.
+ * <br><br>
+ * Each vertex is classified as below the band (z &lt; lower), within it, or above it (z &ge; upper), giving one of 81 ternary cases
+ * per cell. Saddles are resolved with the asymptotic decider for each isovalue, as in {@link MarchingSquares#resolveAmbiguity(int, int, int)}.
+ * The boundary of the band within a cell is made of the segments of both isovalues, oriented so that the band is on their left,
+ * plus the parts of the border of the grid within the band. These segments link up into closed rings, which are traced by an
+ * {@link EdgeTracer} over nodes numbered 2 * edge + 0 for the lower and 2 * edge + 1 for the upper isovalue, followed by the
+ * vertices along the border of the grid.
+ * <br><br>
+ * Holes are assigned to shells in the same sweep: the parts of the band within each cell are labelled, and labels are merged
+ * with a union-find across the edges shared with the cells to the left and below. Every ring bounds a single connected
+ * part of the band, whose outer ring is its shell and whose other rings are its holes.
+ */
+public class IsobandMarchingSquares
+{
+    protected static final int LOWER = 0;
+    protected static final int UPPER = 1;
+
+    /**
+     * Layout of the band within a cell, for a ternary case and the saddle deciders of both isovalues.
+     * <br><br>
+     * Local nodes are the corners v0 to v3, then the crossings of each side with the lower and upper isovalue, see {@link #crossing(int, int)}.
+     */
+    protected static class CellCase
+    {
+        // (from, to, piece) triplets of local nodes and part of the band, for the segments with the band on their left
+        protected final int[] segments;
+
+        // Per side, the part of the band holding the part of the side within the band, or -1
+        protected final int[] sidePieces;
+
+        // Per side, the local nodes at both ends of the part of the side within the band, counter-clockwise
+        protected final int[] sideFrom;
+        protected final int[] sideTo;
+
+        protected final int nPieces;
+
+        protected CellCase( int[] segments, int[] sidePieces, int[] sideFrom, int[] sideTo, int nPieces )
+        {
+            this.segments = segments;
+            this.sidePieces = sidePieces;
+            this.sideFrom = sideFrom;
+            this.sideTo = sideTo;
+            this.nPieces = nPieces;
+        }
+    }
+
+    // Indexed by [2 * lowerDecider + upperDecider][t0 + 3 * t1 + 9 * t2 + 27 * t3]
+    protected static final CellCase[][] CELL_CASES;
+
+    static
+    {
+        CELL_CASES = new CellCase[4][81];
+        for ( int deciders = 0; deciders < 4; deciders++ )
+        {
+            for ( int ternaryIndex = 0; ternaryIndex < 81; ternaryIndex++ )
+            {
+                CELL_CASES[deciders][ternaryIndex] = cellCase( ternaryIndex, deciders >> 1, deciders & 1 );
+            }
+        }
+    }
+
+    protected static int crossing( int side, int level )
+    {
+        return 4 + 2 * side + level;
+    }
+
+    protected static int sideOf( int localNode )
+    {
+        return localNode < 4 ? localNode : ( localNode - 4 ) >> 1;
+    }
+
+    /**
+     * Walks counter-clockwise around the cell, side by side from corner side to corner side + 1, to find the parts of the sides within the band,
+     * then groups them with the segments of both isovalues into connected parts of the band.
+     */
+    protected static CellCase cellCase( int ternaryIndex, int lowerDecider, int upperDecider )
+    {
+        int[] t = new int[4];
+        int lowerIndex = 0;
+        int upperIndex = 0;
+        for ( int i = 0, index = ternaryIndex; i < 4; i++, index /= 3 )
+        {
+            t[i] = index % 3;
+            lowerIndex |= ( t[i] >= 1 ? 1 : 0 ) << i;
+            upperIndex |= ( t[i] == 2 ? 1 : 0 ) << i;
+        }
+
+        // Nodes along the perimeter, and whether the perimeter is within the band from each node to the next
+        IntArrayList nodes = new IntArrayList( );
+        IntArrayList classes = new IntArrayList( );
+        for ( int side = 0; side < 4; side++ )
+        {
+            int ta = t[side];
+            int tb = t[( side + 1 ) % 4];
+            nodes.add( side );
+            classes.add( ta );
+            if ( ta < tb )
+            {
+                if ( ta == 0 )
+                {
+                    nodes.add( crossing( side, LOWER ) );
+                    classes.add( 1 );
+                }
+                if ( tb == 2 )
+                {
+                    nodes.add( crossing( side, UPPER ) );
+                    classes.add( 2 );
+                }
+            }
+            else if ( ta > tb )
+            {
+                if ( ta == 2 )
+                {
+                    nodes.add( crossing( side, UPPER ) );
+                    classes.add( 1 );
+                }
+                if ( tb == 0 )
+                {
+                    nodes.add( crossing( side, LOWER ) );
+                    classes.add( 0 );
+                }
+            }
+        }
+
+        int[] parent = new int[12];
+        for ( int i = 0; i < parent.length; i++ )
+        {
+            parent[i] = i;
+        }
+
+        int[] sideFrom = new int[] { -1, -1, -1, -1 };
+        int[] sideTo = new int[] { -1, -1, -1, -1 };
+        for ( int i = 0; i < nodes.size( ); i++ )
+        {
+            if ( classes.getInt( i ) == 1 )
+            {
+                int from = nodes.getInt( i );
+                int to = nodes.getInt( ( i + 1 ) % nodes.size( ) );
+                sideFrom[sideOf( from )] = from;
+                sideTo[sideOf( from )] = to;
+                union( parent, from, to );
+            }
+        }
+
+        // The band is above the lower isovalue, which is on the right of its segments, and below the upper one, which is on their left
+        IntArrayList segments = new IntArrayList( );
+        int[] lowerSides = MarchingSquares.SEGMENT_SIDES[lowerDecider][lowerIndex];
+        for ( int i = 0; i < lowerSides.length; i += 2 )
+        {
+            segments.add( crossing( lowerSides[i + 1], LOWER ) );
+            segments.add( crossing( lowerSides[i], LOWER ) );
+            segments.add( -1 );
+        }
+        int[] upperSides = MarchingSquares.SEGMENT_SIDES[upperDecider][upperIndex];
+        for ( int i = 0; i < upperSides.length; i += 2 )
+        {
+            segments.add( crossing( upperSides[i], UPPER ) );
+            segments.add( crossing( upperSides[i + 1], UPPER ) );
+            segments.add( -1 );
+        }
+        for ( int i = 0; i < segments.size( ); i += 3 )
+        {
+            union( parent, segments.getInt( i ), segments.getInt( i + 1 ) );
+        }
+
+        // Number the parts of the band in side order
+        int[] pieces = new int[] { -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1 };
+        int[] sidePieces = new int[] { -1, -1, -1, -1 };
+        int nPieces = 0;
+        for ( int side = 0; side < 4; side++ )
+        {
+            if ( sideFrom[side] >= 0 )
+            {
+                int root = find( parent, sideFrom[side] );
+                if ( pieces[root] < 0 )
+                {
+                    pieces[root] = nPieces++;
+                }
+                sidePieces[side] = pieces[root];
+            }
+        }
+        for ( int i = 0; i < segments.size( ); i += 3 )
+        {
+            segments.set( i + 2, pieces[find( parent, segments.getInt( i ) )] );
+        }
+
+        return new CellCase( segments.toIntArray( ), sidePieces, sideFrom, sideTo, nPieces );
+    }
+
+    protected static int find( int[] parent, int node )
+    {
+        while ( parent[node] != node )
+        {
+            node = parent[node];
+        }
+        return node;
+    }
+
+    protected static void union( int[] parent, int a, int b )
+    {
+        parent[find( parent, a )] = find( parent, b );
+    }
+
+    protected final ScalarField field;
+    protected final GridEdges edges;
+
+    protected final int nGridRows;
+    protected final int nGridCols;
+
+    protected final double lower;
+    protected final double upper;
+
+    // Nodes for the crossings of both isovalues, followed by the vertices along the border
+    protected final int nCrossings;
+    protected final int nNodes;
+
+    // Union-find over the labels of the parts of the band
+    protected final IntArrayList labels = new IntArrayList( );
+
+    // Label of the part of the band each starting node belongs to
+    protected final Int2IntOpenHashMap nodeLabels = new Int2IntOpenHashMap( );
+
+    protected IsobandMarchingSquares( ScalarField field, double lower, double upper )
+    {
+        if ( !( lower < upper ) )
+        {
+            throw new IllegalArgumentException( "Lower isovalue must be less than upper isovalue: " + lower + " >= " + upper );
+        }
+
+        this.field = field;
+        this.edges = GridEdges.of( field );
+
+        this.nGridRows = field.getRows( ) - 1;
+        this.nGridCols = field.getCols( ) - 1;
+
+        this.lower = lower;
+        this.upper = upper;
+
+        long nNodes = 2L * edges.size( ) + 2L * nGridRows + 2L * nGridCols;
+        if ( nNodes > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Grid too large for isobands: " + field.getRows( ) + " x " + field.getCols( ) );
+        }
+        this.nCrossings = 2 * edges.size( );
+        this.nNodes = (int) nNodes;
+    }
+
+    protected IsobandCollection computeIsoBand( )
+    {
+        EdgeTracer tracer = new EdgeTracer( nNodes );
+        computeSegments( tracer );
+        return computePolygons( tracer );
+    }
+
+    protected void computeSegments( EdgeTracer tracer )
+    {
+        ScalarField field = this.field;
+        double lower = this.lower;
+        double upper = this.upper;
+
+        // Labels of the parts of the sides within the band, along the bottom and top of the current row of cells and to its left
+        int[] bottomLabels = new int[nGridCols];
+        int[] topLabels = new int[nGridCols];
+        int leftLabel = -1;
+        int[] pieceLabels = new int[4];
+
+        for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+        {
+            for ( int gridCol = 0; gridCol < nGridCols; gridCol++ )
+            {
+                double z0 = field.getZ( gridRow, gridCol );
+                double z1 = field.getZ( gridRow, gridCol + 1 );
+                double z2 = field.getZ( gridRow + 1, gridCol + 1 );
+                double z3 = field.getZ( gridRow + 1, gridCol );
+
+                int t0 = z0 < lower ? 0 : z0 < upper ? 1 : 2;
+                int t1 = z1 < lower ? 0 : z1 < upper ? 1 : 2;
+                int t2 = z2 < lower ? 0 : z2 < upper ? 1 : 2;
+                int t3 = z3 < lower ? 0 : z3 < upper ? 1 : 2;
+
+                int ternaryIndex = t0 + 3 * t1 + 9 * t2 + 27 * t3;
+                if ( ternaryIndex == 0 || ternaryIndex == 80 )
+                {
+                    continue;
+                }
+
+                int deciders = 0;
+                if ( ( t0 >= 1 ) == ( t2 >= 1 ) && ( t1 >= 1 ) == ( t3 >= 1 ) && ( t0 >= 1 ) != ( t1 >= 1 ) )
+                {
+                    deciders |= MarchingSquares.asymptoticDecider( z0, z1, z2, z3 ) < lower ? 0 : 2;
+                }
+                if ( ( t0 == 2 ) == ( t2 == 2 ) && ( t1 == 2 ) == ( t3 == 2 ) && ( t0 == 2 ) != ( t1 == 2 ) )
+                {
+                    deciders |= MarchingSquares.asymptoticDecider( z0, z1, z2, z3 ) < upper ? 0 : 1;
+                }
+                CellCase cellCase = CELL_CASES[deciders][ternaryIndex];
+                int[] sidePieces = cellCase.sidePieces;
+
+                // Join the parts of the band with those of the cells below and to the left
+                for ( int piece = 0; piece < cellCase.nPieces; piece++ )
+                {
+                    pieceLabels[piece] = -1;
+                }
+                if ( sidePieces[GridEdges.BOTTOM] >= 0 && gridRow > 0 )
+                {
+                    pieceLabels[sidePieces[GridEdges.BOTTOM]] = bottomLabels[gridCol];
+                }
+                if ( sidePieces[GridEdges.LEFT] >= 0 && gridCol > 0 )
+                {
+                    int piece = sidePieces[GridEdges.LEFT];
+                    pieceLabels[piece] = pieceLabels[piece] < 0 ? leftLabel : union( pieceLabels[piece], leftLabel );
+                }
+                for ( int piece = 0; piece < cellCase.nPieces; piece++ )
+                {
+                    if ( pieceLabels[piece] < 0 )
+                    {
+                        pieceLabels[piece] = labels.size( );
+                        labels.add( labels.size( ) );
+                    }
+                }
+                if ( sidePieces[GridEdges.TOP] >= 0 )
+                {
+                    topLabels[gridCol] = pieceLabels[sidePieces[GridEdges.TOP]];
+                }
+                if ( sidePieces[GridEdges.RIGHT] >= 0 )
+                {
+                    leftLabel = pieceLabels[sidePieces[GridEdges.RIGHT]];
+                }
+
+                int[] segments = cellCase.segments;
+                for ( int i = 0; i < segments.length; i += 3 )
+                {
+                    addSegment( tracer, node( gridRow, gridCol, segments[i] ), node( gridRow, gridCol, segments[i + 1] ), pieceLabels[segments[i + 2]] );
+                }
+
+                // Parts of the border of the grid within the band
+                for ( int side = 0; side < 4; side++ )
+                {
+                    if ( sidePieces[side] >= 0 && isBorder( gridRow, gridCol, side ) )
+                    {
+                        addSegment( tracer, node( gridRow, gridCol, cellCase.sideFrom[side] ), node( gridRow, gridCol, cellCase.sideTo[side] ),
+                                pieceLabels[sidePieces[side]] );
+                    }
+                }
+            }
+
+            int[] swap = bottomLabels;
+            bottomLabels = topLabels;
+            topLabels = swap;
+        }
+    }
+
+    protected void addSegment( EdgeTracer tracer, int start, int end, int label )
+    {
+        tracer.addSegment( start, end );
+        nodeLabels.put( start, label );
+    }
+
+    protected boolean isBorder( int gridRow, int gridCol, int side )
+    {
+        return switch ( side )
+        {
+            case GridEdges.BOTTOM -> gridRow == 0;
+            case GridEdges.RIGHT -> gridCol == nGridCols - 1;
+            case GridEdges.TOP -> gridRow == nGridRows - 1;
+            case GridEdges.LEFT -> gridCol == 0;
+            default -> throw new IllegalArgumentException( "Illegal side: " + side );
+        };
+    }
+
+    /**
+     * @return The node of a local node of cell (gridRow, gridCol). Corners only have a node on the border of the grid.
+     */
+    protected int node( int gridRow, int gridCol, int localNode )
+    {
+        if ( localNode < 4 )
+        {
+            int vertexRow = gridRow + ( localNode >= 2 ? 1 : 0 );
+            int vertexCol = gridCol + ( localNode == 1 || localNode == 2 ? 1 : 0 );
+            return nCrossings + borderIndex( vertexRow, vertexCol );
+        }
+        int side = ( localNode - 4 ) >> 1;
+        int level = ( localNode - 4 ) & 1;
+        return 2 * edges.cellEdge( gridRow, gridCol, side ) + level;
+    }
+
+    /**
+     * @return The position of a vertex on the border of the grid, counter-clockwise from the lower left corner.
+     */
+    protected int borderIndex( int vertexRow, int vertexCol )
+    {
+        if ( vertexRow == 0 && vertexCol < nGridCols )
+        {
+            return vertexCol;
+        }
+        if ( vertexCol == nGridCols && vertexRow < nGridRows )
+        {
+            return nGridCols + vertexRow;
+        }
+        if ( vertexRow == nGridRows && vertexCol > 0 )
+        {
+            return nGridCols + nGridRows + ( nGridCols - vertexCol );
+        }
+        return 2 * nGridCols + nGridRows + ( nGridRows - vertexRow );
+    }
+
+    protected Point point( int node )
+    {
+        if ( node < nCrossings )
+        {
+            return edges.point( field, node >> 1, ( node & 1 ) == LOWER ? lower : upper );
+        }
+
+        int index = node - nCrossings;
+        int vertexRow;
+        int vertexCol;
+        if ( index < nGridCols )
+        {
+            vertexRow = 0;
+            vertexCol = index;
+        }
+        else if ( index < nGridCols + nGridRows )
+        {
+            vertexRow = index - nGridCols;
+            vertexCol = nGridCols;
+        }
+        else if ( index < 2 * nGridCols + nGridRows )
+        {
+            vertexRow = nGridRows;
+            vertexCol = nGridCols - ( index - nGridCols - nGridRows );
+        }
+        else
+        {
+            vertexRow = nGridRows - ( index - 2 * nGridCols - nGridRows );
+            vertexCol = 0;
+        }
+        return new Point( field.getX( vertexRow, vertexCol ), field.getY( vertexRow, vertexCol ), field.getZ( vertexRow, vertexCol ) );
+    }
+
+    protected int find( int label )
+    {
+        while ( labels.getInt( label ) != label )
+        {
+            int grandParent = labels.getInt( labels.getInt( label ) );
+            labels.set( label, grandParent );
+            label = grandParent;
+        }
+        return label;
+    }
+
+    /**
+     * @return The root of the merged labels.
+     */
+    protected int union( int a, int b )
+    {
+        int rootA = find( a );
+        int rootB = find( b );
+        if ( rootA != rootB )
+        {
+            labels.set( rootB, rootA );
+        }
+        return rootA;
+    }
+
+    /**
+     * Traces the rings and makes the outer ring of each connected part of the band its shell, and the others its holes.
+     */
+    protected IsobandCollection computePolygons( EdgeTracer tracer )
+    {
+        RingCollector rings = new RingCollector( );
+        tracer.trace( rings );
+
+        // The shell encloses its holes, so it has the largest area whatever the orientation of the axes
+        Int2IntOpenHashMap shellRings = new Int2IntOpenHashMap( );
+        for ( int i = 0; i < rings.rings.size( ); i++ )
+        {
+            int component = rings.components.getInt( i );
+            if ( !shellRings.containsKey( component ) || Math.abs( rings.areas.getDouble( i ) ) > Math.abs( rings.areas.getDouble( shellRings.get( component ) ) ) )
+            {
+                shellRings.put( component, i );
+            }
+        }
+
+        IsobandCollection isoband = new IsobandCollection( lower, upper );
+        Int2ObjectLinkedOpenHashMap<IsobandPolygon> polygons = new Int2ObjectLinkedOpenHashMap<>( );
+        for ( int i = 0; i < rings.rings.size( ); i++ )
+        {
+            int component = rings.components.getInt( i );
+            if ( shellRings.get( component ) == i )
+            {
+                IsobandPolygon polygon = new IsobandPolygon( rings.rings.get( i ) );
+                polygons.put( component, polygon );
+                isoband.add( polygon );
+            }
+        }
+        for ( int i = 0; i < rings.rings.size( ); i++ )
+        {
+            int component = rings.components.getInt( i );
+            if ( shellRings.get( component ) != i )
+            {
+                polygons.get( component ).addHole( rings.rings.get( i ) );
+            }
+        }
+        return isoband;
+    }
+
+    /**
+     * Turns traced nodes into rings, along with their signed area and the connected part of the band they bound.
+     */
+    protected class RingCollector implements EdgeTracer.Visitor
+    {
+        protected final List<Isoline<Point>> rings = new ArrayList<>( );
+        protected final DoubleArrayList areas = new DoubleArrayList( );
+        protected final IntArrayList components = new IntArrayList( );
+
+        protected Isoline<Point> ring;
+        protected int startingNode;
+        protected double area;
+
+        @Override
+        public void beginContour( boolean closed )
+        {
+            ring = new Isoline<>( );
+            startingNode = -1;
+            area = 0.0;
+        }
+
+        @Override
+        public void edge( int node )
+        {
+            Point point;
+            if ( startingNode < 0 )
+            {
+                startingNode = node;
+                point = point( node );
+            }
+            else
+            {
+                point = node == startingNode ? ring.get( 0 ) : point( node );
+                Point previous = ring.get( ring.size( ) - 1 );
+                area += previous.getX( ) * point.getY( ) - point.getX( ) * previous.getY( );
+            }
+            ring.add( point );
+        }
+
+        @Override
+        public void endContour( )
+        {
+            rings.add( ring );
+            areas.add( area / 2.0 );
+            components.add( find( nodeLabels.get( startingNode ) ) );
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A connected part of an isoband: a closed shell and the closed holes inside it.
+ * <br><br>
+ * As for closed isolines, each ring ends with the very same point it starts with. In index space (rows up, columns right),
+ * shells run counter-clockwise and holes clockwise, so that the band is always on the left.
+ */
+public class IsobandPolygon
+{
+    protected final Isoline<Point> shell;
+    protected final List<Isoline<Point>> holes;
+
+    public IsobandPolygon( Isoline<Point> shell )
+    {
+        this.shell = shell;
+        this.holes = new ArrayList<>( );
+    }
+
+    public boolean addHole( Isoline<Point> hole )
+    {
+        return this.holes.add( hole );
+    }
+
+    public Isoline<Point> getShell( )
+    {
+        return shell;
+    }
+
+    public List<Isoline<Point>> getHoles( )
+    {
+        return holes;
+    }
+}
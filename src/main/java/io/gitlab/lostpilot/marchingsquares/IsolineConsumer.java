@@ -0,0 +1,12 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Receives isolines one at a time, as soon as they are complete.
+ * <br><br>
+ * As in {@link IsolineCollection}, a closed isoline ends with the very same point it starts with.
+ */
+@FunctionalInterface
+public interface IsolineConsumer
+{
+    void accept( double isovalue, Isoline<Point> isoline );
+}
@@ -0,0 +1,18 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Receives isolines vertex by vertex, as they are traced, so that they can be written out or dropped right away
+ * instead of being collected into {@link Isoline}s of {@link Point}s.
+ * <br><br>
+ * Each isoline is a call to {@link #beginIsoline(double, boolean)}, one call to {@link #vertex(double, double)} per vertex
+ * and a call to {@link #endIsoline()}. Isolines come in the same order and with the same vertices as in {@link IsolineCollection},
+ * except that closed isolines do not repeat their starting vertex at the end.
+ */
+public interface IsolineSink
+{
+    void beginIsoline( double isovalue, boolean closed );
+
+    void vertex( double x, double y );
+
+    void endIsoline( );
+}
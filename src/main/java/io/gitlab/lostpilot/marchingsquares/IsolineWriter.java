@@ -0,0 +1,95 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An {@link IsolineSink} that serializes isolines into a reusable byte buffer, handed over to a channel whenever it fills up.
+ * <br><br>
+ * Isolines can be written straight from the engine with {@link MarchingSquares#computeIsoLines(ScalarField, double[], IsolineSink)},
+ * or from packed isolines with {@link #write(PackedIsolineMap)}. Call {@link #finish()} once done. To write into memory, wrap a
+ * {@link java.io.ByteArrayOutputStream} with {@link java.nio.channels.Channels#newChannel(java.io.OutputStream)}.
+ * <br><br>
+ * Sink callbacks cannot throw {@link IOException}, so failures to write to the channel surface as {@link UncheckedIOException}.
+ */
+public abstract class IsolineWriter implements IsolineSink, Flushable
+{
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    // The most any single put can ask for, see ensure
+    protected static final int MIN_BUFFER_SIZE = 256;
+
+    protected final WritableByteChannel channel;
+    protected final ByteBuffer buffer;
+
+    protected IsolineWriter( WritableByteChannel channel, int bufferSize )
+    {
+        if ( bufferSize < MIN_BUFFER_SIZE )
+        {
+            throw new IllegalArgumentException( "Buffer must hold at least " + MIN_BUFFER_SIZE + " bytes: " + bufferSize );
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate( bufferSize ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * Writes all isolines of {@code isolineMap}, isovalue by isovalue.
+     */
+    public void write( PackedIsolineMap isolineMap )
+    {
+        for ( var entry : isolineMap.entrySet( ) )
+        {
+            PackedIsolines isolines = entry.getValue( );
+            for ( int i = 0; i < isolines.size( ); i++ )
+            {
+                beginIsoline( entry.getDoubleKey( ), isolines.isClosed( i ) );
+                for ( int j = 0; j < isolines.getVertexCount( i ); j++ )
+                {
+                    vertex( isolines.getX( i, j ), isolines.getY( i, j ) );
+                }
+                endIsoline( );
+            }
+        }
+    }
+
+    /**
+     * Writes whatever ends the output, then flushes. The channel is left open.
+     */
+    public void finish( ) throws IOException
+    {
+        flush( );
+    }
+
+    @Override
+    public void flush( ) throws IOException
+    {
+        buffer.flip( );
+        while ( buffer.hasRemaining( ) )
+        {
+            channel.write( buffer );
+        }
+        buffer.clear( );
+    }
+
+    /**
+     * Makes room for {@code n} bytes, at most {@link #MIN_BUFFER_SIZE}, flushing the buffer if needed.
+     */
+    protected void ensure( int n )
+    {
+        if ( buffer.remaining( ) < n )
+        {
+            try
+            {
+                flush( );
+            }
+            catch ( IOException e )
+            {
+                throw new UncheckedIOException( e );
+            }
+        }
+    }
+}
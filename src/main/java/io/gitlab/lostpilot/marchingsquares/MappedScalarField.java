@@ -0,0 +1,229 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A scalar field whose z values are read straight from a memory-mapped raster file, without copying them to the heap.
+ * <br><br>
+ * The file holds row-major float32 or float64 values, row 0 first and at the bottom, in either byte order. It either starts with a
+ * {@value #HEADER_SIZE} byte header written by {@link #write} and read by {@link #open(Path)}, or is a raw raster described
+ * by a sidecar and read by {@link #open(Path, ValueType, ByteOrder, long, int, int, double, double, double, double)}.
+ * <br><br>
+ * Header layout: the magic {@code MSQR}, one byte {@code 'L'} or {@code 'B'} for the byte order of everything that follows,
+ * one byte 4 or 8 for the size of a value, two bytes of padding, then rows and cols as ints and x0, y0, dx, dy as doubles.
+ * <br><br>
+ * A single mapping is limited to 2 GB, so larger rasters are mapped in several chunks of whole rows.
+ */
+public class MappedScalarField extends ArrayScalarField
+{
+    public static final int HEADER_SIZE = 48;
+
+    protected static final byte[] MAGIC = "MSQR".getBytes( StandardCharsets.US_ASCII );
+
+    public enum ValueType
+    {
+        FLOAT32( 4 ), FLOAT64( 8 );
+
+        protected final int bytes;
+
+        ValueType( int bytes )
+        {
+            this.bytes = bytes;
+        }
+
+        public int getBytes( )
+        {
+            return bytes;
+        }
+
+        protected static ValueType of( int bytes )
+        {
+            return switch ( bytes )
+            {
+                case 4 -> FLOAT32;
+                case 8 -> FLOAT64;
+                default -> throw new IllegalArgumentException( "Illegal value size: " + bytes );
+            };
+        }
+    }
+
+    protected final ValueType type;
+    protected final int rowsPerChunk;
+
+    // One of these is null, depending on the type
+    protected final FloatBuffer[] floats;
+    protected final DoubleBuffer[] doubles;
+
+    protected MappedScalarField( FileChannel channel, ValueType type, ByteOrder order, long offset, int rows, int cols, double[] xAxis, double[] yAxis ) throws IOException
+    {
+        super( (long) rows * cols, rows, cols, xAxis, yAxis );
+
+        long rowBytes = (long) cols * type.bytes;
+        if ( channel.size( ) < offset + rows * rowBytes )
+        {
+            throw new IllegalArgumentException( "Expected at least " + ( offset + rows * rowBytes ) + " bytes but got " + channel.size( ) );
+        }
+
+        this.type = type;
+        this.rowsPerChunk = (int) Math.min( rows, Integer.MAX_VALUE / rowBytes );
+        if ( rowsPerChunk == 0 )
+        {
+            throw new IllegalArgumentException( "Row too large to map: " + rowBytes + " bytes" );
+        }
+
+        int nChunks = ( rows + rowsPerChunk - 1 ) / rowsPerChunk;
+        this.floats = type == ValueType.FLOAT32 ? new FloatBuffer[nChunks] : null;
+        this.doubles = type == ValueType.FLOAT64 ? new DoubleBuffer[nChunks] : null;
+        for ( int chunk = 0; chunk < nChunks; chunk++ )
+        {
+            int chunkRows = Math.min( rowsPerChunk, rows - chunk * rowsPerChunk );
+            ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, offset + chunk * rowsPerChunk * rowBytes, chunkRows * rowBytes ).order( order );
+            if ( type == ValueType.FLOAT32 )
+            {
+                floats[chunk] = buffer.asFloatBuffer( );
+            }
+            else
+            {
+                doubles[chunk] = buffer.asDoubleBuffer( );
+            }
+        }
+    }
+
+    /**
+     * Maps a raster file starting with a header, see {@link MappedScalarField}.
+     */
+    public static MappedScalarField open( Path path ) throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+        {
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+            while ( header.hasRemaining( ) )
+            {
+                if ( channel.read( header ) < 0 )
+                {
+                    throw new IllegalArgumentException( "Missing header: " + path );
+                }
+            }
+            header.flip( );
+
+            byte[] magic = new byte[MAGIC.length];
+            header.get( magic );
+            if ( !Arrays.equals( magic, MAGIC ) )
+            {
+                throw new IllegalArgumentException( "Not a raster file: " + path );
+            }
+            ByteOrder order = switch ( header.get( ) )
+            {
+                case 'L' -> ByteOrder.LITTLE_ENDIAN;
+                case 'B' -> ByteOrder.BIG_ENDIAN;
+                default -> throw new IllegalArgumentException( "Illegal byte order: " + path );
+            };
+            ValueType type = ValueType.of( header.get( ) );
+            header.order( order ).position( 8 );
+
+            int rows = header.getInt( );
+            int cols = header.getInt( );
+            double x0 = header.getDouble( );
+            double y0 = header.getDouble( );
+            double dx = header.getDouble( );
+            double dy = header.getDouble( );
+
+            // Checked before allocating the axes and mapping anything
+            if ( rows < 2 || cols < 2 )
+            {
+                throw new IllegalArgumentException( "Illegal raster size " + rows + " x " + cols + ": " + path );
+            }
+            long size = HEADER_SIZE + (long) rows * cols * type.bytes;
+            if ( channel.size( ) < size )
+            {
+                throw new IllegalArgumentException( "Expected at least " + size + " bytes but got " + channel.size( ) + ": " + path );
+            }
+
+            return new MappedScalarField( channel, type, order, HEADER_SIZE, rows, cols, axis( x0, dx, cols ), axis( y0, dy, rows ) );
+        }
+    }
+
+    /**
+     * Maps a raw raster file whose layout is known from elsewhere, such as a sidecar file.
+     *
+     * @param offset Position of the first value in the file.
+     */
+    public static MappedScalarField open( Path path, ValueType type, ByteOrder order, long offset, int rows, int cols, double x0, double y0, double dx, double dy ) throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+        {
+            return new MappedScalarField( channel, type, order, offset, rows, cols, axis( x0, dx, cols ), axis( y0, dy, rows ) );
+        }
+    }
+
+    /**
+     * Writes a raster file with a header, which can then be read by {@link #open(Path)}. Values are narrowed for {@link ValueType#FLOAT32}.
+     */
+    public static void write( Path path, double[] z, int rows, int cols, double x0, double y0, double dx, double dy, ValueType type, ByteOrder order ) throws IOException
+    {
+        if ( z.length != (long) rows * cols )
+        {
+            throw new IllegalArgumentException( "Expected " + rows + " x " + cols + " z values but got " + z.length );
+        }
+
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) )
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( 1 << 16 ).order( order );
+            buffer.put( MAGIC );
+            buffer.put( (byte) ( order == ByteOrder.LITTLE_ENDIAN ? 'L' : 'B' ) );
+            buffer.put( (byte) type.bytes );
+            buffer.putShort( (short) 0 );
+            buffer.putInt( rows ).putInt( cols );
+            buffer.putDouble( x0 ).putDouble( y0 ).putDouble( dx ).putDouble( dy );
+
+            for ( double value : z )
+            {
+                if ( buffer.remaining( ) < type.bytes )
+                {
+                    flush( channel, buffer );
+                }
+                if ( type == ValueType.FLOAT32 )
+                {
+                    buffer.putFloat( (float) value );
+                }
+                else
+                {
+                    buffer.putDouble( value );
+                }
+            }
+            flush( channel, buffer );
+        }
+    }
+
+    protected static void flush( FileChannel channel, ByteBuffer buffer ) throws IOException
+    {
+        buffer.flip( );
+        while ( buffer.hasRemaining( ) )
+        {
+            channel.write( buffer );
+        }
+        buffer.clear( );
+    }
+
+    @Override
+    public double getZ( int row, int col )
+    {
+        int chunk = row / rowsPerChunk;
+        int index = ( row - chunk * rowsPerChunk ) * cols + col;
+        return floats != null ? floats[chunk].get( index ) : doubles[chunk].get( index );
+    }
+
+    public ValueType getType( )
+    {
+        return type;
+    }
+}
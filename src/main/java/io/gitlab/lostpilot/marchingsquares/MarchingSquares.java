@@ -1,13 +1,11 @@
 package io.gitlab.lostpilot.marchingsquares;
 
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Verbatim from <a href="https://en.wikipedia.org/wiki/Marching_squares">Wikipedia: marching squares</a> is an algorithm that generates contours for a two-dimensional scalar field
@@ -15,371 +13,1352 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class MarchingSquares
 {
-    protected final Grid grid;
+    protected final ScalarField field;
     protected final double isovalue;
 
+    protected final int nGridRows;
+    protected final int nGridCols;
+
+    protected final GridEdges edges;
+
     protected final Point[][] horizontalEdgePoints;
     protected final Point[][] verticalEdgePoints;
 
-    protected final Segment[][][] segments;
+    // Interleaved single-precision edge points indexed by edge, used instead of the arrays above when packing floats
+    protected float[] edgeXY;
 
+    // Lookup index of each cell, plus DECIDER_ABOVE for resolved saddles, see SEGMENT_SIDES
     protected int[][] binary;
 
-    protected MarchingSquares( Grid grid, double isovalue )
+    // Owner of the buffers above
+    protected final Workspace workspace;
+
+    // Cells to contour, or null for all of them
+    protected final ValidityMask mask;
+
+    // Read once per call, so that metrics cost nothing while disabled
+    protected static volatile ContourMetrics.Listener metricsListener;
+
+    protected MarchingSquares( ScalarField field, double isovalue )
+    {
+        this( field, isovalue, Workspace.of( field ) );
+    }
+
+    /**
+     * Borrows the buffers of {@code workspace} instead of allocating them. The workspace must not be used by any other
+     * engine until this one is done.
+     */
+    protected MarchingSquares( ScalarField field, double isovalue, Workspace workspace )
+    {
+        this( field, isovalue, workspace, null );
+    }
+
+    /**
+     * Only contours the valid cells of {@code mask}, if not null, whenever the whole field is contoured.
+     */
+    protected MarchingSquares( ScalarField field, double isovalue, Workspace workspace, ValidityMask mask )
     {
-        this.grid = grid;
+        workspace.check( field );
+        if ( mask != null && !mask.fits( field ) )
+        {
+            throw new IllegalArgumentException( "Mask of " + mask.getRows( ) + " x " + mask.getCols( ) + " does not fit a "
+                    + field.getRows( ) + " x " + field.getCols( ) + " field" );
+        }
+
+        this.field = field;
         this.isovalue = isovalue;
 
-        int nGridRows = grid.cells.length;
-        int nGridCols = grid.cells[0].length;
+        this.nGridRows = field.getRows( ) - 1;
+        this.nGridCols = field.getCols( ) - 1;
 
-        this.horizontalEdgePoints = new Point[nGridRows + 1][nGridRows];
-        this.verticalEdgePoints = new Point[nGridRows][nGridCols + 1];
+        this.edges = workspace.edges;
 
-        this.segments = new Segment[nGridRows][nGridCols][];
+        this.horizontalEdgePoints = workspace.horizontalEdgePoints;
+        this.verticalEdgePoints = workspace.verticalEdgePoints;
+
+        this.binary = workspace.binary;
+        this.workspace = workspace;
+        this.mask = mask;
+    }
 
-        this.binary = new int[nGridRows][nGridCols];
+    /**
+     * Sets the listener receiving the {@link ContourMetrics} of every call contouring a whole field at one isovalue, or turns
+     * metrics off if null, which is the default. The listener is global: it sees calls from all threads, and from every entry point
+     * but the indexed, banded and single-pass ones.
+     */
+    public static void setMetricsListener( ContourMetrics.Listener listener )
+    {
+        metricsListener = listener;
     }
 
     protected IsolineCollection<Point> computeIsoLines( )
     {
+        ContourMetrics.Listener listener = metricsListener;
+        if ( listener != null )
+        {
+            IsolineCollection<Point> contours = new IsolineCollection<>( );
+            measure( listener, true, new ContourCollector( contours ) );
+            return contours;
+        }
+
         computeInterpolationPoints( );
         computeSegments( );
         return computeContours( );
     }
 
-    protected void computeInterpolationPoints( )
+    /**
+     * Runs the whole pipeline into {@code visitor}, as {@link #computeIsoLines()} does, and reports its metrics to {@code listener}.
+     *
+     * @param interpolate Whether to compute the edge points first.
+     */
+    protected void measure( ContourMetrics.Listener listener, boolean interpolate, EdgeTracer.Visitor visitor )
     {
-        Cell[][] cells = grid.cells;
+        ContourMetrics metrics = new ContourMetrics( isovalue );
+        long allocated = ContourMetrics.threadAllocatedBytes( );
 
-        int nGridRows = cells.length;
-        int nGridCols = cells[0].length;
-
-        // Loop through grid and for each cell just handle left and bottom edges
-        for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+        long start = System.nanoTime( );
+        long interpolated = start;
+        if ( interpolate )
         {
-            for ( int gridCol = 0; gridCol < nGridCols; gridCol++ )
-            {
-                Cell cell = cells[gridRow][gridCol];
-
-                Point v0 = cell.v0;
-                Point v1 = cell.v1;
-                Point v3 = cell.v3;
+            computeInterpolationPoints( );
+            interpolated = System.nanoTime( );
+        }
+        computeSegments( );
+        long segmented = System.nanoTime( );
+        EdgeTracer tracer = linkSegments( );
+        metrics.segments = tracer.getSegmentCount( );
+        tracer.trace( new CountingVisitor( visitor, metrics ) );
+        long traced = System.nanoTime( );
 
-                int b0 = v0.getZ( ) < isovalue ? 0 : 1;
-                int b1 = v1.getZ( ) < isovalue ? 0 : 1;
-                int b3 = v3.getZ( ) < isovalue ? 0 : 1;
+        metrics.interpolationNanos = interpolated - start;
+        metrics.segmentNanos = segmented - interpolated;
+        metrics.tracingNanos = traced - segmented;
+        if ( allocated >= 0 )
+        {
+            metrics.allocatedBytes = ContourMetrics.threadAllocatedBytes( ) - allocated;
+        }
 
-                if ( b0 != b1 )
+        // Masked-out cells are not visited, and their lookup index is cleared
+        metrics.cells = mask != null ? mask.getValidCellCount( ) : (long) nGridRows * nGridCols;
+        for ( int[] binaryRow : binary )
+        {
+            for ( int code : binaryRow )
+            {
+                int lookupIndex = code & 15;
+                if ( lookupIndex != 0 && lookupIndex != 15 )
                 {
-                    double x01 = lerp( v0.getX( ), v0.getZ( ), v1.getX( ), v1.getZ( ), isovalue );
-                    double y01 = v0.getY( );
-                    horizontalEdgePoints[gridRow][gridCol] = new Point( x01, y01, isovalue );
+                    metrics.crossingCells++;
                 }
-
-                if ( b3 != b0 )
+                if ( lookupIndex == 5 || lookupIndex == 10 )
                 {
-                    double x30 = v3.getX( );
-                    double y30 = lerp( v3.getY( ), v3.getZ( ), v0.getY( ), v0.getZ( ), isovalue );
-                    verticalEdgePoints[gridRow][gridCol] = new Point( x30, y30, isovalue );
+                    metrics.saddleCells++;
                 }
             }
         }
 
-        // Now handle the remaining top edge
+        listener.contoured( metrics );
+    }
+
+    /**
+     * Same as {@link #computeIsoLines()} except that only the cells of the blocks of {@code index} that straddle the isovalue
+     * are visited. Cells outside these blocks cannot hold any segment, so the isolines are the same.
+     */
+    protected IsolineCollection<Point> computeIsoLines( MinMaxIndex index )
+    {
+        checkIndex( field, index );
+        int[] blocks = index.findBlocks( isovalue );
+
+        for ( int block : blocks )
         {
-            int gridRow = nGridRows - 1;
-            for ( int gridCol = 0; gridCol < nGridCols; gridCol++ )
-            {
-                Cell cell = cells[gridRow][gridCol];
+            computeInterpolationPoints( index.fromRow( block ), index.toRow( block ), index.fromCol( block ), index.toCol( block ) );
+        }
+        for ( int block : blocks )
+        {
+            computeSegments( index.fromRow( block ), index.toRow( block ), index.fromCol( block ), index.toCol( block ) );
+        }
 
-                Point v2 = cell.v2;
-                Point v3 = cell.v3;
+        return computeContours( linkSegments( index, blocks, 0, 0 ) );
+    }
 
-                int b2 = v2.getZ( ) < isovalue ? 0 : 1;
-                int b3 = v3.getZ( ) < isovalue ? 0 : 1;
+    protected static void checkIndex( ScalarField field, MinMaxIndex index )
+    {
+        if ( !index.fits( field ) )
+        {
+            throw new IllegalArgumentException( "Index does not fit a " + field.getRows( ) + " x " + field.getCols( ) + " field" );
+        }
+    }
 
-                if ( b2 != b3 )
+    /**
+     * @return A tracer holding the segments of the cells of {@code blocks}, linked by edge in row-major cell order. Grid row r
+     * of the index is grid row {@code r - fromRow} of this engine, and likewise for columns; blocks are clipped to the grid.
+     */
+    protected EdgeTracer linkSegments( MinMaxIndex index, int[] blocks, int fromRow, int fromCol )
+    {
+        // Blocks are sorted in row-major order, so visiting them row by row keeps the row-major order of the cells
+        EdgeTracer tracer = workspace.getTracer( );
+        int from = 0;
+        while ( from < blocks.length )
+        {
+            int to = from;
+            while ( to < blocks.length && index.blockRow( blocks[to] ) == index.blockRow( blocks[from] ) )
+            {
+                to++;
+            }
+            int toGridRow = Math.min( index.toRow( blocks[from] ) - fromRow, nGridRows );
+            for ( int gridRow = Math.max( index.fromRow( blocks[from] ) - fromRow, 0 ); gridRow < toGridRow; gridRow++ )
+            {
+                for ( int i = from; i < to; i++ )
                 {
-                    double x23 = lerp( v2.getX( ), v2.getZ( ), v3.getX( ), v3.getZ( ), isovalue );
-                    double y23 = v2.getY( );
-                    horizontalEdgePoints[nGridRows][gridCol] = new Point( x23, y23, isovalue );
+                    addSegments( gridRow, Math.max( index.fromCol( blocks[i] ) - fromCol, 0 ), Math.min( index.toCol( blocks[i] ) - fromCol, nGridCols ),
+                            tracer );
                 }
             }
+            from = to;
         }
+        return tracer;
+    }
 
-        // And handle the remaining right edge
+    protected void computeInterpolationPoints( )
+    {
+        if ( mask != null )
         {
-            int gridCol = nGridCols - 1;
-            for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
-            {
-                Cell cell = cells[gridRow][gridCol];
-
-                Point v1 = cell.v1;
-                Point v2 = cell.v2;
+            computeMaskedInterpolationPoints( );
+            return;
+        }
+        computeInterpolationPoints( 0, nGridRows );
+    }
 
-                int b1 = v1.getZ( ) < isovalue ? 0 : 1;
-                int b2 = v2.getZ( ) < isovalue ? 0 : 1;
+    /**
+     * Computes the interpolation points on all edges of the valid cells of {@link #mask}, run of valid cells by run.
+     * Edges of invalid cells only are left as they are: no segment refers to them.
+     */
+    protected void computeMaskedInterpolationPoints( )
+    {
+        for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+        {
+            for ( int from = mask.nextValidCell( gridRow, 0 ); from < nGridCols; from = mask.nextValidCell( gridRow, from ) )
+            {
+                int to = mask.nextInvalidCell( gridRow, from );
+                computeInterpolationPoints( gridRow, gridRow + 1, from, to );
 
-                if ( b1 != b2 )
+                // The edges owned by the invalid neighbours of the run
+                if ( to < nGridCols )
+                {
+                    computeVerticalEdgePoint( gridRow, to );
+                }
+                if ( gridRow + 1 < nGridRows )
                 {
-                    double x12 = v1.getX( );
-                    double y12 = lerp( v1.getY( ), v1.getZ( ), v2.getY( ), v2.getZ( ), isovalue );
-                    verticalEdgePoints[gridRow][nGridCols] = new Point( x12, y12, isovalue );
+                    for ( int gridCol = from; gridCol < to; gridCol++ )
+                    {
+                        if ( !mask.isCellValid( gridRow + 1, gridCol ) )
+                        {
+                            computeHorizontalEdgePoint( gridRow + 1, gridCol );
+                        }
+                    }
                 }
+                from = to;
             }
         }
     }
 
-    /**
-     * Given an isovalue alpha, segments are computed so that values lower than alpha are on the left as we walk along an edge.
-     */
-    protected Segment[] computeSegments( int lookupIndex, Point p01, Point p12, Point p23, Point p30, Cell cell )
+    protected void computeHorizontalEdgePoint( int vertexRow, int gridCol )
     {
-        return switch ( lookupIndex )
+        if ( ( field.getZ( vertexRow, gridCol ) < isovalue ) != ( field.getZ( vertexRow, gridCol + 1 ) < isovalue ) )
         {
-            case 0, 15 -> Segment.EMPTY;
-            case 1 -> new Segment[] { new Segment( p30, p01 ) };
-            case 2 -> new Segment[] { new Segment( p01, p12 ) };
-            case 3 -> new Segment[] { new Segment( p30, p12 ) };
-            case 4 -> new Segment[] { new Segment( p12, p23 ) };
-            case 6 -> new Segment[] { new Segment( p01, p23 ) };
-            case 7 -> new Segment[] { new Segment( p30, p23 ) };
-            case 8 -> new Segment[] { new Segment( p23, p30 ) };
-            case 9 -> new Segment[] { new Segment( p23, p01 ) };
-            case 11 -> new Segment[] { new Segment( p23, p12 ) };
-            case 12 -> new Segment[] { new Segment( p12, p30 ) };
-            case 13 -> new Segment[] { new Segment( p12, p01 ) };
-            case 14 -> new Segment[] { new Segment( p01, p30 ) };
-            case 5, 10 -> resolveAmbiguity( lookupIndex, p01, p12, p23, p30, cell );
-            default -> throw new IllegalArgumentException( "Illegal lookupIndex: " + lookupIndex );
-        };
+            setHorizontalEdgePoint( vertexRow, gridCol );
+        }
+    }
+
+    protected void computeVerticalEdgePoint( int gridRow, int vertexCol )
+    {
+        if ( ( field.getZ( gridRow, vertexCol ) < isovalue ) != ( field.getZ( gridRow + 1, vertexCol ) < isovalue ) )
+        {
+            setVerticalEdgePoint( gridRow, vertexCol );
+        }
     }
 
     /**
-     * Resolve ambiguity in case lookupIndex == 5 or lookupIndex == 10 using
-     * <a href=" https://people.eecs.berkeley.edu/~jrs/meshpapers/NielsonHamann.pdf">asymptotic decider</a>.
-     * <br><br>
-     * Note that computation of bilinear interpolant (bi) at intersection of asymptotes is incorrect (wrong sign) in this paper.
+     * Stores the interpolation point of a crossed horizontal edge, as a {@link Point} or in {@link #edgeXY} if set.
      */
-    protected Segment[] resolveAmbiguity( int lookupIndex, Point p01, Point p12, Point p23, Point p30, Cell cell )
+    protected void setHorizontalEdgePoint( int vertexRow, int gridCol )
     {
-        double b00 = cell.v0.getZ( );
-        double b10 = cell.v1.getZ( );
-        double b11 = cell.v2.getZ( );
-        double b01 = cell.v3.getZ( );
-
-        // Paper incorrectly has numerator as b00 * b11 + b10 * b01
-        double bi = ( b00 * b11 - b10 * b01 ) / ( b00 + b11 - b01 - b10 );
-
-        if ( lookupIndex == 5 )
+        if ( edgeXY == null )
         {
-            if ( bi < isovalue )
-            {
-                return new Segment[] {
-                        new Segment( p12, p23 ),
-                        new Segment( p30, p01 )
-                };
-            }
-            else
-            {
-                return new Segment[] {
-                        new Segment( p12, p01 ),
-                        new Segment( p30, p23 )
-                };
-            }
+            horizontalEdgePoints[vertexRow][gridCol] = horizontalEdgePoint( field, vertexRow, gridCol, isovalue );
+            return;
         }
-        else // lookupIndex == 10
+        int index = 2 * edges.horizontal( vertexRow, gridCol );
+        edgeXY[index] = (float) horizontalEdgeX( field, vertexRow, gridCol, isovalue );
+        edgeXY[index + 1] = (float) horizontalEdgeY( field, vertexRow, gridCol, isovalue );
+    }
+
+    /**
+     * Stores the interpolation point of a crossed vertical edge, as a {@link Point} or in {@link #edgeXY} if set.
+     */
+    protected void setVerticalEdgePoint( int gridRow, int vertexCol )
+    {
+        if ( edgeXY == null )
         {
-            if ( bi < isovalue )
-            {
-                return new Segment[] {
-                        new Segment( p01, p12 ),
-                        new Segment( p23, p30 )
-                };
-            }
-            else
-            {
-                return new Segment[] {
-                        new Segment( p23, p12 ),
-                        new Segment( p01, p30 )
-                };
-            }
+            verticalEdgePoints[gridRow][vertexCol] = verticalEdgePoint( field, gridRow, vertexCol, isovalue );
+            return;
         }
+        int index = 2 * edges.vertical( gridRow, vertexCol );
+        edgeXY[index] = (float) verticalEdgeX( field, gridRow, vertexCol, isovalue );
+        edgeXY[index + 1] = (float) verticalEdgeY( field, gridRow, vertexCol, isovalue );
     }
 
-    protected void computeSegments( )
+    /**
+     * Computes the interpolation points on the edges owned by grid rows {@code fromRow} (inclusive) to {@code toRow} (exclusive):
+     * the bottom and left edges of each cell, the right edges of the last column and, if {@code toRow == nGridRows},
+     * the top edges of the last row. Disjoint row ranges therefore write disjoint parts of the edge point arrays.
+     */
+    protected void computeInterpolationPoints( int fromRow, int toRow )
     {
-        Cell[][] cells = grid.cells;
+        computeInterpolationPoints( fromRow, toRow, 0, nGridCols );
+    }
 
-        int nGridRows = cells.length;
-        int nGridCols = cells[0].length;
+    /**
+     * Same as {@link #computeInterpolationPoints(int, int)} restricted to grid columns {@code fromCol} (inclusive) to
+     * {@code toCol} (exclusive). The right edges of the last column are only computed if {@code toCol == nGridCols}.
+     */
+    protected void computeInterpolationPoints( int fromRow, int toRow, int fromCol, int toCol )
+    {
+        ScalarField field = this.field;
 
-        // Finally, loop through edge points and assign them to cells
-        for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+        // Loop through grid and for each cell just handle left and bottom edges
+        for ( int gridRow = fromRow; gridRow < toRow; gridRow++ )
         {
-            for ( int gridCol = 0; gridCol < nGridCols; gridCol++ )
+            for ( int gridCol = fromCol; gridCol < toCol; gridCol++ )
             {
-                Cell cell = cells[gridRow][gridCol];
-
-                Point v0 = cell.v0;
-                Point v1 = cell.v1;
-                Point v2 = cell.v2;
-                Point v3 = cell.v3;
+                // v0 = (gridRow, gridCol), v1 = (gridRow, gridCol + 1), v3 = (gridRow + 1, gridCol)
+                double z0 = field.getZ( gridRow, gridCol );
+                double z1 = field.getZ( gridRow, gridCol + 1 );
+                double z3 = field.getZ( gridRow + 1, gridCol );
 
-                int b0 = v0.getZ( ) < isovalue ? 0 : 1;
-                int b1 = v1.getZ( ) < isovalue ? 0 : 1;
-                int b2 = v2.getZ( ) < isovalue ? 0 : 1;
-                int b3 = v3.getZ( ) < isovalue ? 0 : 1;
-
-                int lookupIndex = b0 | ( b1 << 1 ) | ( b2 << 2 ) | ( b3 << 3 );
-                this.binary[gridRow][gridCol] = lookupIndex;
+                int b0 = z0 < isovalue ? 0 : 1;
+                int b1 = z1 < isovalue ? 0 : 1;
+                int b3 = z3 < isovalue ? 0 : 1;
 
-                Point p01 = horizontalEdgePoints[gridRow][gridCol];
-                Point p12 = verticalEdgePoints[gridRow][gridCol + 1];
-                Point p23 = horizontalEdgePoints[gridRow + 1][gridCol];
-                Point p30 = verticalEdgePoints[gridRow][gridCol];
+                if ( b0 != b1 )
+                {
+                    setHorizontalEdgePoint( gridRow, gridCol );
+                }
 
-                segments[gridRow][gridCol] = computeSegments( lookupIndex, p01, p12, p23, p30, cell );
+                if ( b3 != b0 )
+                {
+                    setVerticalEdgePoint( gridRow, gridCol );
+                }
             }
         }
-    }
 
-    protected IsolineCollection<Point> computeContours( )
-    {
-        IsolineCollection<Point> contours = new IsolineCollection<>( );
+        // Now handle the remaining top edge
+        if ( toRow == nGridRows )
+        {
+            int vertexRow = nGridRows;
+            for ( int gridCol = fromCol; gridCol < toCol; gridCol++ )
+            {
+                // v2 = (vertexRow, gridCol + 1), v3 = (vertexRow, gridCol)
+                double z2 = field.getZ( vertexRow, gridCol + 1 );
+                double z3 = field.getZ( vertexRow, gridCol );
 
-        Cell[][] cells = grid.cells;
+                int b2 = z2 < isovalue ? 0 : 1;
+                int b3 = z3 < isovalue ? 0 : 1;
 
-        int nGridRows = cells.length;
-        int nGridCols = cells[0].length;
+                if ( b2 != b3 )
+                {
+                    setHorizontalEdgePoint( vertexRow, gridCol );
+                }
+            }
+        }
 
-        // Create mapping from starting points to segments
-        Map<Point, Segment> point2Segment = new LinkedHashMap<>( );
-        Map<Point, Boolean> noLoopStartPoints = new LinkedHashMap<>( );
-        for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+        // And handle the remaining right edge
+        if ( toCol == nGridCols )
         {
-            for ( int gridCol = 0; gridCol < nGridCols; gridCol++ )
+            int vertexCol = nGridCols;
+            for ( int gridRow = fromRow; gridRow < toRow; gridRow++ )
             {
-                for ( Segment segment : segments[gridRow][gridCol] )
+                // v1 = (gridRow, vertexCol), v2 = (gridRow + 1, vertexCol)
+                double z1 = field.getZ( gridRow, vertexCol );
+                double z2 = field.getZ( gridRow + 1, vertexCol );
+
+                int b1 = z1 < isovalue ? 0 : 1;
+                int b2 = z2 < isovalue ? 0 : 1;
+
+                if ( b1 != b2 )
                 {
-                    point2Segment.put( segment.getStart( ), segment );
-                    noLoopStartPoints.putIfAbsent( segment.getStart( ), Boolean.TRUE );
-                    noLoopStartPoints.put( segment.getEnd( ), Boolean.FALSE );
+                    setVerticalEdgePoint( gridRow, vertexCol );
                 }
             }
         }
+    }
+
+    /**
+     * Interpolation point on the horizontal edge from vertex (vertexRow, gridCol) to vertex (vertexRow, gridCol + 1).
+     * <br><br>
+     * Interior edges are interpolated from the bottom edge (v0 to v1) of the cell above them, whereas the edges of the
+     * top row are interpolated from the top edge (v2 to v3) of the cell below them. Every code path computes edge points
+     * through this method so that all of them agree to the last bit.
+     * <br><br>
+     * For a field with a {@link GridGeometry}, the edge is interpolated in index space from its left vertex instead, and the
+     * resulting position is converted by the geometry.
+     */
+    protected static Point horizontalEdgePoint( ScalarField field, int vertexRow, int gridCol, double isovalue )
+    {
+        return new Point( horizontalEdgeX( field, vertexRow, gridCol, isovalue ), horizontalEdgeY( field, vertexRow, gridCol, isovalue ), isovalue );
+    }
 
-        // Handle non-closed contours
-        Deque<Point> stack = new LinkedList<>( );
-        for ( Point point : point2Segment.keySet( ) )
+    protected static double horizontalEdgeX( ScalarField field, int vertexRow, int gridCol, double isovalue )
+    {
+        GridGeometry geometry = field.getGeometry( );
+        if ( geometry != null )
         {
-            if ( noLoopStartPoints.get( point ) == Boolean.TRUE )
-            {
-                stack.push( point );
-            }
+            return geometry.getX( vertexRow, gridCol + horizontalEdgeFraction( field, vertexRow, gridCol, isovalue ) );
         }
-        while ( !stack.isEmpty( ) )
+        if ( vertexRow < field.getRows( ) - 1 )
         {
-            Point startingPoint = stack.pop( );
-            computeContour( startingPoint, point2Segment, contours );
+            return lerp( field.getX( vertexRow, gridCol ), field.getZ( vertexRow, gridCol ),
+                    field.getX( vertexRow, gridCol + 1 ), field.getZ( vertexRow, gridCol + 1 ), isovalue );
         }
-
-        // Handle closed contours
-        while ( !point2Segment.isEmpty( ) )
+        else
         {
-            Point startingPoint = point2Segment.keySet( ).stream( ).findAny( ).get( );
-            computeContour( startingPoint, point2Segment, contours );
+            return lerp( field.getX( vertexRow, gridCol + 1 ), field.getZ( vertexRow, gridCol + 1 ),
+                    field.getX( vertexRow, gridCol ), field.getZ( vertexRow, gridCol ), isovalue );
         }
-
-        return contours;
     }
 
-    protected void computeContour( Point startingPoint, Map<Point, Segment> point2Segment, IsolineCollection<Point> contours )
+    protected static double horizontalEdgeY( ScalarField field, int vertexRow, int gridCol, double isovalue )
     {
-        Queue<Point> queue = new LinkedList<>( );
-        queue.offer( startingPoint );
-
-        // Follow contour from starting point by way of point2Segment map
-        Isoline<Point> contour = new Isoline<>( );
-        while ( !queue.isEmpty( ) )
+        GridGeometry geometry = field.getGeometry( );
+        if ( geometry != null )
         {
-            Point point = queue.poll( );
-            contour.add( point );
-            Segment segment = point2Segment.remove( point );
-            if ( segment != null )
-            {
-                queue.add( segment.getEnd( ) );
-            }
-            else
-            {
-                contours.add( contour );
-            }
+            return geometry.getY( vertexRow, gridCol + horizontalEdgeFraction( field, vertexRow, gridCol, isovalue ) );
         }
+        return vertexRow < field.getRows( ) - 1 ? field.getY( vertexRow, gridCol ) : field.getY( vertexRow, gridCol + 1 );
     }
 
     /**
-     * Given (u0,v0) and (u1,v1) finds u in (u,isovalue) via standard linear interpolation.
+     * @return The position of the isovalue on the horizontal edge, as a fraction of the edge from its left vertex.
      */
-    protected static double lerp( double u0, double v0, double u1, double v1, double isovalue )
+    protected static double horizontalEdgeFraction( ScalarField field, int vertexRow, int gridCol, double isovalue )
     {
-        return u0 + ( isovalue - v0 ) * ( u1 - u0 ) / ( v1 - v0 );
+        return lerp( 0.0, field.getZ( vertexRow, gridCol ), 1.0, field.getZ( vertexRow, gridCol + 1 ), isovalue );
     }
 
     /**
-     * Generates <a href="https://en.wikipedia.org/wiki/Marching_squares">isolines</a>
-     * (lines following a single data level, or {@code isovalue}) for a two-dimensional scalar field {@code Point[][]}.
-     *
-     * @param points A scalar field of points (x,y,z). Assumes that z = f(x,y) where f:R^2 --> R is continuous.
-     * @param isovalues Array of isovalues.
-     * @return A hash map of collections of isolines keyed by isovalue.
+     * Interpolation point on the vertical edge from vertex (gridRow, vertexCol) to vertex (gridRow + 1, vertexCol).
+     * <br><br>
+     * Interior edges are interpolated from the left edge (v3 to v0) of the cell to their right, whereas the edges of the
+     * right column are interpolated from the right edge (v1 to v2) of the cell to their left.
      */
-    public static IsolineMap<Point> computeIsoLines( Point[][] points, double[] isovalues )
+    protected static Point verticalEdgePoint( ScalarField field, int gridRow, int vertexCol, double isovalue )
     {
-        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+        return new Point( verticalEdgeX( field, gridRow, vertexCol, isovalue ), verticalEdgeY( field, gridRow, vertexCol, isovalue ), isovalue );
+    }
 
-        Grid grid = new Grid( points );
+    protected static double verticalEdgeX( ScalarField field, int gridRow, int vertexCol, double isovalue )
+    {
+        GridGeometry geometry = field.getGeometry( );
+        if ( geometry != null )
+        {
+            return geometry.getX( gridRow + verticalEdgeFraction( field, gridRow, vertexCol, isovalue ), vertexCol );
+        }
+        return vertexCol < field.getCols( ) - 1 ? field.getX( gridRow + 1, vertexCol ) : field.getX( gridRow, vertexCol );
+    }
 
-        for ( double isovalue : isovalues )
+    protected static double verticalEdgeY( ScalarField field, int gridRow, int vertexCol, double isovalue )
+    {
+        GridGeometry geometry = field.getGeometry( );
+        if ( geometry != null )
         {
-            MarchingSquares marchingSquares = new MarchingSquares( grid, isovalue );
-            IsolineCollection<Point> isolineCollection = marchingSquares.computeIsoLines( );
-            isolineMap.put( isovalue, isolineCollection );
+            return geometry.getY( gridRow + verticalEdgeFraction( field, gridRow, vertexCol, isovalue ), vertexCol );
+        }
+        if ( vertexCol < field.getCols( ) - 1 )
+        {
+            return lerp( field.getY( gridRow + 1, vertexCol ), field.getZ( gridRow + 1, vertexCol ),
+                    field.getY( gridRow, vertexCol ), field.getZ( gridRow, vertexCol ), isovalue );
+        }
+        else
+        {
+            return lerp( field.getY( gridRow, vertexCol ), field.getZ( gridRow, vertexCol ),
+                    field.getY( gridRow + 1, vertexCol ), field.getZ( gridRow + 1, vertexCol ), isovalue );
         }
+    }
 
-        return isolineMap;
+    /**
+     * @return The position of the isovalue on the vertical edge, as a fraction of the edge from its lower vertex.
+     */
+    protected static double verticalEdgeFraction( ScalarField field, int gridRow, int vertexCol, double isovalue )
+    {
+        return lerp( 0.0, field.getZ( gridRow, vertexCol ), 1.0, field.getZ( gridRow + 1, vertexCol ), isovalue );
     }
 
     /**
-     * Same as {@link #computeIsoLines()} except that this method parallelizes the computation over the array of isovalues.
-     * Note that the computation for any single isovalue is <em>not</em> parallelized! Therefore, this method is only useful
-     * for large arrays of isovalues.
+     * Set in {@link #binary} on top of the lookup index of a saddle whose asymptotic decider is not below the isovalue.
      */
-    public static IsolineMap<Point> parallelComputeIsoLines( Point[][] points, double[] isovalues )
+    protected static final int DECIDER_ABOVE = 16;
+
+    /**
+     * Segments of a cell as (start, end) pairs of cell sides, see {@link GridEdges#BOTTOM}. Given an isovalue alpha, segments
+     * are computed so that values lower than alpha are on the left as we walk along an edge.
+     * <br><br>
+     * Indexed by [decider][lookupIndex], where decider is 0 if the {@link #asymptoticDecider(double, double, double, double) asymptotic decider}
+     * is below the isovalue and 1 otherwise. Only the ambiguous cases 5 and 10 depend on the decider, see {@link #resolveAmbiguity(int, int, int)}.
+     */
+    protected static final int[][][] SEGMENT_SIDES;
+
+    static
     {
-        Map<Double, IsolineCollection<Point>> concurrentIsolineMap = new ConcurrentHashMap<>( );
+        final int b = GridEdges.BOTTOM, r = GridEdges.RIGHT, t = GridEdges.TOP, l = GridEdges.LEFT;
+        int[][] below = new int[][] {
+                {}, { l, b }, { b, r }, { l, r },
+                { r, t }, { r, t, l, b }, { b, t }, { l, t },
+                { t, l }, { t, b }, { b, r, t, l }, { t, r },
+                { r, l }, { r, b }, { b, l }, {}
+        };
+        int[][] above = below.clone( );
+        above[5] = new int[] { r, b, l, t };
+        above[10] = new int[] { t, r, b, l };
+        SEGMENT_SIDES = new int[][][] { below, above };
+    }
 
-        Grid grid = new Grid( points );
+    /**
+     * @return The segments of a cell given its entry in {@link #binary}.
+     */
+    protected static int[] segmentSides( int code )
+    {
+        return SEGMENT_SIDES[code >> 4][code & 15];
+    }
 
-        List<Double> isovalueList = new ArrayList<>( );
-        for ( double isovalue : isovalues )
+    /**
+     * Resolve ambiguity in case lookupIndex == 5 or lookupIndex == 10 using
+     * <a href=" https://people.eecs.berkeley.edu/~jrs/meshpapers/NielsonHamann.pdf">asymptotic decider</a>.
+     * <br><br>
+     * Note that computation of bilinear interpolant (bi) at intersection of asymptotes is incorrect (wrong sign) in this paper.
+     *
+     * @return The lookup index, plus {@link #DECIDER_ABOVE} if the bilinear interpolant is not below the isovalue.
+     */
+    protected int resolveAmbiguity( int lookupIndex, int gridRow, int gridCol )
+    {
+        double b00 = field.getZ( gridRow, gridCol );
+        double b10 = field.getZ( gridRow, gridCol + 1 );
+        double b11 = field.getZ( gridRow + 1, gridCol + 1 );
+        double b01 = field.getZ( gridRow + 1, gridCol );
+
+        double bi = asymptoticDecider( b00, b10, b11, b01 );
+
+        return bi < isovalue ? lookupIndex : lookupIndex | DECIDER_ABOVE;
+    }
+
+    protected void computeSegments( )
+    {
+        if ( mask != null )
         {
-            isovalueList.add( isovalue );
+            computeMaskedSegments( );
+            return;
         }
+        computeSegments( 0, nGridRows );
+    }
 
-        isovalueList.parallelStream( ).forEach( ( isovalue ) -> {
-            MarchingSquares marchingSquares = new MarchingSquares( grid, isovalue );
-            IsolineCollection<Point> isolineCollection = marchingSquares.computeIsoLines( );
-            concurrentIsolineMap.put( isovalue, isolineCollection );
-        } );
-
-        // Guarantees insertion order to be the same as in non-parallel case
-        IsolineMap<Point> isolineMap = new IsolineMap<>( );
-        for ( double isovalue : isovalueList )
+    /**
+     * Computes the segments of the valid cells of {@link #mask}, run of valid cells by run, and clears the lookup index of the others.
+     */
+    protected void computeMaskedSegments( )
+    {
+        for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
         {
-            isolineMap.put( isovalue, concurrentIsolineMap.get( isovalue ) );
+            int[] binaryRow = binary[gridRow];
+            int from = 0;
+            while ( from < nGridCols )
+            {
+                int to = mask.nextValidCell( gridRow, from );
+                Arrays.fill( binaryRow, from, to, 0 );
+                if ( to == nGridCols )
+                {
+                    break;
+                }
+                from = to;
+                to = mask.nextInvalidCell( gridRow, from );
+                computeSegments( gridRow, gridRow + 1, from, to );
+                from = to;
+            }
         }
+    }
 
-        return isolineMap;
+    /**
+     * Computes the segments of the cells in grid rows {@code fromRow} (inclusive) to {@code toRow} (exclusive),
+     * as entries of {@link #binary}.
+     */
+    protected void computeSegments( int fromRow, int toRow )
+    {
+        computeSegments( fromRow, toRow, 0, nGridCols );
+    }
+
+    /**
+     * Same as {@link #computeSegments(int, int)} restricted to grid columns {@code fromCol} (inclusive) to {@code toCol} (exclusive).
+     */
+    protected void computeSegments( int fromRow, int toRow, int fromCol, int toCol )
+    {
+        if ( field instanceof DoubleScalarField || field instanceof FloatScalarField )
+        {
+            classifySegments( fromRow, toRow, fromCol, toCol );
+            return;
+        }
+
+        ScalarField field = this.field;
+
+        for ( int gridRow = fromRow; gridRow < toRow; gridRow++ )
+        {
+            for ( int gridCol = fromCol; gridCol < toCol; gridCol++ )
+            {
+                int b0 = field.getZ( gridRow, gridCol ) < isovalue ? 0 : 1;
+                int b1 = field.getZ( gridRow, gridCol + 1 ) < isovalue ? 0 : 1;
+                int b2 = field.getZ( gridRow + 1, gridCol + 1 ) < isovalue ? 0 : 1;
+                int b3 = field.getZ( gridRow + 1, gridCol ) < isovalue ? 0 : 1;
+
+                int lookupIndex = b0 | ( b1 << 1 ) | ( b2 << 2 ) | ( b3 << 3 );
+                if ( lookupIndex == 5 || lookupIndex == 10 )
+                {
+                    lookupIndex = resolveAmbiguity( lookupIndex, gridRow, gridCol );
+                }
+                this.binary[gridRow][gridCol] = lookupIndex;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #computeSegments(int, int, int, int)} for a field backed by a primitive array: each row of vertices is
+     * classified once into a bitset by the {@link RowClassifier}, vectorized when possible, and adjacent rows are combined
+     * into lookup indices in bulk. Only saddles are looked at one by one.
+     */
+    protected void classifySegments( int fromRow, int toRow, int fromCol, int toCol )
+    {
+        RowClassifier classifier = RowClassifier.getInstance( );
+
+        // Grid-width bitsets of the workspace, so that indexed calls do not allocate per block
+        int nCells = toCol - fromCol;
+        long[][] rowBits = workspace.getRowBits( );
+        long[] bottom = rowBits[0];
+        long[] top = rowBits[1];
+        long[] saddles = rowBits[2];
+        int nSaddleWords = RowClassifier.words( nCells );
+
+        classifyRow( classifier, fromRow, fromCol, nCells + 1, bottom );
+        for ( int gridRow = fromRow; gridRow < toRow; gridRow++ )
+        {
+            classifyRow( classifier, gridRow + 1, fromCol, nCells + 1, top );
+
+            int[] binaryRow = this.binary[gridRow];
+            RowClassifier.cellCodes( bottom, top, nCells, binaryRow, fromCol, saddles );
+            for ( int w = 0; w < nSaddleWords; w++ )
+            {
+                for ( long word = saddles[w]; word != 0L; word &= word - 1 )
+                {
+                    int gridCol = fromCol + ( w << 6 ) + Long.numberOfTrailingZeros( word );
+                    binaryRow[gridCol] = resolveAmbiguity( binaryRow[gridCol], gridRow, gridCol );
+                }
+            }
+
+            long[] swap = bottom;
+            bottom = top;
+            top = swap;
+        }
+    }
+
+    protected void classifyRow( RowClassifier classifier, int vertexRow, int fromCol, int n, long[] bits )
+    {
+        if ( field instanceof DoubleScalarField doubleField )
+        {
+            classifier.classify( doubleField.getValues( ), vertexRow * doubleField.getCols( ) + fromCol, n, isovalue, bits );
+        }
+        else
+        {
+            FloatScalarField floatField = (FloatScalarField) field;
+            classifier.classify( floatField.getValues( ), vertexRow * floatField.getCols( ) + fromCol, n, isovalue, bits );
+        }
+    }
+
+    protected IsolineCollection<Point> computeContours( )
+    {
+        return computeContours( linkSegments( ) );
+    }
+
+    /**
+     * Same as {@link #computeIsoLines()} except that the isolines are packed into primitive arrays.
+     * <br><br>
+     * With floats, the edge points are rounded to float as soon as they are interpolated and kept in the {@code float[]} of the
+     * workspace instead of {@link Point}s, so that no object is created per crossed edge and the whole pipeline, from a
+     * {@link FloatScalarField} to the packed output, moves single-precision values. The result is the same either way.
+     *
+     * @param floats Whether to store coordinates as floats.
+     */
+    protected PackedIsolines computePackedIsoLines( boolean floats )
+    {
+        PackedIsolines.Builder builder = workspace.getBuilder( isovalue, floats );
+        edgeXY = floats ? workspace.getEdgeXY( ) : null;
+        try
+        {
+            ContourMetrics.Listener listener = metricsListener;
+            if ( listener != null )
+            {
+                measure( listener, true, new PackedCollector( builder ) );
+                return builder.build( );
+            }
+
+            computeInterpolationPoints( );
+            computeSegments( );
+            linkSegments( ).trace( new PackedCollector( builder ) );
+            return builder.build( );
+        }
+        finally
+        {
+            edgeXY = null;
+        }
+    }
+
+    /**
+     * Same as {@link #computeIsoLines()} except that the isolines are passed to {@code sink} as they are traced. No edge point is
+     * stored: the coordinates of each vertex are interpolated when it is visited, so that nothing but the sink holds on to the output.
+     */
+    protected void computeIsoLines( IsolineSink sink )
+    {
+        ContourMetrics.Listener listener = metricsListener;
+        if ( listener != null )
+        {
+            measure( listener, false, new SinkVisitor( sink ) );
+            return;
+        }
+
+        computeSegments( );
+        computeContours( sink );
+    }
+
+    protected void computeContours( IsolineSink sink )
+    {
+        linkSegments( ).trace( new SinkVisitor( sink ) );
+    }
+
+    /**
+     * @return A tracer holding the segments of all cells, linked by edge in row-major cell order.
+     */
+    protected EdgeTracer linkSegments( )
+    {
+        EdgeTracer tracer = workspace.getTracer( );
+        for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+        {
+            if ( mask == null )
+            {
+                addSegments( gridRow, 0, nGridCols, tracer );
+                continue;
+            }
+            for ( int from = mask.nextValidCell( gridRow, 0 ); from < nGridCols; from = mask.nextValidCell( gridRow, from ) )
+            {
+                int to = mask.nextInvalidCell( gridRow, from );
+                addSegments( gridRow, from, to, tracer );
+                from = to;
+            }
+        }
+        return tracer;
+    }
+
+    /**
+     * Adds the segments of the cells in grid row {@code gridRow} from grid column {@code fromCol} (inclusive)
+     * to {@code toCol} (exclusive) to the tracer.
+     */
+    protected void addSegments( int gridRow, int fromCol, int toCol, EdgeTracer tracer )
+    {
+        int[] binaryRow = binary[gridRow];
+        for ( int gridCol = fromCol; gridCol < toCol; gridCol++ )
+        {
+            int[] sides = segmentSides( binaryRow[gridCol] );
+            for ( int i = 0; i < sides.length; i += 2 )
+            {
+                tracer.addSegment( edges.cellEdge( gridRow, gridCol, sides[i] ), edges.cellEdge( gridRow, gridCol, sides[i + 1] ) );
+            }
+        }
+    }
+
+    protected IsolineCollection<Point> computeContours( EdgeTracer tracer )
+    {
+        IsolineCollection<Point> contours = new IsolineCollection<>( );
+        tracer.trace( new ContourCollector( contours ) );
+        return contours;
+    }
+
+    /**
+     * @return The interpolation point on the given edge, shared by every contour visiting it.
+     */
+    protected Point edgePoint( int edge )
+    {
+        if ( edges.isHorizontal( edge ) )
+        {
+            return horizontalEdgePoints[edges.row( edge )][edges.col( edge )];
+        }
+        else
+        {
+            return verticalEdgePoints[edges.row( edge )][edges.col( edge )];
+        }
+    }
+
+    /**
+     * Turns traced edges into isolines of interpolation points.
+     */
+    protected class ContourCollector implements EdgeTracer.Visitor
+    {
+        protected final IsolineCollection<Point> contours;
+        protected Isoline<Point> contour;
+
+        protected ContourCollector( IsolineCollection<Point> contours )
+        {
+            this.contours = contours;
+        }
+
+        @Override
+        public void beginContour( boolean closed )
+        {
+            contour = new Isoline<>( );
+        }
+
+        @Override
+        public void edge( int edge )
+        {
+            contour.add( edgePoint( edge ) );
+        }
+
+        @Override
+        public void endContour( )
+        {
+            contours.add( contour );
+        }
+    }
+
+    /**
+     * Turns traced edges into packed isolines, leaving out the repeated starting point of closed isolines.
+     */
+    protected class PackedCollector implements EdgeTracer.Visitor
+    {
+        protected final PackedIsolines.Builder builder;
+
+        protected boolean closed;
+        protected int startingEdge;
+
+        protected PackedCollector( PackedIsolines.Builder builder )
+        {
+            this.builder = builder;
+        }
+
+        @Override
+        public void beginContour( boolean closed )
+        {
+            this.closed = closed;
+            this.startingEdge = -1;
+            builder.beginIsoline( closed );
+        }
+
+        @Override
+        public void edge( int edge )
+        {
+            if ( startingEdge < 0 )
+            {
+                startingEdge = edge;
+            }
+            else if ( closed && edge == startingEdge )
+            {
+                return;
+            }
+            if ( edgeXY != null )
+            {
+                builder.addVertex( edgeXY[2 * edge], edgeXY[2 * edge + 1] );
+                return;
+            }
+            Point point = edgePoint( edge );
+            builder.addVertex( point.getX( ), point.getY( ) );
+        }
+
+        @Override
+        public void endContour( )
+        {
+            builder.endIsoline( );
+        }
+    }
+
+    /**
+     * Passes the interpolation point of the given edge to {@code sink}, computed on the spot.
+     */
+    protected void vertex( IsolineSink sink, int edge )
+    {
+        int row = edges.row( edge );
+        int col = edges.col( edge );
+        if ( edges.isHorizontal( edge ) )
+        {
+            sink.vertex( horizontalEdgeX( field, row, col, isovalue ), horizontalEdgeY( field, row, col, isovalue ) );
+        }
+        else
+        {
+            sink.vertex( verticalEdgeX( field, row, col, isovalue ), verticalEdgeY( field, row, col, isovalue ) );
+        }
+    }
+
+    /**
+     * Collects the isolines of a sink as points, closing closed isolines with their very starting point.
+     */
+    protected static class PointCollector implements IsolineSink
+    {
+        protected final IsolineCollection<Point> contours;
+        protected Isoline<Point> contour;
+        protected double isovalue;
+        protected boolean closed;
+
+        protected PointCollector( IsolineCollection<Point> contours )
+        {
+            this.contours = contours;
+        }
+
+        @Override
+        public void beginIsoline( double isovalue, boolean closed )
+        {
+            this.contour = new Isoline<>( );
+            this.isovalue = isovalue;
+            this.closed = closed;
+        }
+
+        @Override
+        public void vertex( double x, double y )
+        {
+            contour.add( new Point( x, y, isovalue ) );
+        }
+
+        @Override
+        public void endIsoline( )
+        {
+            if ( closed && !contour.isEmpty( ) )
+            {
+                contour.add( contour.get( 0 ) );
+            }
+            contours.add( contour );
+        }
+    }
+
+    /**
+     * Counts the isolines going through to another visitor.
+     */
+    protected static class CountingVisitor implements EdgeTracer.Visitor
+    {
+        protected final EdgeTracer.Visitor visitor;
+        protected final ContourMetrics metrics;
+
+        protected CountingVisitor( EdgeTracer.Visitor visitor, ContourMetrics metrics )
+        {
+            this.visitor = visitor;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void beginContour( boolean closed )
+        {
+            if ( closed )
+            {
+                metrics.closedIsolines++;
+            }
+            else
+            {
+                metrics.openIsolines++;
+            }
+            visitor.beginContour( closed );
+        }
+
+        @Override
+        public void edge( int edge )
+        {
+            visitor.edge( edge );
+        }
+
+        @Override
+        public void endContour( )
+        {
+            visitor.endContour( );
+        }
+    }
+
+    /**
+     * Passes traced edges to a sink as interpolated coordinates, leaving out the repeated starting point of closed isolines.
+     */
+    protected class SinkVisitor implements EdgeTracer.Visitor
+    {
+        protected final IsolineSink sink;
+
+        protected boolean closed;
+        protected int startingEdge;
+
+        protected SinkVisitor( IsolineSink sink )
+        {
+            this.sink = sink;
+        }
+
+        @Override
+        public void beginContour( boolean closed )
+        {
+            this.closed = closed;
+            this.startingEdge = -1;
+            sink.beginIsoline( isovalue, closed );
+        }
+
+        @Override
+        public void edge( int edge )
+        {
+            if ( startingEdge < 0 )
+            {
+                startingEdge = edge;
+            }
+            else if ( closed && edge == startingEdge )
+            {
+                return;
+            }
+            vertex( sink, edge );
+        }
+
+        @Override
+        public void endContour( )
+        {
+            sink.endIsoline( );
+        }
+    }
+
+    /**
+     * Bilinear interpolant at the intersection of the asymptotes of a cell with corner values
+     * b00 (lower left), b10 (lower right), b11 (upper right) and b01 (upper left).
+     * See {@link #resolveAmbiguity(int, int, int)}.
+     */
+    protected static double asymptoticDecider( double b00, double b10, double b11, double b01 )
+    {
+        // Paper incorrectly has numerator as b00 * b11 + b10 * b01
+        return ( b00 * b11 - b10 * b01 ) / ( b00 + b11 - b01 - b10 );
+    }
+
+    /**
+     * Given (u0,v0) and (u1,v1) finds u in (u,isovalue) via standard linear interpolation.
+     */
+    protected static double lerp( double u0, double v0, double u1, double v1, double isovalue )
+    {
+        return u0 + ( isovalue - v0 ) * ( u1 - u0 ) / ( v1 - v0 );
+    }
+
+    /**
+     * Generates <a href="https://en.wikipedia.org/wiki/Marching_squares">isolines</a>
+     * (lines following a single data level, or {@code isovalue}) for a two-dimensional scalar field {@code Point[][]}.
+     *
+     * @param points A scalar field of points (x,y,z). Assumes that z = f(x,y) where f:R^2 --> R is continuous.
+     * @param isovalues Array of isovalues.
+     * @return A hash map of collections of isolines keyed by isovalue.
+     */
+    public static IsolineMap<Point> computeIsoLines( Point[][] points, double[] isovalues )
+    {
+        return computeIsoLines( new Grid( points ), isovalues );
+    }
+
+    /**
+     * Generates <a href="https://en.wikipedia.org/wiki/Marching_squares">isolines</a>
+     * (lines following a single data level, or {@code isovalue}) for a two-dimensional {@link ScalarField}.
+     * <br><br>
+     * Given a field holding the same coordinates and values, the isolines are identical to those of {@link #computeIsoLines(Point[][], double[])}.
+     * With a primitive-array field such as {@link DoubleScalarField} or {@link FloatScalarField}, no per-vertex or per-cell objects are created.
+     *
+     * @param field A scalar field. Assumes that z = f(x,y) where f:R^2 --> R is continuous.
+     * @param isovalues Array of isovalues.
+     * @return A hash map of collections of isolines keyed by isovalue.
+     */
+    public static IsolineMap<Point> computeIsoLines( ScalarField field, double[] isovalues )
+    {
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue );
+            IsolineCollection<Point> isolineCollection = marchingSquares.computeIsoLines( );
+            isolineMap.put( isovalue, isolineCollection );
+        }
+
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines()} except that this method parallelizes the computation over the array of isovalues.
+     * Note that the computation for any single isovalue is <em>not</em> parallelized! Therefore, this method is only useful
+     * for large arrays of isovalues.
+     */
+    public static IsolineMap<Point> parallelComputeIsoLines( Point[][] points, double[] isovalues )
+    {
+        return parallelComputeIsoLines( new Grid( points ), isovalues );
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that this method parallelizes the computation over the array of isovalues.
+     * To parallelize the computation for a single isovalue, see {@link #bandedComputeIsoLines(ScalarField, double[], ForkJoinPool)}.
+     */
+    public static IsolineMap<Point> parallelComputeIsoLines( ScalarField field, double[] isovalues )
+    {
+        Map<Double, IsolineCollection<Point>> concurrentIsolineMap = new ConcurrentHashMap<>( );
+
+        List<Double> isovalueList = new ArrayList<>( );
+        for ( double isovalue : isovalues )
+        {
+            isovalueList.add( isovalue );
+        }
+
+        isovalueList.parallelStream( ).forEach( ( isovalue ) -> {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue );
+            IsolineCollection<Point> isolineCollection = marchingSquares.computeIsoLines( );
+            concurrentIsolineMap.put( isovalue, isolineCollection );
+        } );
+
+        // Guarantees insertion order to be the same as in non-parallel case
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+        for ( double isovalue : isovalueList )
+        {
+            isolineMap.put( isovalue, concurrentIsolineMap.get( isovalue ) );
+        }
+
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that the computation for each isovalue is parallelized
+     * over horizontal bands of the grid on the common {@link ForkJoinPool}.
+     */
+    public static IsolineMap<Point> bandedComputeIsoLines( ScalarField field, double[] isovalues )
+    {
+        return bandedComputeIsoLines( field, isovalues, ForkJoinPool.commonPool( ) );
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that the computation for each isovalue is parallelized
+     * over horizontal bands of the grid on the given pool. Contours crossing the seams between bands are stitched back together,
+     * so the isolines are identical to the sequential ones. Unlike {@link #parallelComputeIsoLines(ScalarField, double[])},
+     * this method is useful for a single isovalue on a large grid.
+     */
+    public static IsolineMap<Point> bandedComputeIsoLines( ScalarField field, double[] isovalues, ForkJoinPool pool )
+    {
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares marchingSquares = new BandedMarchingSquares( field, isovalue, pool );
+            IsolineCollection<Point> isolineCollection = marchingSquares.computeIsoLines( );
+            isolineMap.put( isovalue, isolineCollection );
+        }
+
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that a precomputed {@link MinMaxIndex} of the field is used
+     * to skip the blocks of cells whose range of z values does not contain the isovalue. The index can be shared across calls
+     * for as long as the field does not change, which pays off for isovalues that only cross a small part of the grid.
+     */
+    public static IsolineMap<Point> computeIsoLines( ScalarField field, MinMaxIndex index, double[] isovalues )
+    {
+        checkIndex( field, index );
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+        Workspace workspace = Workspace.of( field );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue, workspace );
+            IsolineCollection<Point> isolineCollection = marchingSquares.computeIsoLines( index );
+            isolineMap.put( isovalue, isolineCollection );
+        }
+
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that the isolines are passed to {@code sink}, one isovalue
+     * after the other, instead of being collected. Memory use does not grow with the output: besides the grid-sized buffers,
+     * shared by all isovalues, nothing is kept once a vertex has been passed on. See {@link IsolineSink}.
+     */
+    public static void computeIsoLines( ScalarField field, double[] isovalues, IsolineSink sink )
+    {
+        Workspace workspace = Workspace.of( field );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue, workspace );
+            marchingSquares.computeIsoLines( sink );
+        }
+    }
+
+    /**
+     * Computes per-isovalue aggregates of the isolines, see {@link ContourStatistics}, without collecting them: isolines are
+     * traced as for {@link #computeIsoLines(ScalarField, double[], IsolineSink)}, and each vertex only updates a few accumulators.
+     * Every isovalue has a summary, in the order of {@code isovalues}, even if it has no isolines.
+     */
+    public static ContourStatistics computeStatistics( ScalarField field, double[] isovalues )
+    {
+        ContourStatistics statistics = new ContourStatistics( );
+        Workspace workspace = Workspace.of( field );
+
+        for ( double isovalue : isovalues )
+        {
+            statistics.getSummary( isovalue );
+            new MarchingSquares( field, isovalue, workspace ).computeIsoLines( statistics );
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that the isolines are simplified while they are traced,
+     * see {@link SimplifyingSink}. Discarded vertices are never stored, nor turned into {@link Point}s.
+     *
+     * @param tolerance Tolerance of the simplification, in the units of x and y. No vertex is discarded if 0.
+     */
+    public static IsolineMap<Point> simplifiedComputeIsoLines( ScalarField field, double[] isovalues, double tolerance, SimplifyingSink.Method method )
+    {
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+        Workspace workspace = Workspace.of( field );
+
+        for ( double isovalue : isovalues )
+        {
+            IsolineCollection<Point> isolineCollection = new IsolineCollection<>( );
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue, workspace );
+            marchingSquares.computeIsoLines( new SimplifyingSink( new PointCollector( isolineCollection ), tolerance, method ) );
+            isolineMap.put( isovalue, isolineCollection );
+        }
+
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that only the valid cells of {@code mask} are contoured:
+     * isolines end where they enter a cell with a NaN or nodata vertex. See {@link ValidityMask}.
+     */
+    public static IsolineMap<Point> computeIsoLines( ScalarField field, ValidityMask mask, double[] isovalues )
+    {
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+        Workspace workspace = Workspace.of( field );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue, workspace, mask );
+            IsolineCollection<Point> isolineCollection = marchingSquares.computeIsoLines( );
+            isolineMap.put( isovalue, isolineCollection );
+        }
+
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, ValidityMask, double[])} with the isolines passed to {@code sink}, as in
+     * {@link #computeIsoLines(ScalarField, double[], IsolineSink)}.
+     */
+    public static void computeIsoLines( ScalarField field, ValidityMask mask, double[] isovalues, IsolineSink sink )
+    {
+        Workspace workspace = Workspace.of( field );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue, workspace, mask );
+            marchingSquares.computeIsoLines( sink );
+        }
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that the grid-sized buffers are borrowed from {@code workspace},
+     * so that repeated calls on fields of the same shape do not reallocate them. See {@link Workspace}.
+     */
+    public static IsolineMap<Point> computeIsoLines( ScalarField field, double[] isovalues, Workspace workspace )
+    {
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue, workspace );
+            IsolineCollection<Point> isolineCollection = marchingSquares.computeIsoLines( );
+            isolineMap.put( isovalue, isolineCollection );
+        }
+
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that the isolines of each isovalue are packed into primitive arrays,
+     * which takes a fraction of the memory of {@link Point} objects. See {@link PackedIsolines}.
+     *
+     * @param floats Whether to store coordinates as floats.
+     */
+    public static PackedIsolineMap packedComputeIsoLines( ScalarField field, double[] isovalues, boolean floats )
+    {
+        PackedIsolineMap isolineMap = new PackedIsolineMap( );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue );
+            isolineMap.put( isovalue, marchingSquares.computePackedIsoLines( floats ) );
+        }
+
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #packedComputeIsoLines(ScalarField, double[], boolean)} with the buffers, including those of the
+     * packed builder, borrowed from {@code workspace}. Only the result arrays are allocated.
+     */
+    public static PackedIsolineMap packedComputeIsoLines( ScalarField field, double[] isovalues, boolean floats, Workspace workspace )
+    {
+        PackedIsolineMap isolineMap = new PackedIsolineMap( );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares marchingSquares = new MarchingSquares( field, isovalue, workspace );
+            isolineMap.put( isovalue, marchingSquares.computePackedIsoLines( floats ) );
+        }
+
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(ScalarField, double[])} except that all isovalues are handled in a single sweep over the grid:
+     * each cell is visited once and only emits segments for the isovalues within its range of z values. Total work is therefore
+     * proportional to the number of cells plus the size of the output, instead of the number of cells times the number of isovalues.
+     */
+    public static IsolineMap<Point> singlePassComputeIsoLines( ScalarField field, double[] isovalues )
+    {
+        MultiLevelMarchingSquares marchingSquares = new MultiLevelMarchingSquares( field, isovalues );
+        return marchingSquares.computeIsoLines( isovalues );
+    }
+
+    /**
+     * Same as {@link #singlePassComputeIsoLines(ScalarField, double[])} except that the isolines are packed into primitive arrays.
+     * See {@link #packedComputeIsoLines(ScalarField, double[], boolean)}.
+     */
+    public static PackedIsolineMap singlePassPackedComputeIsoLines( ScalarField field, double[] isovalues, boolean floats )
+    {
+        MultiLevelMarchingSquares marchingSquares = new MultiLevelMarchingSquares( field, isovalues );
+        return marchingSquares.computePackedIsoLines( isovalues, floats );
+    }
+
+    /**
+     * Generates the filled isoband holding the z values in [{@code lower}, {@code upper}) as polygons with holes.
+     * See {@link IsobandMarchingSquares}.
+     */
+    public static IsobandCollection computeIsoBand( ScalarField field, double lower, double upper )
+    {
+        IsobandMarchingSquares marchingSquares = new IsobandMarchingSquares( field, lower, upper );
+        return marchingSquares.computeIsoBand( );
+    }
+
+    /**
+     * Generates the isobands between each pair of consecutive sorted distinct {@code thresholds}.
+     * See {@link #computeIsoBand(ScalarField, double, double)}.
+     */
+    public static List<IsobandCollection> computeIsoBands( ScalarField field, double[] thresholds )
+    {
+        double[] levels = Arrays.stream( thresholds ).sorted( ).distinct( ).toArray( );
+
+        List<IsobandCollection> isobands = new ArrayList<>( );
+        for ( int i = 0; i + 1 < levels.length; i++ )
+        {
+            isobands.add( computeIsoBand( field, levels[i], levels[i + 1] ) );
+        }
+        return isobands;
     }
 }
@@ -0,0 +1,261 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * A hierarchical index of the minimum and maximum z values over square blocks of cells, used to find the cells
+ * that may be crossed by an isovalue without visiting all of them.
+ * <br><br>
+ * The leaves are blocks of {@code blockSize x blockSize} cells (smaller along the top and right borders of the grid),
+ * including the vertices on their borders. Each higher level merges 2 x 2 blocks of the level below, up to a single root block.
+ * A cell is crossed by an isovalue iff min &lt; isovalue &lt;= max over its vertices, and the same holds for the blocks containing it.
+ * NaN values are indexed as positive infinity since, like positive infinity, they are never lower than an isovalue.
+ * <br><br>
+ * The index is built once per field and can be shared across isovalues, calls and threads, but must be rebuilt whenever
+ * the values of the field change.
+ */
+public class MinMaxIndex
+{
+    public static final int DEFAULT_BLOCK_SIZE = 16;
+
+    protected final int nGridRows;
+    protected final int nGridCols;
+    protected final int blockSize;
+
+    // Number of block rows and block cols per level, level 0 being the leaves
+    protected final int[] levelRows;
+    protected final int[] levelCols;
+
+    // Per level, row-major block minimums and maximums
+    protected final double[][] mins;
+    protected final double[][] maxs;
+
+    public MinMaxIndex( ScalarField field )
+    {
+        this( field, DEFAULT_BLOCK_SIZE );
+    }
+
+    public MinMaxIndex( ScalarField field, int blockSize )
+    {
+        if ( blockSize < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal blockSize: " + blockSize );
+        }
+
+        this.nGridRows = field.getRows( ) - 1;
+        this.nGridCols = field.getCols( ) - 1;
+        this.blockSize = blockSize;
+
+        int nLevels = 1;
+        for ( int rows = ceilDiv( nGridRows, blockSize ), cols = ceilDiv( nGridCols, blockSize ); rows > 1 || cols > 1; nLevels++ )
+        {
+            rows = ceilDiv( rows, 2 );
+            cols = ceilDiv( cols, 2 );
+        }
+
+        this.levelRows = new int[nLevels];
+        this.levelCols = new int[nLevels];
+        this.mins = new double[nLevels][];
+        this.maxs = new double[nLevels][];
+
+        computeLeaves( field );
+        for ( int level = 1; level < nLevels; level++ )
+        {
+            computeLevel( level );
+        }
+    }
+
+    protected static int ceilDiv( int a, int b )
+    {
+        return ( a + b - 1 ) / b;
+    }
+
+    protected void computeLeaves( ScalarField field )
+    {
+        int rows = ceilDiv( nGridRows, blockSize );
+        int cols = ceilDiv( nGridCols, blockSize );
+        double[] min = new double[rows * cols];
+        double[] max = new double[rows * cols];
+
+        for ( int blockRow = 0; blockRow < rows; blockRow++ )
+        {
+            for ( int blockCol = 0; blockCol < cols; blockCol++ )
+            {
+                int block = blockRow * cols + blockCol;
+                double blockMin = Double.POSITIVE_INFINITY;
+                double blockMax = Double.NEGATIVE_INFINITY;
+
+                // Vertices of the cells of the block, hence toRow and toCol inclusive
+                int toRow = Math.min( ( blockRow + 1 ) * blockSize, nGridRows );
+                int toCol = Math.min( ( blockCol + 1 ) * blockSize, nGridCols );
+                for ( int row = blockRow * blockSize; row <= toRow; row++ )
+                {
+                    for ( int col = blockCol * blockSize; col <= toCol; col++ )
+                    {
+                        double z = field.getZ( row, col );
+                        if ( Double.isNaN( z ) )
+                        {
+                            z = Double.POSITIVE_INFINITY;
+                        }
+                        blockMin = Math.min( blockMin, z );
+                        blockMax = Math.max( blockMax, z );
+                    }
+                }
+
+                min[block] = blockMin;
+                max[block] = blockMax;
+            }
+        }
+
+        this.levelRows[0] = rows;
+        this.levelCols[0] = cols;
+        this.mins[0] = min;
+        this.maxs[0] = max;
+    }
+
+    protected void computeLevel( int level )
+    {
+        int childRows = levelRows[level - 1];
+        int childCols = levelCols[level - 1];
+        double[] childMin = mins[level - 1];
+        double[] childMax = maxs[level - 1];
+
+        int rows = ceilDiv( childRows, 2 );
+        int cols = ceilDiv( childCols, 2 );
+        double[] min = new double[rows * cols];
+        double[] max = new double[rows * cols];
+
+        for ( int blockRow = 0; blockRow < rows; blockRow++ )
+        {
+            for ( int blockCol = 0; blockCol < cols; blockCol++ )
+            {
+                double blockMin = Double.POSITIVE_INFINITY;
+                double blockMax = Double.NEGATIVE_INFINITY;
+                for ( int childRow = 2 * blockRow; childRow < Math.min( 2 * blockRow + 2, childRows ); childRow++ )
+                {
+                    for ( int childCol = 2 * blockCol; childCol < Math.min( 2 * blockCol + 2, childCols ); childCol++ )
+                    {
+                        blockMin = Math.min( blockMin, childMin[childRow * childCols + childCol] );
+                        blockMax = Math.max( blockMax, childMax[childRow * childCols + childCol] );
+                    }
+                }
+                min[blockRow * cols + blockCol] = blockMin;
+                max[blockRow * cols + blockCol] = blockMax;
+            }
+        }
+
+        this.levelRows[level] = rows;
+        this.levelCols[level] = cols;
+        this.mins[level] = min;
+        this.maxs[level] = max;
+    }
+
+    /**
+     * @return The leaf blocks that may be crossed by the isovalue, in row-major order.
+     */
+    public int[] findBlocks( double isovalue )
+    {
+        return findBlocks( isovalue, 0, nGridRows, 0, nGridCols );
+    }
+
+    /**
+     * @return The leaf blocks that may be crossed by the isovalue and overlap grid rows {@code fromRow} (inclusive) to {@code toRow}
+     * (exclusive) and grid columns {@code fromCol} (inclusive) to {@code toCol} (exclusive), in row-major order. Blocks outside
+     * the window are pruned as high up in the tree as possible, so the cost does not depend on the rest of the grid.
+     */
+    public int[] findBlocks( double isovalue, int fromRow, int toRow, int fromCol, int toCol )
+    {
+        IntArrayList blocks = new IntArrayList( );
+        findBlocks( isovalue, levelRows.length - 1, 0, 0, fromRow, toRow, fromCol, toCol, blocks );
+
+        // Leaves are found in quadtree order
+        int[] sorted = blocks.toIntArray( );
+        IntArrays.quickSort( sorted );
+        return sorted;
+    }
+
+    protected void findBlocks( double isovalue, int level, int blockRow, int blockCol, int fromRow, int toRow, int fromCol, int toCol,
+            IntArrayList blocks )
+    {
+        // Cells covered by the block
+        long span = (long) blockSize << level;
+        if ( blockRow * span >= toRow || ( blockRow + 1 ) * span <= fromRow || blockCol * span >= toCol || ( blockCol + 1 ) * span <= fromCol )
+        {
+            return;
+        }
+
+        int block = blockRow * levelCols[level] + blockCol;
+        if ( !( mins[level][block] < isovalue && isovalue <= maxs[level][block] ) )
+        {
+            return;
+        }
+
+        if ( level == 0 )
+        {
+            blocks.add( block );
+            return;
+        }
+
+        for ( int childRow = 2 * blockRow; childRow < Math.min( 2 * blockRow + 2, levelRows[level - 1] ); childRow++ )
+        {
+            for ( int childCol = 2 * blockCol; childCol < Math.min( 2 * blockCol + 2, levelCols[level - 1] ); childCol++ )
+            {
+                findBlocks( isovalue, level - 1, childRow, childCol, fromRow, toRow, fromCol, toCol, blocks );
+            }
+        }
+    }
+
+    /**
+     * @return Whether the index has the shape of {@code field}. It cannot tell whether it was built from its current values.
+     */
+    public boolean fits( ScalarField field )
+    {
+        return field.getRows( ) - 1 == nGridRows && field.getCols( ) - 1 == nGridCols;
+    }
+
+    public double getMin( )
+    {
+        return mins[levelRows.length - 1][0];
+    }
+
+    public double getMax( )
+    {
+        return maxs[levelRows.length - 1][0];
+    }
+
+    public int getBlockSize( )
+    {
+        return blockSize;
+    }
+
+    public int blockRow( int block )
+    {
+        return block / levelCols[0];
+    }
+
+    public int blockCol( int block )
+    {
+        return block % levelCols[0];
+    }
+
+    public int fromRow( int block )
+    {
+        return blockRow( block ) * blockSize;
+    }
+
+    public int toRow( int block )
+    {
+        return Math.min( fromRow( block ) + blockSize, nGridRows );
+    }
+
+    public int fromCol( int block )
+    {
+        return blockCol( block ) * blockSize;
+    }
+
+    public int toCol( int block )
+    {
+        return Math.min( fromCol( block ) + blockSize, nGridCols );
+    }
+}
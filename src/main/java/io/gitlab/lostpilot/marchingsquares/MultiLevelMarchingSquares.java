@@ -0,0 +1,289 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Computes the isolines of many isovalues in a single sweep over the grid.
+ * <br><br>
+ * Each cell is visited once. The sorted isovalues within the cell's range of z values are found by binary search,
+ * and only those emit segments. Segments are recorded as pairs of {@link GridEdges edge numbers} per isovalue, and
+ * interpolation points are only computed when tracing. The isolines, including their order, are the same as those of
+ * {@link MarchingSquares}.
+ */
+public class MultiLevelMarchingSquares
+{
+    protected final ScalarField field;
+    protected final GridEdges edges;
+
+    protected final int nGridRows;
+    protected final int nGridCols;
+
+    // Sorted distinct isovalues
+    protected final double[] levels;
+
+    // Per level, (start, end) edge pairs in the order MarchingSquares.computeSegments() creates them
+    protected final IntArrayList[] segments;
+
+    protected MultiLevelMarchingSquares( ScalarField field, double[] isovalues )
+    {
+        this.field = field;
+        this.edges = GridEdges.of( field );
+
+        this.nGridRows = field.getRows( ) - 1;
+        this.nGridCols = field.getCols( ) - 1;
+
+        this.levels = Arrays.stream( isovalues ).sorted( ).distinct( ).toArray( );
+        this.segments = new IntArrayList[levels.length];
+        for ( int level = 0; level < levels.length; level++ )
+        {
+            this.segments[level] = new IntArrayList( );
+        }
+    }
+
+    protected IsolineMap<Point> computeIsoLines( double[] isovalues )
+    {
+        computeSegments( );
+
+        IsolineCollection<Point>[] contours = computeContours( );
+
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+        for ( double isovalue : isovalues )
+        {
+            isolineMap.put( isovalue, contours[Arrays.binarySearch( levels, isovalue )] );
+        }
+        return isolineMap;
+    }
+
+    protected void computeSegments( )
+    {
+        ScalarField field = this.field;
+        double[] levels = this.levels;
+
+        for ( int gridRow = 0; gridRow < nGridRows; gridRow++ )
+        {
+            for ( int gridCol = 0; gridCol < nGridCols; gridCol++ )
+            {
+                double z0 = field.getZ( gridRow, gridCol );
+                double z1 = field.getZ( gridRow, gridCol + 1 );
+                double z2 = field.getZ( gridRow + 1, gridCol + 1 );
+                double z3 = field.getZ( gridRow + 1, gridCol );
+
+                double min = Math.min( Math.min( z0, z1 ), Math.min( z2, z3 ) );
+                double max = Math.max( Math.max( z0, z1 ), Math.max( z2, z3 ) );
+                if ( Double.isNaN( max ) )
+                {
+                    // Like positive infinity, NaN is never lower than an isovalue, as in MinMaxIndex
+                    max = Double.POSITIVE_INFINITY;
+                }
+
+                // A cell is crossed by the isovalue iff min < isovalue <= max
+                double bi = Double.NaN;
+                for ( int level = upperBound( levels, min ); level < levels.length && levels[level] <= max; level++ )
+                {
+                    double isovalue = levels[level];
+
+                    int b0 = z0 < isovalue ? 0 : 1;
+                    int b1 = z1 < isovalue ? 0 : 1;
+                    int b2 = z2 < isovalue ? 0 : 1;
+                    int b3 = z3 < isovalue ? 0 : 1;
+
+                    int lookupIndex = b0 | ( b1 << 1 ) | ( b2 << 2 ) | ( b3 << 3 );
+
+                    int decider = 0;
+                    if ( lookupIndex == 5 || lookupIndex == 10 )
+                    {
+                        if ( Double.isNaN( bi ) )
+                        {
+                            bi = MarchingSquares.asymptoticDecider( z0, z1, z2, z3 );
+                        }
+                        decider = bi < isovalue ? 0 : 1;
+                    }
+
+                    IntArrayList levelSegments = segments[level];
+                    for ( int side : MarchingSquares.SEGMENT_SIDES[decider][lookupIndex] )
+                    {
+                        levelSegments.add( edges.cellEdge( gridRow, gridCol, side ) );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Index of the first level strictly greater than {@code value}.
+     */
+    protected static int upperBound( double[] levels, double value )
+    {
+        int low = 0;
+        int high = levels.length;
+        while ( low < high )
+        {
+            int mid = ( low + high ) >>> 1;
+            if ( levels[mid] <= value )
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    protected IsolineCollection<Point>[] computeContours( )
+    {
+        // A single tracer serves all levels since tracing leaves it cleared
+        EdgeTracer tracer = new EdgeTracer( edges.size( ) );
+
+        IsolineCollection<Point>[] contours = new IsolineCollection[levels.length];
+        for ( int level = 0; level < levels.length; level++ )
+        {
+            contours[level] = computeContours( level, tracer );
+        }
+        return contours;
+    }
+
+    /**
+     * Same as {@link MarchingSquares#computeContours()} for the given level.
+     */
+    protected IsolineCollection<Point> computeContours( int level, EdgeTracer tracer )
+    {
+        addSegments( level, tracer );
+
+        IsolineCollection<Point> contours = new IsolineCollection<>( );
+        tracer.trace( new ContourCollector( levels[level], contours ) );
+        return contours;
+    }
+
+    protected void addSegments( int level, EdgeTracer tracer )
+    {
+        IntArrayList levelSegments = segments[level];
+        for ( int i = 0; i < levelSegments.size( ); i += 2 )
+        {
+            tracer.addSegment( levelSegments.getInt( i ), levelSegments.getInt( i + 1 ) );
+        }
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(double[])} except that the isolines are packed into primitive arrays.
+     */
+    protected PackedIsolineMap computePackedIsoLines( double[] isovalues, boolean floats )
+    {
+        computeSegments( );
+
+        EdgeTracer tracer = new EdgeTracer( edges.size( ) );
+        PackedIsolines[] packed = new PackedIsolines[levels.length];
+        for ( int level = 0; level < levels.length; level++ )
+        {
+            addSegments( level, tracer );
+
+            PackedIsolines.Builder builder = new PackedIsolines.Builder( levels[level], floats );
+            tracer.trace( new PackedCollector( levels[level], builder ) );
+            packed[level] = builder.build( );
+        }
+
+        PackedIsolineMap isolineMap = new PackedIsolineMap( );
+        for ( double isovalue : isovalues )
+        {
+            isolineMap.put( isovalue, packed[Arrays.binarySearch( levels, isovalue )] );
+        }
+        return isolineMap;
+    }
+
+    /**
+     * Turns traced edges into isolines, computing interpolation points on the fly.
+     */
+    protected class ContourCollector implements EdgeTracer.Visitor
+    {
+        protected final double isovalue;
+        protected final IsolineCollection<Point> contours;
+
+        protected Isoline<Point> contour;
+        protected int startingEdge;
+
+        protected ContourCollector( double isovalue, IsolineCollection<Point> contours )
+        {
+            this.isovalue = isovalue;
+            this.contours = contours;
+        }
+
+        @Override
+        public void beginContour( boolean closed )
+        {
+            contour = new Isoline<>( );
+            startingEdge = -1;
+        }
+
+        @Override
+        public void edge( int edge )
+        {
+            if ( startingEdge < 0 )
+            {
+                startingEdge = edge;
+                contour.add( edges.point( field, edge, isovalue ) );
+            }
+            else
+            {
+                // Closed contours end with their very starting point
+                contour.add( edge == startingEdge ? contour.get( 0 ) : edges.point( field, edge, isovalue ) );
+            }
+        }
+
+        @Override
+        public void endContour( )
+        {
+            contours.add( contour );
+        }
+    }
+
+    /**
+     * Turns traced edges into packed isolines, computing interpolation points on the fly.
+     */
+    protected class PackedCollector implements EdgeTracer.Visitor
+    {
+        protected final double isovalue;
+        protected final PackedIsolines.Builder builder;
+
+        protected boolean closed;
+        protected int startingEdge;
+
+        protected PackedCollector( double isovalue, PackedIsolines.Builder builder )
+        {
+            this.isovalue = isovalue;
+            this.builder = builder;
+        }
+
+        @Override
+        public void beginContour( boolean closed )
+        {
+            this.closed = closed;
+            this.startingEdge = -1;
+            builder.beginIsoline( closed );
+        }
+
+        @Override
+        public void edge( int edge )
+        {
+            if ( startingEdge < 0 )
+            {
+                startingEdge = edge;
+            }
+            else if ( closed && edge == startingEdge )
+            {
+                return;
+            }
+            Point point = edges.point( field, edge, isovalue );
+            builder.addVertex( point.getX( ), point.getY( ) );
+        }
+
+        @Override
+        public void endContour( )
+        {
+            builder.endIsoline( );
+        }
+    }
+}
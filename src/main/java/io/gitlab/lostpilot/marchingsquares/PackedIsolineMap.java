@@ -0,0 +1,49 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.doubles.Double2ObjectMap;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+
+/**
+ * Same as {@link IsolineMap} for {@link PackedIsolines}.
+ */
+public class PackedIsolineMap
+{
+    protected final Double2ObjectMap<PackedIsolines> isolineMap;
+
+    public PackedIsolineMap( )
+    {
+        this.isolineMap = new Double2ObjectLinkedOpenHashMap<>( );
+    }
+
+    public PackedIsolines put( double isovalue, PackedIsolines isolines )
+    {
+        return this.isolineMap.put( isovalue, isolines );
+    }
+
+    /**
+     * @return The isolines of {@code isovalue}, or null if it was not contoured.
+     */
+    public PackedIsolines get( double isovalue )
+    {
+        return this.isolineMap.get( isovalue );
+    }
+
+    /**
+     * @return A type-specific view of the underlying entry set. See {@link Double2ObjectMap#double2ObjectEntrySet()}.
+     */
+    public ObjectSet<Double2ObjectMap.Entry<PackedIsolines>> entrySet( )
+    {
+        return isolineMap.double2ObjectEntrySet( );
+    }
+
+    public boolean isEmpty( )
+    {
+        return this.isolineMap.isEmpty( );
+    }
+
+    public int size( )
+    {
+        return this.isolineMap.size( );
+    }
+}
@@ -0,0 +1,223 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The isolines of a single isovalue packed into primitive arrays: the x and y coordinates of all vertices interleaved in one
+ * {@code double[]} or {@code float[]} buffer, plus the offset of the first vertex of each isoline.
+ * <br><br>
+ * Vertex j of isoline i is at {@code xy[2 * (offsets[i] + j)]} and {@code xy[2 * (offsets[i] + j) + 1]}, and
+ * {@code offsets[size()]} is the total number of vertices. Unlike an {@link Isoline}, a closed isoline does not repeat its starting
+ * vertex at the end; {@link #isClosed(int)} tells whether it is closed. The accessors do not allocate, and the arrays can be
+ * handed as they are to renderers or serializers.
+ */
+public class PackedIsolines
+{
+    protected final double isovalue;
+    protected final int[] offsets;
+    protected final BitSet closed;
+
+    // One of these is null, depending on the precision
+    protected final double[] xy;
+    protected final float[] xyFloat;
+
+    protected PackedIsolines( double isovalue, int[] offsets, BitSet closed, double[] xy, float[] xyFloat )
+    {
+        this.isovalue = isovalue;
+        this.offsets = offsets;
+        this.closed = closed;
+        this.xy = xy;
+        this.xyFloat = xyFloat;
+    }
+
+    public double getIsovalue( )
+    {
+        return isovalue;
+    }
+
+    /**
+     * @return The number of isolines.
+     */
+    public int size( )
+    {
+        return offsets.length - 1;
+    }
+
+    public boolean isEmpty( )
+    {
+        return size( ) == 0;
+    }
+
+    public int getVertexCount( )
+    {
+        return offsets[offsets.length - 1];
+    }
+
+    public int getVertexCount( int isoline )
+    {
+        return offsets[isoline + 1] - offsets[isoline];
+    }
+
+    public boolean isClosed( int isoline )
+    {
+        return closed.get( isoline );
+    }
+
+    public double getX( int isoline, int vertex )
+    {
+        int index = 2 * ( offsets[isoline] + vertex );
+        return xy != null ? xy[index] : xyFloat[index];
+    }
+
+    public double getY( int isoline, int vertex )
+    {
+        int index = 2 * ( offsets[isoline] + vertex ) + 1;
+        return xy != null ? xy[index] : xyFloat[index];
+    }
+
+    /**
+     * @return Whether the coordinates are stored as floats, see {@link #getFloatXY()}.
+     */
+    public boolean isFloat( )
+    {
+        return xyFloat != null;
+    }
+
+    /**
+     * @return The vertex offsets of the isolines, followed by the total number of vertices.
+     */
+    public int[] getOffsets( )
+    {
+        return offsets;
+    }
+
+    /**
+     * @return The interleaved coordinates, or null if they are stored as floats.
+     */
+    public double[] getXY( )
+    {
+        return xy;
+    }
+
+    /**
+     * @return The interleaved coordinates, or null if they are stored as doubles.
+     */
+    public float[] getFloatXY( )
+    {
+        return xyFloat;
+    }
+
+    /**
+     * Appends isolines vertex by vertex, growing its arrays as needed. As a sink, it only takes isolines of its own isovalue.
+     */
+    public static class Builder implements IsolineSink
+    {
+        protected double isovalue;
+        protected final boolean floats;
+
+        protected int[] offsets = new int[16];
+        protected final BitSet closed = new BitSet( );
+        protected int nIsolines;
+
+        protected double[] xy;
+        protected float[] xyFloat;
+        protected int nVertices;
+
+        /**
+         * @param floats Whether to store coordinates as floats, halving the size of the buffer.
+         */
+        public Builder( double isovalue, boolean floats )
+        {
+            this.isovalue = isovalue;
+            this.floats = floats;
+            if ( floats )
+            {
+                this.xyFloat = new float[64];
+            }
+            else
+            {
+                this.xy = new double[64];
+            }
+        }
+
+        /**
+         * Empties the builder for another isovalue, keeping its arrays.
+         */
+        public Builder reset( double isovalue )
+        {
+            this.isovalue = isovalue;
+            this.closed.clear( );
+            this.nIsolines = 0;
+            this.nVertices = 0;
+            return this;
+        }
+
+        public void beginIsoline( boolean closed )
+        {
+            if ( nIsolines + 1 == offsets.length )
+            {
+                offsets = Arrays.copyOf( offsets, 2 * offsets.length );
+            }
+            offsets[nIsolines] = nVertices;
+            this.closed.set( nIsolines, closed );
+        }
+
+        @Override
+        public void beginIsoline( double isovalue, boolean closed )
+        {
+            if ( Double.compare( isovalue, this.isovalue ) != 0 )
+            {
+                throw new IllegalArgumentException( "Isoline of " + isovalue + " given to the builder of " + this.isovalue );
+            }
+            beginIsoline( closed );
+        }
+
+        @Override
+        public void vertex( double x, double y )
+        {
+            addVertex( x, y );
+        }
+
+        public void addVertex( double x, double y )
+        {
+            int index = 2 * nVertices;
+            if ( floats )
+            {
+                if ( index == xyFloat.length )
+                {
+                    xyFloat = Arrays.copyOf( xyFloat, 2 * xyFloat.length );
+                }
+                xyFloat[index] = (float) x;
+                xyFloat[index + 1] = (float) y;
+            }
+            else
+            {
+                if ( index == xy.length )
+                {
+                    xy = Arrays.copyOf( xy, 2 * xy.length );
+                }
+                xy[index] = x;
+                xy[index + 1] = y;
+            }
+            nVertices++;
+        }
+
+        @Override
+        public void endIsoline( )
+        {
+            nIsolines++;
+        }
+
+        /**
+         * @return The isolines added so far, in arrays trimmed to size.
+         */
+        public PackedIsolines build( )
+        {
+            int[] packedOffsets = Arrays.copyOf( offsets, nIsolines + 1 );
+            packedOffsets[nIsolines] = nVertices;
+            return new PackedIsolines( isovalue, packedOffsets, (BitSet) closed.clone( ),
+                    floats ? null : Arrays.copyOf( xy, 2 * nVertices ), floats ? Arrays.copyOf( xyFloat, 2 * nVertices ) : null );
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Classifies rows of vertices against an isovalue into bitsets, one bit per vertex set iff {@code !(z < isovalue)},
+ * so that NaN counts as above the isovalue exactly as in {@link MarchingSquares#computeSegments()}.
+ * <br><br>
+ * {@link #getInstance()} returns a {@link VectorRowClassifier} when the {@code jdk.incubator.vector} module is available
+ * (run with {@code --add-modules jdk.incubator.vector}), and this scalar implementation otherwise.
+ * {@link #cellCodes} then combines the bitsets of two adjacent rows into cell lookup indices 64 cells at a time.
+ */
+public class RowClassifier
+{
+    protected static final RowClassifier INSTANCE = ModuleLayer.boot( ).findModule( "jdk.incubator.vector" ).isPresent( )
+            ? new VectorRowClassifier( ) : new RowClassifier( );
+
+    public static RowClassifier getInstance( )
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * @return The number of longs holding one bit per vertex of {@code n} vertices.
+     */
+    public static int words( int n )
+    {
+        return ( n + 63 ) >>> 6;
+    }
+
+    /**
+     * Sets bit i of {@code bits} iff {@code !(z[offset + i] < isovalue)}, for i in [0, n).
+     */
+    public void classify( double[] z, int offset, int n, double isovalue, long[] bits )
+    {
+        for ( int w = 0; w < words( n ); w++ )
+        {
+            long word = 0L;
+            int from = w << 6;
+            int to = Math.min( n, from + 64 );
+            for ( int i = from; i < to; i++ )
+            {
+                word |= ( z[offset + i] < isovalue ? 0L : 1L ) << ( i - from );
+            }
+            bits[w] = word;
+        }
+    }
+
+    /**
+     * Same as {@link #classify(double[], int, int, double, long[])} for float values, widened to double before comparing.
+     */
+    public void classify( float[] z, int offset, int n, double isovalue, long[] bits )
+    {
+        for ( int w = 0; w < words( n ); w++ )
+        {
+            long word = 0L;
+            int from = w << 6;
+            int to = Math.min( n, from + 64 );
+            for ( int i = from; i < to; i++ )
+            {
+                word |= ( z[offset + i] < isovalue ? 0L : 1L ) << ( i - from );
+            }
+            bits[w] = word;
+        }
+    }
+
+    /**
+     * Combines the bitsets of the bottom and top vertices of a row of {@code nCells} cells into their lookup indices
+     * b0 | b1 &lt;&lt; 1 | b2 &lt;&lt; 2 | b3 &lt;&lt; 3, see {@link MarchingSquares#SEGMENT_SIDES}. Cells whose four corners agree
+     * are found 64 at a time and get 0 or 15 without further work.
+     *
+     * @param bottom Bits of the nCells + 1 bottom vertices.
+     * @param top Bits of the nCells + 1 top vertices.
+     * @param codes Receives the lookup index of cell i at {@code codes[offset + i]}.
+     * @param saddles Receives one bit per cell, set iff its lookup index is 5 or 10.
+     */
+    public static void cellCodes( long[] bottom, long[] top, int nCells, int[] codes, int offset, long[] saddles )
+    {
+        // The bitsets may be longer than needed, so only the words holding the nCells + 1 vertices are read
+        int nWords = words( nCells );
+        int nVertexWords = words( nCells + 1 );
+        for ( int w = 0; w < nWords; w++ )
+        {
+            long carryBottom = w + 1 < nVertexWords ? bottom[w + 1] << 63 : 0L;
+            long carryTop = w + 1 < nVertexWords ? top[w + 1] << 63 : 0L;
+
+            long b0 = bottom[w];
+            long b1 = ( bottom[w] >>> 1 ) | carryBottom;
+            long b2 = ( top[w] >>> 1 ) | carryTop;
+            long b3 = top[w];
+            long crossed = ( b0 ^ b1 ) | ( b0 ^ b2 ) | ( b0 ^ b3 );
+            saddles[w] = ~( b0 ^ b2 ) & ~( b1 ^ b3 ) & ( b0 ^ b1 );
+
+            int from = w << 6;
+            int to = Math.min( nCells, from + 64 );
+            if ( to - from < 64 )
+            {
+                saddles[w] &= ( 1L << ( to - from ) ) - 1;
+            }
+            for ( int i = from; i < to; i++ )
+            {
+                int shift = i - from;
+                if ( ( ( crossed >>> shift ) & 1L ) == 0L )
+                {
+                    codes[offset + i] = (int) ( ( b0 >>> shift ) & 1L ) * 15;
+                }
+                else
+                {
+                    codes[offset + i] = (int) ( ( b0 >>> shift ) & 1L ) | (int) ( ( b1 >>> shift ) & 1L ) << 1
+                            | (int) ( ( b2 >>> shift ) & 1L ) << 2 | (int) ( ( b3 >>> shift ) & 1L ) << 3;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * A two-dimensional scalar field sampled on a grid of vertices, indexed by (row, col).
+ * <br><br>
+ * As elsewhere in this package, row 0 is at the bottom and col 0 is at the left, so that the
+ * vertices of the cell (row, col) are, counter-clockwise from lower left:
+ * (row, col), (row, col + 1), (row + 1, col + 1) and (row + 1, col).
+ */
+public interface ScalarField
+{
+    /**
+     * @return Number of vertex rows.
+     */
+    int getRows( );
+
+    /**
+     * @return Number of vertex columns.
+     */
+    int getCols( );
+
+    double getX( int row, int col );
+
+    double getY( int row, int col );
+
+    double getZ( int row, int col );
+
+    /**
+     * @return The geometry to contour this field in index space, or null to interpolate the coordinates of
+     * {@link #getX(int, int)} and {@link #getY(int, int)} directly.
+     */
+    default GridGeometry getGeometry( )
+    {
+        return null;
+    }
+}
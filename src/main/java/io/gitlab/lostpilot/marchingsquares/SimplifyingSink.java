@@ -0,0 +1,194 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Simplifies isolines on the fly before passing them on to another sink, holding at most three vertices at a time, so that discarded
+ * vertices are never stored anywhere.
+ * <br><br>
+ * Both methods keep a subsequence of the vertices, always including the first one, and the last one of open isolines:
+ * <ul>
+ * <li>{@link Method#RADIAL_DISTANCE} drops every vertex closer than the tolerance to the last kept vertex.</li>
+ * <li>{@link Method#AREA} drops a vertex when the triangle it makes with the last kept vertex and the next vertex has an area below
+ * the square of the tolerance, a single greedy pass of Visvalingam-Whyatt. It also removes long straight runs of vertices.</li>
+ * </ul>
+ * Closed isolines left with fewer than 3 vertices, that is loops about the size of the tolerance, are dropped altogether.
+ */
+public class SimplifyingSink implements IsolineSink
+{
+    public enum Method
+    {
+        RADIAL_DISTANCE, AREA
+    }
+
+    protected final IsolineSink sink;
+    protected final double tolerance;
+    protected final Method method;
+
+    protected final double squaredTolerance;
+
+    protected double isovalue;
+    protected boolean closed;
+
+    // The isoline is only passed on once it is sure to be kept, see start
+    protected boolean started;
+    protected int nKept;
+    protected double firstX;
+    protected double firstY;
+    protected double secondX;
+    protected double secondY;
+
+    protected double keptX;
+    protected double keptY;
+
+    // Last vertex seen but not kept yet
+    protected boolean pending;
+    protected double pendingX;
+    protected double pendingY;
+
+    public SimplifyingSink( IsolineSink sink, double tolerance, Method method )
+    {
+        if ( !( tolerance >= 0 ) )
+        {
+            throw new IllegalArgumentException( "Illegal tolerance: " + tolerance );
+        }
+        this.sink = sink;
+        this.tolerance = tolerance;
+        this.method = method;
+        this.squaredTolerance = tolerance * tolerance;
+    }
+
+    public double getTolerance( )
+    {
+        return tolerance;
+    }
+
+    public Method getMethod( )
+    {
+        return method;
+    }
+
+    @Override
+    public void beginIsoline( double isovalue, boolean closed )
+    {
+        this.isovalue = isovalue;
+        this.closed = closed;
+        this.started = false;
+        this.nKept = 0;
+        this.pending = false;
+    }
+
+    @Override
+    public void vertex( double x, double y )
+    {
+        if ( nKept == 0 )
+        {
+            keep( x, y );
+            return;
+        }
+
+        if ( method == Method.RADIAL_DISTANCE )
+        {
+            if ( squaredDistance( keptX, keptY, x, y ) >= squaredTolerance )
+            {
+                keep( x, y );
+                pending = false;
+            }
+            else
+            {
+                pend( x, y );
+            }
+        }
+        else
+        {
+            if ( pending && 0.5 * Math.abs( cross( keptX, keptY, pendingX, pendingY, x, y ) ) >= squaredTolerance )
+            {
+                keep( pendingX, pendingY );
+            }
+            pend( x, y );
+        }
+    }
+
+    @Override
+    public void endIsoline( )
+    {
+        if ( pending )
+        {
+            if ( !closed )
+            {
+                keep( pendingX, pendingY );
+            }
+            else if ( method == Method.RADIAL_DISTANCE ? squaredDistance( pendingX, pendingY, firstX, firstY ) >= squaredTolerance
+                    : 0.5 * Math.abs( cross( keptX, keptY, pendingX, pendingY, firstX, firstY ) ) >= squaredTolerance )
+            {
+                keep( pendingX, pendingY );
+            }
+        }
+
+        if ( !started && nKept > 0 && !closed )
+        {
+            start( );
+        }
+        if ( started )
+        {
+            sink.endIsoline( );
+        }
+    }
+
+    protected void pend( double x, double y )
+    {
+        pending = true;
+        pendingX = x;
+        pendingY = y;
+    }
+
+    protected void keep( double x, double y )
+    {
+        keptX = x;
+        keptY = y;
+        nKept++;
+        if ( started )
+        {
+            sink.vertex( x, y );
+        }
+        else if ( nKept == 1 )
+        {
+            firstX = x;
+            firstY = y;
+        }
+        else if ( nKept == 2 )
+        {
+            secondX = x;
+            secondY = y;
+        }
+        else
+        {
+            start( );
+            sink.vertex( x, y );
+        }
+    }
+
+    /**
+     * Passes on the beginning of the isoline along with the vertices kept so far.
+     */
+    protected void start( )
+    {
+        started = true;
+        sink.beginIsoline( isovalue, closed );
+        sink.vertex( firstX, firstY );
+        if ( nKept > 1 )
+        {
+            sink.vertex( secondX, secondY );
+        }
+    }
+
+    protected static double squaredDistance( double x0, double y0, double x1, double y1 )
+    {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        return dx * dx + dy * dy;
+    }
+
+    protected static double cross( double x0, double y0, double x1, double y1, double x2, double y2 )
+    {
+        return ( x1 - x0 ) * ( y2 - y0 ) - ( y1 - y0 ) * ( x2 - x0 );
+    }
+}
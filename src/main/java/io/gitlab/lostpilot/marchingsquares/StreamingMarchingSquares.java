@@ -0,0 +1,478 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Computes isolines from a field that is fed one row at a time, from bottom to top, for fields too large to hold in memory.
+ * <br><br>
+ * Only three rows of z values are kept: the two rows of the current row of cells plus the next row, which tells whether the
+ * current row is the last one. Open fragments of isolines are kept along the frontier between processed and unprocessed cells,
+ * and each isoline is handed to the {@link IsolineConsumer} as soon as it closes or both of its ends reach the border of the grid.
+ * Peak memory is therefore proportional to the width of the grid times the number of isovalues plus the size of the open fragments,
+ * independent of the number of rows.
+ * <br><br>
+ * Each isoline has the same points, in the same order, as the corresponding isoline of {@link MarchingSquares}, but isolines are
+ * handed over in the order in which they are completed.
+ */
+public class StreamingMarchingSquares
+{
+    /**
+     * A pull-based source of rows.
+     */
+    @FunctionalInterface
+    public interface RowSource
+    {
+        /**
+         * Reads the next row of z values into {@code z}.
+         *
+         * @return Whether a row was read, false at the end of the field.
+         */
+        boolean nextRow( double[] z );
+    }
+
+    protected final double[] levels;
+    protected final IsolineConsumer consumer;
+
+    protected final RowWindow window;
+    protected final int nGridCols;
+
+    // Per level, fragments ending on the bottom edges of the current row of cells, and on the top edges of it
+    protected Fragment[][] frontier;
+    protected Fragment[][] nextFrontier;
+
+    // Per level, fragments ending on the vertical edges of the current row of cells, by vertex column
+    protected final Fragment[][] verticals;
+
+    // Creation order of segments, which is also the order of MarchingSquares.computeContours()
+    protected long rank;
+
+    /**
+     * @param xAxis x coordinate of each column.
+     * @param isovalues Array of isovalues.
+     * @param consumer Receives each isoline as soon as it is complete.
+     */
+    public StreamingMarchingSquares( double[] xAxis, double[] isovalues, IsolineConsumer consumer )
+    {
+        if ( xAxis.length < 2 )
+        {
+            throw new IllegalArgumentException( "Field must have at least 2 cols: " + xAxis.length );
+        }
+
+        this.levels = Arrays.stream( isovalues ).sorted( ).distinct( ).toArray( );
+        this.consumer = consumer;
+
+        this.window = new RowWindow( xAxis );
+        this.nGridCols = xAxis.length - 1;
+
+        this.frontier = new Fragment[levels.length][nGridCols];
+        this.nextFrontier = new Fragment[levels.length][nGridCols];
+        this.verticals = new Fragment[levels.length][nGridCols + 1];
+    }
+
+    /**
+     * Feeds the next row of the field. The values are copied, so {@code z} can be reused by the caller.
+     */
+    public void addRow( double y, double[] z )
+    {
+        if ( window.rows != Integer.MAX_VALUE )
+        {
+            throw new IllegalStateException( "Already finished" );
+        }
+        window.addRow( y, z );
+
+        // Row n - 3 of cells is known not to be the last one once row n - 1 of vertices has arrived
+        if ( window.nRows >= 3 )
+        {
+            computeRow( window.nRows - 3, false );
+        }
+    }
+
+    /**
+     * Signals the end of the field, completing all remaining isolines.
+     */
+    public void finish( )
+    {
+        if ( window.rows != Integer.MAX_VALUE )
+        {
+            return;
+        }
+        window.rows = window.nRows;
+
+        if ( window.nRows >= 2 )
+        {
+            computeRow( window.nRows - 2, true );
+        }
+    }
+
+    protected void computeRow( int gridRow, boolean last )
+    {
+        RowWindow window = this.window;
+        double[] levels = this.levels;
+
+        for ( int gridCol = 0; gridCol < nGridCols; gridCol++ )
+        {
+            double z0 = window.getZ( gridRow, gridCol );
+            double z1 = window.getZ( gridRow, gridCol + 1 );
+            double z2 = window.getZ( gridRow + 1, gridCol + 1 );
+            double z3 = window.getZ( gridRow + 1, gridCol );
+
+            double min = Math.min( Math.min( z0, z1 ), Math.min( z2, z3 ) );
+            double max = Math.max( Math.max( z0, z1 ), Math.max( z2, z3 ) );
+            if ( Double.isNaN( max ) )
+            {
+                // Like positive infinity, NaN is never lower than an isovalue, as in MinMaxIndex
+                max = Double.POSITIVE_INFINITY;
+            }
+
+            for ( int level = MultiLevelMarchingSquares.upperBound( levels, min ); level < levels.length && levels[level] <= max; level++ )
+            {
+                double isovalue = levels[level];
+
+                int b0 = z0 < isovalue ? 0 : 1;
+                int b1 = z1 < isovalue ? 0 : 1;
+                int b2 = z2 < isovalue ? 0 : 1;
+                int b3 = z3 < isovalue ? 0 : 1;
+
+                int lookupIndex = b0 | ( b1 << 1 ) | ( b2 << 2 ) | ( b3 << 3 );
+                int decider = 0;
+                if ( lookupIndex == 5 || lookupIndex == 10 )
+                {
+                    decider = MarchingSquares.asymptoticDecider( z0, z1, z2, z3 ) < isovalue ? 0 : 1;
+                }
+
+                int[] sides = MarchingSquares.SEGMENT_SIDES[decider][lookupIndex];
+                for ( int i = 0; i < sides.length; i += 2 )
+                {
+                    addSegment( level, gridRow, gridCol, sides[i], sides[i + 1], last );
+                }
+            }
+        }
+
+        Fragment[][] swap = frontier;
+        frontier = nextFrontier;
+        nextFrontier = swap;
+
+        if ( last )
+        {
+            // Every isoline has been completed by now
+            for ( Fragment[] fragments : frontier )
+            {
+                Arrays.fill( fragments, null );
+            }
+        }
+    }
+
+    protected void addSegment( int level, int gridRow, int gridCol, int startSide, int endSide, boolean last )
+    {
+        double isovalue = levels[level];
+
+        // Only the bottom and left edges of a cell can be shared with a cell that has already been processed
+        Fragment start = take( level, gridCol, startSide );
+        Fragment end = take( level, gridCol, endSide );
+
+        Fragment fragment;
+        if ( start == null && end == null )
+        {
+            fragment = new Fragment( rank );
+            Point startingPoint = point( gridRow, gridCol, startSide, isovalue );
+            fragment.tail.add( startingPoint );
+            fragment.tail.add( point( gridRow, gridCol, endSide, isovalue ) );
+            fragment.anchor = startingPoint;
+            fragment.headFinal = isBorder( gridRow, gridCol, startSide, last );
+            fragment.tailFinal = isBorder( gridRow, gridCol, endSide, last );
+            put( level, gridCol, startSide, fragment, last );
+            put( level, gridCol, endSide, fragment, last );
+        }
+        else if ( end == null )
+        {
+            fragment = start;
+            fragment.tail.add( point( gridRow, gridCol, endSide, isovalue ) );
+            fragment.tailFinal = isBorder( gridRow, gridCol, endSide, last );
+            put( level, gridCol, endSide, fragment, last );
+        }
+        else if ( start == null )
+        {
+            fragment = end;
+            fragment.head.add( point( gridRow, gridCol, startSide, isovalue ) );
+            fragment.headFinal = isBorder( gridRow, gridCol, startSide, last );
+            put( level, gridCol, startSide, fragment, last );
+        }
+        else if ( start == end )
+        {
+            consumer.accept( isovalue, start.toClosedIsoline( ) );
+            fragment = null;
+        }
+        else
+        {
+            fragment = Fragment.merge( start, end );
+        }
+        rank++;
+
+        if ( fragment != null && fragment.headFinal && fragment.tailFinal )
+        {
+            consumer.accept( isovalue, fragment.toIsoline( ) );
+        }
+    }
+
+    protected Fragment take( int level, int gridCol, int side )
+    {
+        Fragment fragment = null;
+        if ( side == GridEdges.BOTTOM )
+        {
+            fragment = frontier[level][gridCol];
+            frontier[level][gridCol] = null;
+        }
+        else if ( side == GridEdges.LEFT )
+        {
+            fragment = verticals[level][gridCol];
+            verticals[level][gridCol] = null;
+        }
+        return Fragment.resolve( fragment );
+    }
+
+    protected void put( int level, int gridCol, int side, Fragment fragment, boolean last )
+    {
+        if ( side == GridEdges.TOP && !last )
+        {
+            nextFrontier[level][gridCol] = fragment;
+        }
+        else if ( side == GridEdges.RIGHT && gridCol < nGridCols - 1 )
+        {
+            verticals[level][gridCol + 1] = fragment;
+        }
+    }
+
+    protected boolean isBorder( int gridRow, int gridCol, int side, boolean last )
+    {
+        return switch ( side )
+        {
+            case GridEdges.BOTTOM -> gridRow == 0;
+            case GridEdges.RIGHT -> gridCol == nGridCols - 1;
+            case GridEdges.TOP -> last;
+            case GridEdges.LEFT -> gridCol == 0;
+            default -> throw new IllegalArgumentException( "Illegal side: " + side );
+        };
+    }
+
+    protected Point point( int gridRow, int gridCol, int side, double isovalue )
+    {
+        return switch ( side )
+        {
+            case GridEdges.BOTTOM -> MarchingSquares.horizontalEdgePoint( window, gridRow, gridCol, isovalue );
+            case GridEdges.RIGHT -> MarchingSquares.verticalEdgePoint( window, gridRow, gridCol + 1, isovalue );
+            case GridEdges.TOP -> MarchingSquares.horizontalEdgePoint( window, gridRow + 1, gridCol, isovalue );
+            case GridEdges.LEFT -> MarchingSquares.verticalEdgePoint( window, gridRow, gridCol, isovalue );
+            default -> throw new IllegalArgumentException( "Illegal side: " + side );
+        };
+    }
+
+    /**
+     * Feeds all rows of {@code source} to a new {@link StreamingMarchingSquares}, on a grid where y(row) = y0 + row * dy.
+     */
+    public static void computeIsoLines( RowSource source, double[] xAxis, double y0, double dy, double[] isovalues, IsolineConsumer consumer )
+    {
+        StreamingMarchingSquares marchingSquares = new StreamingMarchingSquares( xAxis, isovalues, consumer );
+
+        double[] z = new double[xAxis.length];
+        for ( int row = 0; source.nextRow( z ); row++ )
+        {
+            marchingSquares.addRow( y0 + row * dy, z );
+        }
+        marchingSquares.finish( );
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(RowSource, double[], double, double, double[], IsolineConsumer)} for an iterator of rows.
+     */
+    public static void computeIsoLines( Iterator<double[]> rows, double[] xAxis, double y0, double dy, double[] isovalues, IsolineConsumer consumer )
+    {
+        computeIsoLines( z -> {
+            if ( !rows.hasNext( ) )
+            {
+                return false;
+            }
+            double[] row = rows.next( );
+            if ( row.length != z.length )
+            {
+                throw new IllegalArgumentException( "Expected " + z.length + " z values but got " + row.length );
+            }
+            System.arraycopy( row, 0, z, 0, z.length );
+            return true;
+        }, xAxis, y0, dy, isovalues, consumer );
+    }
+
+    /**
+     * A piece of an isoline whose points are kept as a reversed head followed by a tail, so that it can grow at both ends.
+     */
+    protected static class Fragment
+    {
+        protected final ArrayList<Point> head = new ArrayList<>( );
+        protected final ArrayList<Point> tail = new ArrayList<>( );
+
+        protected boolean headFinal;
+        protected boolean tailFinal;
+
+        // Starting point of the fragment's first segment, where a closed isoline starts
+        protected Point anchor;
+        protected long anchorRank;
+
+        protected Fragment mergedInto;
+
+        protected Fragment( long anchorRank )
+        {
+            this.anchorRank = anchorRank;
+        }
+
+        protected static Fragment resolve( Fragment fragment )
+        {
+            while ( fragment != null && fragment.mergedInto != null )
+            {
+                fragment = fragment.mergedInto;
+            }
+            return fragment;
+        }
+
+        protected int size( )
+        {
+            return head.size( ) + tail.size( );
+        }
+
+        /**
+         * Joins {@code start}, whose tail is linked to the head of {@code end}, copying the smaller fragment into the larger one.
+         */
+        protected static Fragment merge( Fragment start, Fragment end )
+        {
+            Fragment merged;
+            Fragment other;
+            if ( start.size( ) >= end.size( ) )
+            {
+                merged = start;
+                other = end;
+                for ( int i = end.head.size( ) - 1; i >= 0; i-- )
+                {
+                    start.tail.add( end.head.get( i ) );
+                }
+                start.tail.addAll( end.tail );
+                start.tailFinal = end.tailFinal;
+            }
+            else
+            {
+                merged = end;
+                other = start;
+                for ( int i = start.tail.size( ) - 1; i >= 0; i-- )
+                {
+                    end.head.add( start.tail.get( i ) );
+                }
+                end.head.addAll( start.head );
+                end.headFinal = start.headFinal;
+            }
+
+            if ( other.anchorRank < merged.anchorRank )
+            {
+                merged.anchor = other.anchor;
+                merged.anchorRank = other.anchorRank;
+            }
+            other.mergedInto = merged;
+            other.head.clear( );
+            other.tail.clear( );
+            return merged;
+        }
+
+        protected Isoline<Point> toIsoline( )
+        {
+            Isoline<Point> isoline = new Isoline<>( );
+            isoline.ensureCapacity( size( ) );
+            for ( int i = head.size( ) - 1; i >= 0; i-- )
+            {
+                isoline.add( head.get( i ) );
+            }
+            isoline.addAll( tail );
+            return isoline;
+        }
+
+        /**
+         * @return The isoline closed by a segment from the tail back to the head, starting and ending at the anchor.
+         */
+        protected Isoline<Point> toClosedIsoline( )
+        {
+            Isoline<Point> points = toIsoline( );
+
+            int anchorIndex = 0;
+            while ( points.get( anchorIndex ) != anchor )
+            {
+                anchorIndex++;
+            }
+
+            Isoline<Point> isoline = new Isoline<>( );
+            isoline.ensureCapacity( points.size( ) + 1 );
+            isoline.addAll( points.subList( anchorIndex, points.size( ) ) );
+            isoline.addAll( points.subList( 0, anchorIndex + 1 ) );
+            return isoline;
+        }
+    }
+
+    /**
+     * The last three rows fed, seen as a field indexed by absolute row. The number of rows is unknown until the end.
+     */
+    protected static class RowWindow implements ScalarField
+    {
+        protected final double[] xAxis;
+        protected final double[][] z = new double[3][];
+        protected final double[] y = new double[3];
+
+        protected int nRows;
+        protected int rows = Integer.MAX_VALUE;
+
+        protected RowWindow( double[] xAxis )
+        {
+            this.xAxis = xAxis;
+            for ( int i = 0; i < 3; i++ )
+            {
+                this.z[i] = new double[xAxis.length];
+            }
+        }
+
+        protected void addRow( double y, double[] z )
+        {
+            if ( z.length != xAxis.length )
+            {
+                throw new IllegalArgumentException( "Expected " + xAxis.length + " z values but got " + z.length );
+            }
+            System.arraycopy( z, 0, this.z[nRows % 3], 0, z.length );
+            this.y[nRows % 3] = y;
+            nRows++;
+        }
+
+        @Override
+        public int getRows( )
+        {
+            return rows;
+        }
+
+        @Override
+        public int getCols( )
+        {
+            return xAxis.length;
+        }
+
+        @Override
+        public double getX( int row, int col )
+        {
+            return xAxis[col];
+        }
+
+        @Override
+        public double getY( int row, int col )
+        {
+            return y[row % 3];
+        }
+
+        @Override
+        public double getZ( int row, int col )
+        {
+            return z[row % 3][col];
+        }
+    }
+}
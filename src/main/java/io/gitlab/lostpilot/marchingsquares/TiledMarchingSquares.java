@@ -0,0 +1,247 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Serves the isolines of a field as square tiles at several zoom levels, for web maps, caching the tiles most recently served.
+ * <br><br>
+ * Zoom z is contoured on level {@code getMaxZoom() - z} of a {@link FieldPyramid}, zoom 0 holding the whole field in a single tile.
+ * Tile (z, x, y) covers the cells of columns [x * tileSize, (x + 1) * tileSize) and rows [y * tileSize, (y + 1) * tileSize) of that
+ * level, clipped to the field, rows counting from the bottom as everywhere in this package. Neighbouring tiles share their border
+ * vertices, and isolines are interpolated on the whole level rather than on the tile, so that isolines crossing a border end on
+ * exactly the same point in both tiles: there are no seams, and the isolines of a tile are those of the whole level clipped to it,
+ * split into open isolines wherever they leave the tile.
+ * <br><br>
+ * Tiles are cached by field version, zoom, position and isovalues, in least-recently-used order, up to a total size in bytes.
+ * {@link #update(ScalarField)} starts a new version, evicting all tiles of the previous one. The service is thread-safe; tiles
+ * missing from the cache are contoured outside of any lock, so two threads may compute the same tile at the same time.
+ */
+public class TiledMarchingSquares
+{
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    protected final int tileSize;
+    protected final boolean floats;
+    protected final long maxCacheBytes;
+
+    protected FieldPyramid pyramid;
+    protected long version;
+
+    protected final LinkedHashMap<TileKey, PackedIsolineMap> cache;
+    protected long cacheBytes;
+    protected long hits;
+    protected long misses;
+
+    /**
+     * @param tileSize Number of cells along each side of a tile.
+     * @param floats Whether to store coordinates as floats, halving the size of tiles.
+     * @param maxCacheBytes Maximum total size of cached tiles.
+     */
+    public TiledMarchingSquares( ScalarField field, int tileSize, boolean floats, long maxCacheBytes )
+    {
+        if ( tileSize < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal tile size: " + tileSize );
+        }
+        this.tileSize = tileSize;
+        this.floats = floats;
+        this.maxCacheBytes = maxCacheBytes;
+        this.pyramid = new FieldPyramid( field, tileSize );
+        this.cache = new LinkedHashMap<>( 16, 0.75f, true );
+    }
+
+    /**
+     * Replaces the field with a new version of it, which may have a different shape, and evicts all tiles of the previous version.
+     */
+    public void update( ScalarField field )
+    {
+        FieldPyramid pyramid = new FieldPyramid( field, tileSize );
+        synchronized ( this )
+        {
+            this.pyramid = pyramid;
+            this.version++;
+            evict( entry -> entry.getKey( ).version != version );
+        }
+    }
+
+    public synchronized long getVersion( )
+    {
+        return version;
+    }
+
+    public synchronized int getMaxZoom( )
+    {
+        return pyramid.getLevelCount( ) - 1;
+    }
+
+    public synchronized int getTileCountX( int zoom )
+    {
+        return tileCount( level( zoom ).getCols( ) - 1 );
+    }
+
+    public synchronized int getTileCountY( int zoom )
+    {
+        return tileCount( level( zoom ).getRows( ) - 1 );
+    }
+
+    /**
+     * @return The isolines of tile (zoom, x, y) for each of {@code isovalues}, from the cache if possible. The result is shared
+     * with the cache and must not be modified.
+     */
+    public PackedIsolineMap getTile( int zoom, int x, int y, double[] isovalues )
+    {
+        ScalarField level;
+        TileKey key;
+        synchronized ( this )
+        {
+            level = level( zoom );
+            if ( x < 0 || x >= tileCount( level.getCols( ) - 1 ) || y < 0 || y >= tileCount( level.getRows( ) - 1 ) )
+            {
+                throw new IllegalArgumentException( "No tile (" + x + ", " + y + ") at zoom " + zoom );
+            }
+            key = new TileKey( version, zoom, x, y, isovalues.clone( ) );
+            PackedIsolineMap tile = cache.get( key );
+            if ( tile != null )
+            {
+                hits++;
+                return tile;
+            }
+            misses++;
+        }
+
+        PackedIsolineMap tile = contour( level, x, y, key.isovalues );
+
+        synchronized ( this )
+        {
+            // Tiles of an older version are stale as soon as they are computed
+            if ( key.version == version && !cache.containsKey( key ) )
+            {
+                cache.put( key, tile );
+                cacheBytes += sizeOf( tile );
+                Iterator<Map.Entry<TileKey, PackedIsolineMap>> iterator = cache.entrySet( ).iterator( );
+                while ( cacheBytes > maxCacheBytes && iterator.hasNext( ) )
+                {
+                    cacheBytes -= sizeOf( iterator.next( ).getValue( ) );
+                    iterator.remove( );
+                }
+            }
+        }
+        return tile;
+    }
+
+    public synchronized int getCachedTileCount( )
+    {
+        return cache.size( );
+    }
+
+    public synchronized long getCachedBytes( )
+    {
+        return cacheBytes;
+    }
+
+    public synchronized long getHitCount( )
+    {
+        return hits;
+    }
+
+    public synchronized long getMissCount( )
+    {
+        return misses;
+    }
+
+    protected PackedIsolineMap contour( ScalarField level, int x, int y, double[] isovalues )
+    {
+        int fromRow = y * tileSize;
+        int fromCol = x * tileSize;
+        FieldWindow window = new FieldWindow( level, fromRow, Math.min( fromRow + tileSize, level.getRows( ) - 1 ) + 1,
+                fromCol, Math.min( fromCol + tileSize, level.getCols( ) - 1 ) + 1 );
+
+        PackedIsolineMap isolineMap = new PackedIsolineMap( );
+        Workspace workspace = Workspace.of( window );
+        for ( double isovalue : isovalues )
+        {
+            PackedIsolines.Builder builder = workspace.getBuilder( isovalue, floats );
+            new WindowMarchingSquares( window, isovalue, workspace ).computeIsoLines( builder );
+            isolineMap.put( isovalue, builder.build( ) );
+        }
+        return isolineMap;
+    }
+
+    protected ScalarField level( int zoom )
+    {
+        if ( zoom < 0 || zoom >= pyramid.getLevelCount( ) )
+        {
+            throw new IllegalArgumentException( "Illegal zoom: " + zoom );
+        }
+        return pyramid.getLevel( pyramid.getLevelCount( ) - 1 - zoom );
+    }
+
+    protected int tileCount( int nCells )
+    {
+        return ( nCells + tileSize - 1 ) / tileSize;
+    }
+
+    protected void evict( Predicate<Map.Entry<TileKey, PackedIsolineMap>> stale )
+    {
+        Iterator<Map.Entry<TileKey, PackedIsolineMap>> iterator = cache.entrySet( ).iterator( );
+        while ( iterator.hasNext( ) )
+        {
+            Map.Entry<TileKey, PackedIsolineMap> entry = iterator.next( );
+            if ( stale.test( entry ) )
+            {
+                cacheBytes -= sizeOf( entry.getValue( ) );
+                iterator.remove( );
+            }
+        }
+    }
+
+    /**
+     * @return Approximate size in bytes of the arrays of a tile.
+     */
+    protected static long sizeOf( PackedIsolineMap tile )
+    {
+        long bytes = 0;
+        for ( var entry : tile.entrySet( ) )
+        {
+            PackedIsolines isolines = entry.getValue( );
+            bytes += 64 + 4L * isolines.getOffsets( ).length + isolines.size( ) / 8
+                    + ( isolines.isFloat( ) ? 4L * isolines.getFloatXY( ).length : 8L * isolines.getXY( ).length );
+        }
+        return bytes;
+    }
+
+    protected static final class TileKey
+    {
+        protected final long version;
+        protected final int zoom;
+        protected final int x;
+        protected final int y;
+        protected final double[] isovalues;
+
+        protected TileKey( long version, int zoom, int x, int y, double[] isovalues )
+        {
+            this.version = version;
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+            this.isovalues = isovalues;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            return o instanceof TileKey key && version == key.version && zoom == key.zoom && x == key.x && y == key.y
+                    && Arrays.equals( isovalues, key.isovalues );
+        }
+
+        @Override
+        public int hashCode( )
+        {
+            return ( ( ( Long.hashCode( version ) * 31 + zoom ) * 31 + x ) * 31 + y ) * 31 + Arrays.hashCode( isovalues );
+        }
+    }
+}
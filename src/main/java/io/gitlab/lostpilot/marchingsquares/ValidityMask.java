@@ -0,0 +1,181 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Which vertices of a field hold data, and hence which cells can be contoured, packed one bit per vertex and one bit per cell.
+ * <br><br>
+ * A vertex is invalid if its z value is NaN or equal to the nodata value. A cell is valid iff its 4 vertices are. Contouring with a
+ * mask, see {@link MarchingSquares#computeIsoLines(ScalarField, ValidityMask, double[])}, only visits valid cells, skipping
+ * invalid ones 64 at a time, so isolines end on the borders of masked areas instead of running through garbage values.
+ * <br><br>
+ * A mask is computed once per field, and can be reused for any isovalue as long as the field does not change.
+ */
+public class ValidityMask
+{
+    protected final int rows;
+    protected final int cols;
+
+    // One bit per vertex, then per cell, set iff valid
+    protected final long[][] vertices;
+    protected final long[][] cells;
+
+    protected long validCells;
+
+    protected ValidityMask( int rows, int cols )
+    {
+        this.rows = rows;
+        this.cols = cols;
+        this.vertices = new long[rows][RowClassifier.words( cols )];
+        this.cells = new long[Math.max( rows - 1, 0 )][RowClassifier.words( Math.max( cols - 1, 0 ) )];
+    }
+
+    /**
+     * @return The mask of the vertices of {@code field} that are not NaN.
+     */
+    public static ValidityMask of( ScalarField field )
+    {
+        return of( field, Double.NaN );
+    }
+
+    /**
+     * @return The mask of the vertices of {@code field} that are neither NaN nor equal to {@code nodata}.
+     */
+    public static ValidityMask of( ScalarField field, double nodata )
+    {
+        ValidityMask mask = new ValidityMask( field.getRows( ), field.getCols( ) );
+        int cols = mask.cols;
+        for ( int row = 0; row < mask.rows; row++ )
+        {
+            long[] words = mask.vertices[row];
+            if ( field instanceof DoubleScalarField doubleField )
+            {
+                double[] z = doubleField.getValues( );
+                int offset = row * cols;
+                for ( int col = 0; col < cols; col++ )
+                {
+                    double value = z[offset + col];
+                    if ( value == value && value != nodata )
+                    {
+                        words[col >>> 6] |= 1L << col;
+                    }
+                }
+            }
+            else if ( field instanceof FloatScalarField floatField )
+            {
+                float[] z = floatField.getValues( );
+                int offset = row * cols;
+                for ( int col = 0; col < cols; col++ )
+                {
+                    double value = z[offset + col];
+                    if ( value == value && value != nodata )
+                    {
+                        words[col >>> 6] |= 1L << col;
+                    }
+                }
+            }
+            else
+            {
+                for ( int col = 0; col < cols; col++ )
+                {
+                    double value = field.getZ( row, col );
+                    if ( value == value && value != nodata )
+                    {
+                        words[col >>> 6] |= 1L << col;
+                    }
+                }
+            }
+        }
+        mask.computeCells( );
+        return mask;
+    }
+
+    /**
+     * Sets each cell bit from the vertex bits of the two rows around it.
+     */
+    protected void computeCells( )
+    {
+        validCells = 0;
+        for ( int gridRow = 0; gridRow < cells.length; gridRow++ )
+        {
+            long[] bottom = vertices[gridRow];
+            long[] top = vertices[gridRow + 1];
+            long[] words = cells[gridRow];
+            for ( int w = 0; w < words.length; w++ )
+            {
+                // Both vertices of the left side, and of the right side, shifting the next word in
+                long left = bottom[w] & top[w];
+                long next = w + 1 < bottom.length ? bottom[w + 1] & top[w + 1] : 0L;
+                words[w] = left & ( ( left >>> 1 ) | ( next << 63 ) );
+                validCells += Long.bitCount( words[w] );
+            }
+        }
+    }
+
+    public int getRows( )
+    {
+        return rows;
+    }
+
+    public int getCols( )
+    {
+        return cols;
+    }
+
+    public boolean isValid( int row, int col )
+    {
+        return ( vertices[row][col >>> 6] & ( 1L << col ) ) != 0;
+    }
+
+    public boolean isCellValid( int gridRow, int gridCol )
+    {
+        return ( cells[gridRow][gridCol >>> 6] & ( 1L << gridCol ) ) != 0;
+    }
+
+    public long getValidCellCount( )
+    {
+        return validCells;
+    }
+
+    public boolean fits( ScalarField field )
+    {
+        return field.getRows( ) == rows && field.getCols( ) == cols;
+    }
+
+    /**
+     * @return The first valid cell of grid row {@code gridRow} at or after {@code fromCol}, or the number of cells per row if none.
+     */
+    public int nextValidCell( int gridRow, int fromCol )
+    {
+        return next( cells[gridRow], fromCol, 0L );
+    }
+
+    /**
+     * @return The first invalid cell of grid row {@code gridRow} at or after {@code fromCol}, or the number of cells per row if none.
+     */
+    public int nextInvalidCell( int gridRow, int fromCol )
+    {
+        return next( cells[gridRow], fromCol, -1L );
+    }
+
+    /**
+     * @return The first bit at or after {@code from} that differs from the bits of {@code skip}, capped at the number of cells per row.
+     */
+    protected int next( long[] words, int from, long skip )
+    {
+        int nCells = cols - 1;
+        int w = from >>> 6;
+        if ( from >= nCells )
+        {
+            return nCells;
+        }
+        long word = ( words[w] ^ skip ) & ( -1L << from );
+        while ( word == 0 )
+        {
+            if ( ++w == words.length )
+            {
+                return nCells;
+            }
+            word = words[w] ^ skip;
+        }
+        return Math.min( ( w << 6 ) + Long.numberOfTrailingZeros( word ), nCells );
+    }
+}
@@ -0,0 +1,76 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RowClassifier} comparing whole lanes of a row against the isovalue with the incubating Vector API.
+ * Only loaded by {@link RowClassifier#getInstance()} when the {@code jdk.incubator.vector} module is available.
+ */
+public class VectorRowClassifier extends RowClassifier
+{
+    protected static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    protected static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void classify( double[] z, int offset, int n, double isovalue, long[] bits )
+    {
+        int lanes = DOUBLES.length( );
+        Arrays.fill( bits, 0, words( n ), 0L );
+
+        int i = 0;
+        for ( ; i + lanes <= n; i += lanes )
+        {
+            // Not below rather than greater or equal, so that NaN counts as above
+            long above = DoubleVector.fromArray( DOUBLES, z, offset + i ).compare( VectorOperators.LT, isovalue ).not( ).toLong( );
+            set( bits, i, above, lanes );
+        }
+        for ( ; i < n; i++ )
+        {
+            bits[i >>> 6] |= ( z[offset + i] < isovalue ? 0L : 1L ) << ( i & 63 );
+        }
+    }
+
+    @Override
+    public void classify( float[] z, int offset, int n, double isovalue, long[] bits )
+    {
+        int lanes = FLOATS.length( );
+        Arrays.fill( bits, 0, words( n ), 0L );
+
+        // Floats are compared as floats, which only agrees with widening to double when the isovalue is a float
+        float floatIsovalue = (float) isovalue;
+        if ( floatIsovalue != isovalue )
+        {
+            super.classify( z, offset, n, isovalue, bits );
+            return;
+        }
+
+        int i = 0;
+        for ( ; i + lanes <= n; i += lanes )
+        {
+            long above = FloatVector.fromArray( FLOATS, z, offset + i ).compare( VectorOperators.LT, floatIsovalue ).not( ).toLong( );
+            set( bits, i, above, lanes );
+        }
+        for ( ; i < n; i++ )
+        {
+            bits[i >>> 6] |= ( z[offset + i] < isovalue ? 0L : 1L ) << ( i & 63 );
+        }
+    }
+
+    /**
+     * Ors {@code lanes} bits into {@code bits} from bit index {@code i}, which may straddle two words.
+     */
+    protected static void set( long[] bits, int i, long laneBits, int lanes )
+    {
+        int shift = i & 63;
+        bits[i >>> 6] |= laneBits << shift;
+        if ( shift + lanes > 64 )
+        {
+            bits[( i >>> 6 ) + 1] |= laneBits >>> ( 64 - shift );
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Contours the part of a field inside a viewport, directly on the shared field, for map viewers that pan and zoom over a large grid.
+ * <br><br>
+ * The viewport is either a window of cells, contoured with a {@link WindowMarchingSquares}, or a bounding box in world coordinates.
+ * A bounding box is resolved to the smallest window of cells covering it through the x coordinates of row 0 and the y coordinates
+ * of column 0, which must increase with the column and the row as on regular and rectilinear grids, and the isolines of that window
+ * are then clipped exactly to the box with a {@link ClippingSink}. Either way, the isolines are those of the whole field clipped to
+ * the viewport, and the cost only depends on the size of the viewport. An optional {@link MinMaxIndex} of the field, built once,
+ * lets viewports skip the blocks of cells that an isovalue does not cross.
+ * <br><br>
+ * The grid-sized buffers are kept from one call to the next as long as the viewport keeps its size, so an instance is not thread-safe.
+ */
+public class ViewportMarchingSquares
+{
+    protected final ScalarField field;
+    protected final MinMaxIndex index;
+
+    // Buffers of the last viewport
+    protected Workspace workspace;
+
+    public ViewportMarchingSquares( ScalarField field )
+    {
+        this( field, null );
+    }
+
+    /**
+     * @param index An index of the field, or null.
+     */
+    public ViewportMarchingSquares( ScalarField field, MinMaxIndex index )
+    {
+        if ( index != null && !index.fits( field ) )
+        {
+            throw new IllegalArgumentException( "Index does not fit a " + field.getRows( ) + " x " + field.getCols( ) + " field" );
+        }
+        this.field = field;
+        this.index = index;
+    }
+
+    public ScalarField getField( )
+    {
+        return field;
+    }
+
+    /**
+     * @return The isolines of the cells in grid rows {@code fromRow} (inclusive) to {@code toRow} (exclusive) and grid columns
+     * {@code fromCol} (inclusive) to {@code toCol} (exclusive), keyed by isovalue.
+     */
+    public IsolineMap<Point> computeIsoLines( int fromRow, int toRow, int fromCol, int toCol, double[] isovalues )
+    {
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+        for ( double isovalue : isovalues )
+        {
+            IsolineCollection<Point> isolineCollection = new IsolineCollection<>( );
+            computeIsoLines( fromRow, toRow, fromCol, toCol, new double[] { isovalue }, new MarchingSquares.PointCollector( isolineCollection ) );
+            isolineMap.put( isovalue, isolineCollection );
+        }
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(int, int, int, int, double[])} except that the isolines are passed to {@code sink},
+     * one isovalue after the other.
+     */
+    public void computeIsoLines( int fromRow, int toRow, int fromCol, int toCol, double[] isovalues, IsolineSink sink )
+    {
+        FieldWindow window = new FieldWindow( field, fromRow, toRow + 1, fromCol, toCol + 1 );
+        if ( workspace == null || !workspace.fits( window ) )
+        {
+            workspace = Workspace.of( window );
+        }
+
+        for ( double isovalue : isovalues )
+        {
+            WindowMarchingSquares marchingSquares = new WindowMarchingSquares( window, isovalue, workspace );
+            if ( index != null )
+            {
+                marchingSquares.computeIsoLines( sink, index );
+            }
+            else
+            {
+                marchingSquares.computeIsoLines( sink );
+            }
+        }
+    }
+
+    /**
+     * @return The isolines inside the box [minX, maxX] x [minY, maxY], borders included, keyed by isovalue. Isolines crossing the
+     * border of the box end exactly on it.
+     */
+    public IsolineMap<Point> computeIsoLinesInBox( double minX, double minY, double maxX, double maxY, double[] isovalues )
+    {
+        IsolineMap<Point> isolineMap = new IsolineMap<>( );
+        for ( double isovalue : isovalues )
+        {
+            IsolineCollection<Point> isolineCollection = new IsolineCollection<>( );
+            computeIsoLinesInBox( minX, minY, maxX, maxY, new double[] { isovalue }, new MarchingSquares.PointCollector( isolineCollection ) );
+            isolineMap.put( isovalue, isolineCollection );
+        }
+        return isolineMap;
+    }
+
+    /**
+     * Same as {@link #computeIsoLinesInBox(double, double, double, double, double[])} except that the isolines are passed to
+     * {@code sink}, one isovalue after the other.
+     */
+    public void computeIsoLinesInBox( double minX, double minY, double maxX, double maxY, double[] isovalues, IsolineSink sink )
+    {
+        ClippingSink clippingSink = new ClippingSink( sink, minX, minY, maxX, maxY );
+
+        int cols = field.getCols( );
+        int rows = field.getRows( );
+        if ( maxX < field.getX( 0, 0 ) || minX > field.getX( 0, cols - 1 ) || maxY < field.getY( 0, 0 ) || minY > field.getY( rows - 1, 0 ) )
+        {
+            return;
+        }
+
+        // A box of zero width or height on a vertex still needs a window of one cell
+        int fromCol = floorIndex( minX, cols, true );
+        int toCol = Math.max( ceilIndex( maxX, cols, true ), fromCol + 1 );
+        int fromRow = floorIndex( minY, rows, false );
+        int toRow = Math.max( ceilIndex( maxY, rows, false ), fromRow + 1 );
+        computeIsoLines( fromRow, toRow, fromCol, toCol, isovalues, clippingSink );
+    }
+
+    protected double coordinate( int i, boolean x )
+    {
+        return x ? field.getX( 0, i ) : field.getY( i, 0 );
+    }
+
+    /**
+     * @return The last vertex index, below the last one, whose coordinate is not above {@code value}, or 0 if there is none.
+     */
+    protected int floorIndex( double value, int n, boolean x )
+    {
+        int low = 0;
+        int high = n - 2;
+        while ( low < high )
+        {
+            int mid = ( low + high + 1 ) >>> 1;
+            if ( coordinate( mid, x ) <= value )
+            {
+                low = mid;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The first vertex index, above the first one, whose coordinate is not below {@code value}, or {@code n - 1} if there is none.
+     */
+    protected int ceilIndex( double value, int n, boolean x )
+    {
+        int low = 1;
+        int high = n - 1;
+        while ( low < high )
+        {
+            int mid = ( low + high ) >>> 1;
+            if ( coordinate( mid, x ) >= value )
+            {
+                high = mid;
+            }
+            else
+            {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
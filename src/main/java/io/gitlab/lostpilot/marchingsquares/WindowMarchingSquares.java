@@ -0,0 +1,53 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+/**
+ * Contours a {@link FieldWindow}, interpolating edge points on the underlying field so that they do not depend on the window.
+ * <br><br>
+ * The isolines of a window are those of the whole field clipped to the cells of the window: they end exactly on the edge points of
+ * the border of the window, and isolines leaving and re-entering the window are split into open isolines. All buffers are sized to
+ * the window, so the cost only depends on the size of the window. Isolines are passed to an {@link IsolineSink}.
+ */
+public class WindowMarchingSquares extends MarchingSquares
+{
+    protected final FieldWindow window;
+
+    public WindowMarchingSquares( FieldWindow window, double isovalue, Workspace workspace )
+    {
+        super( window, isovalue, workspace );
+        this.window = window;
+    }
+
+    /**
+     * Same as {@link #computeIsoLines(IsolineSink)} except that only the cells of the blocks of {@code index}, an index of the
+     * underlying field, that straddle the isovalue are visited. Only the part of the index over the window is searched.
+     */
+    protected void computeIsoLines( IsolineSink sink, MinMaxIndex index )
+    {
+        int fromRow = window.fromRow;
+        int fromCol = window.fromCol;
+        int[] blocks = index.findBlocks( isovalue, fromRow, fromRow + nGridRows, fromCol, fromCol + nGridCols );
+
+        for ( int block : blocks )
+        {
+            computeSegments( Math.max( index.fromRow( block ) - fromRow, 0 ), Math.min( index.toRow( block ) - fromRow, nGridRows ),
+                    Math.max( index.fromCol( block ) - fromCol, 0 ), Math.min( index.toCol( block ) - fromCol, nGridCols ) );
+        }
+        linkSegments( index, blocks, fromRow, fromCol ).trace( new SinkVisitor( sink ) );
+    }
+
+    @Override
+    protected void vertex( IsolineSink sink, int edge )
+    {
+        ScalarField field = window.field;
+        int row = window.fromRow + edges.row( edge );
+        int col = window.fromCol + edges.col( edge );
+        if ( edges.isHorizontal( edge ) )
+        {
+            sink.vertex( horizontalEdgeX( field, row, col, isovalue ), horizontalEdgeY( field, row, col, isovalue ) );
+        }
+        else
+        {
+            sink.vertex( verticalEdgeX( field, row, col, isovalue ), verticalEdgeY( field, row, col, isovalue ) );
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Writes isolines in a compact binary format for internal transport, read back by {@link #read(ByteBuffer, IsolineSink)}.
+ * <br><br>
+ * The output is a plain sequence of records, one per isoline, with no header: the isovalue as a little-endian double, followed by
+ * a little-endian WKB geometry, a LineString for an open isoline or a Polygon with a single ring for a closed one. As in any WKB,
+ * rings repeat their first point at the end. Any WKB reader can therefore decode the geometries, 8 bytes past the start of a record.
+ * <br><br>
+ * WKB counts points before listing them, so the vertices of the current isoline are held until its end: memory use grows
+ * with the longest isoline, not with the output.
+ */
+public class WkbWriter extends IsolineWriter
+{
+    protected static final byte LITTLE_ENDIAN = 1;
+    protected static final int LINE_STRING = 2;
+    protected static final int POLYGON = 3;
+
+    protected boolean closed;
+    protected double[] xy = new double[64];
+    protected int nVertices;
+
+    public WkbWriter( WritableByteChannel channel )
+    {
+        this( channel, DEFAULT_BUFFER_SIZE );
+    }
+
+    public WkbWriter( WritableByteChannel channel, int bufferSize )
+    {
+        super( channel, bufferSize );
+    }
+
+    @Override
+    public void beginIsoline( double isovalue, boolean closed )
+    {
+        this.closed = closed;
+        this.nVertices = 0;
+
+        ensure( 8 );
+        buffer.putDouble( isovalue );
+    }
+
+    @Override
+    public void vertex( double x, double y )
+    {
+        int index = 2 * nVertices;
+        if ( index == xy.length )
+        {
+            xy = Arrays.copyOf( xy, 2 * xy.length );
+        }
+        xy[index] = x;
+        xy[index + 1] = y;
+        nVertices++;
+    }
+
+    @Override
+    public void endIsoline( )
+    {
+        boolean ring = closed && nVertices > 0;
+        ensure( 13 );
+        buffer.put( LITTLE_ENDIAN );
+        if ( closed )
+        {
+            buffer.putInt( POLYGON );
+            buffer.putInt( ring ? 1 : 0 );
+            if ( ring )
+            {
+                buffer.putInt( nVertices + 1 );
+            }
+        }
+        else
+        {
+            buffer.putInt( LINE_STRING );
+            buffer.putInt( nVertices );
+        }
+
+        for ( int i = 0; i < 2 * nVertices; i += 2 )
+        {
+            ensure( 16 );
+            buffer.putDouble( xy[i] );
+            buffer.putDouble( xy[i + 1] );
+        }
+        if ( ring )
+        {
+            ensure( 16 );
+            buffer.putDouble( xy[0] );
+            buffer.putDouble( xy[1] );
+        }
+    }
+
+    /**
+     * Replays the records of {@code in}, from its position to its limit, into {@code sink}, dropping the repeated
+     * closing point of rings.
+     */
+    public static void read( ByteBuffer in, IsolineSink sink )
+    {
+        ByteOrder order = in.order( );
+        in.order( ByteOrder.LITTLE_ENDIAN );
+        try
+        {
+            while ( in.hasRemaining( ) )
+            {
+                double isovalue = in.getDouble( );
+                if ( in.get( ) != LITTLE_ENDIAN )
+                {
+                    throw new IllegalArgumentException( "Not a little-endian geometry at " + ( in.position( ) - 1 ) );
+                }
+                int type = in.getInt( );
+                int nPoints;
+                boolean closed;
+                boolean ring = false;
+                switch ( type )
+                {
+                    case LINE_STRING ->
+                    {
+                        closed = false;
+                        nPoints = in.getInt( );
+                    }
+                    case POLYGON ->
+                    {
+                        closed = true;
+                        int nRings = in.getInt( );
+                        if ( nRings > 1 )
+                        {
+                            throw new IllegalArgumentException( "Polygon with " + nRings + " rings" );
+                        }
+                        ring = nRings == 1;
+                        nPoints = ring ? in.getInt( ) - 1 : 0;
+                    }
+                    default -> throw new IllegalArgumentException( "Illegal geometry type: " + type );
+                }
+
+                sink.beginIsoline( isovalue, closed );
+                for ( int i = 0; i < nPoints; i++ )
+                {
+                    sink.vertex( in.getDouble( ), in.getDouble( ) );
+                }
+                if ( ring )
+                {
+                    // Skip the closing point
+                    in.position( in.position( ) + 16 );
+                }
+                sink.endIsoline( );
+            }
+        }
+        finally
+        {
+            in.order( order );
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Arrays;
+
+/**
+ * The grid-sized buffers of {@link MarchingSquares} for a given grid shape, kept across calls and isovalues: the edge point arrays,
+ * in double or single precision, the lookup indices, the row bitsets of the {@link RowClassifier}, the {@link EdgeTracer} and the
+ * {@link PackedIsolines.Builder}s.
+ * <br><br>
+ * A workspace is not thread-safe, but it is cheap to hold one per thread, for instance in a {@link ThreadLocal}. With a workspace,
+ * steady-state contouring only allocates the interpolation points of crossed edges and the isolines holding them, which are the
+ * result, or just the result arrays for {@link MarchingSquares#packedComputeIsoLines(ScalarField, double[], boolean, Workspace)}.
+ */
+public class Workspace
+{
+    protected final int rows;
+    protected final int cols;
+
+    protected final GridEdges edges;
+
+    protected final Point[][] horizontalEdgePoints;
+    protected final Point[][] verticalEdgePoints;
+    protected final int[][] binary;
+
+    // Interleaved single-precision edge points indexed by edge, allocated on first use
+    protected float[] edgeXY;
+
+    // Bottom, top and saddle bitsets of a row of cells, allocated on first use
+    protected long[][] rowBits;
+
+    protected EdgeTracer tracer;
+    protected PackedIsolines.Builder builder;
+    protected PackedIsolines.Builder floatBuilder;
+
+    /**
+     * @param rows Number of vertex rows.
+     * @param cols Number of vertex columns.
+     */
+    public Workspace( int rows, int cols )
+    {
+        if ( rows < 1 || cols < 1 )
+        {
+            throw new IllegalArgumentException( "Field must have at least 1 row and 1 col: " + rows + " x " + cols );
+        }
+
+        this.rows = rows;
+        this.cols = cols;
+
+        int nGridRows = rows - 1;
+        int nGridCols = cols - 1;
+        this.edges = new GridEdges( nGridRows, nGridCols );
+
+        this.horizontalEdgePoints = new Point[nGridRows + 1][nGridCols];
+        this.verticalEdgePoints = new Point[nGridRows][nGridCols + 1];
+        this.binary = new int[nGridRows][nGridCols];
+    }
+
+    /**
+     * @return A workspace for fields of the same shape as {@code field}.
+     */
+    public static Workspace of( ScalarField field )
+    {
+        return new Workspace( field.getRows( ), field.getCols( ) );
+    }
+
+    public boolean fits( ScalarField field )
+    {
+        return field.getRows( ) == rows && field.getCols( ) == cols;
+    }
+
+    protected void check( ScalarField field )
+    {
+        if ( !fits( field ) )
+        {
+            throw new IllegalArgumentException( "Workspace for " + rows + " x " + cols + " cannot hold a " + field.getRows( ) + " x " + field.getCols( ) + " field" );
+        }
+    }
+
+    /**
+     * Drops all references to interpolation points and any segment left in the tracer, without reallocating anything.
+     * <br><br>
+     * Contouring does not need this between calls, since every stage overwrites what the next one reads, but a reset lets
+     * the points of earlier results be collected and recovers a tracer from an interrupted call.
+     */
+    public void reset( )
+    {
+        for ( Point[] row : horizontalEdgePoints )
+        {
+            Arrays.fill( row, null );
+        }
+        for ( Point[] row : verticalEdgePoints )
+        {
+            Arrays.fill( row, null );
+        }
+        if ( tracer != null )
+        {
+            tracer.clear( );
+        }
+    }
+
+    public int getRows( )
+    {
+        return rows;
+    }
+
+    public int getCols( )
+    {
+        return cols;
+    }
+
+    protected EdgeTracer getTracer( )
+    {
+        if ( tracer == null )
+        {
+            tracer = new EdgeTracer( edges.size( ) );
+        }
+        return tracer;
+    }
+
+    /**
+     * @return Three bitsets large enough for a row of vertices: the bottom and top vertices of a row of cells and its saddles.
+     */
+    protected long[][] getRowBits( )
+    {
+        if ( rowBits == null )
+        {
+            rowBits = new long[3][RowClassifier.words( cols )];
+        }
+        return rowBits;
+    }
+
+    protected float[] getEdgeXY( )
+    {
+        if ( edgeXY == null )
+        {
+            edgeXY = new float[2 * edges.size( )];
+        }
+        return edgeXY;
+    }
+
+    /**
+     * @return A builder emptied for {@code isovalue}, keeping the arrays it has grown so far.
+     */
+    protected PackedIsolines.Builder getBuilder( double isovalue, boolean floats )
+    {
+        if ( floats )
+        {
+            floatBuilder = floatBuilder == null ? new PackedIsolines.Builder( isovalue, true ) : floatBuilder.reset( isovalue );
+            return floatBuilder;
+        }
+        builder = builder == null ? new PackedIsolines.Builder( isovalue, false ) : builder.reset( isovalue );
+        return builder;
+    }
+}
@@ -0,0 +1,160 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestAsyncMarchingSquares
+{
+    /**
+     * Counts rows as they are read, sleeping at the start of each one.
+     */
+    static class SlowField implements ScalarField
+    {
+        final DoubleScalarField field;
+        final long sleepMillis;
+        final AtomicLong rowsRead = new AtomicLong( );
+        final CountDownLatch started = new CountDownLatch( 1 );
+
+        SlowField( DoubleScalarField field, long sleepMillis )
+        {
+            this.field = field;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public int getRows( )
+        {
+            return field.getRows( );
+        }
+
+        @Override
+        public int getCols( )
+        {
+            return field.getCols( );
+        }
+
+        @Override
+        public double getX( int row, int col )
+        {
+            return field.getX( row, col );
+        }
+
+        @Override
+        public double getY( int row, int col )
+        {
+            return field.getY( row, col );
+        }
+
+        @Override
+        public double getZ( int row, int col )
+        {
+            if ( col == 0 )
+            {
+                rowsRead.incrementAndGet( );
+                started.countDown( );
+                try
+                {
+                    Thread.sleep( sleepMillis );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread( ).interrupt( );
+                }
+            }
+            return field.getZ( row, col );
+        }
+    }
+
+    static DoubleScalarField wavyField( int rows, int cols )
+    {
+        return DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+    }
+
+    @Test
+    public void testSameAsSynchronous( ) throws Exception
+    {
+        DoubleScalarField field = wavyField( 45, 60 );
+        double[] isovalues = new double[] { 0.8, -0.5, 0.0, 0.25, -0.1, 0.5, 5.0 };
+        IsolineMap<Point> expected = MarchingSquares.computeIsoLines( field, isovalues );
+
+        try ( AsyncMarchingSquares async = AsyncMarchingSquares.withDedicatedPool( 3 ) )
+        {
+            List<CompletableFuture<IsolineMap<Point>>> futures = new ArrayList<>( );
+            for ( int i = 0; i < 5; i++ )
+            {
+                futures.add( async.computeIsoLines( field, isovalues ) );
+            }
+            for ( CompletableFuture<IsolineMap<Point>> future : futures )
+            {
+                TestScalarField.assertSameIsolines( expected, future.get( 10, TimeUnit.SECONDS ) );
+            }
+            Assertions.assertTrue( async.computeIsoLines( field, new double[0] ).get( ).isEmpty( ) );
+
+            Map<Double, IsolineCollection<Point>> streamed = new HashMap<>( );
+            async.computeIsoLines( field, isovalues, Duration.ofSeconds( 10 ),
+                    ( isovalue, isoline ) -> streamed.computeIfAbsent( isovalue, ( key ) -> new IsolineCollection<>( ) ).add( isoline ) ).get( );
+            for ( double isovalue : isovalues )
+            {
+                IsolineCollection<Point> isolines = expected.get( isovalue );
+                Assertions.assertEquals( isolines.size( ), streamed.containsKey( isovalue ) ? streamed.get( isovalue ).size( ) : 0 );
+                if ( !isolines.isEmpty( ) )
+                {
+                    TestScalarField.assertSameIsolines( isolines, streamed.get( isovalue ) );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCancel( ) throws Exception
+    {
+        SlowField field = new SlowField( wavyField( 200, 20 ), 2 );
+
+        try ( AsyncMarchingSquares async = AsyncMarchingSquares.withDedicatedPool( 2 ) )
+        {
+            CompletableFuture<IsolineMap<Point>> future = async.computeIsoLines( field, new double[] { 0.0, 0.5 } );
+            Assertions.assertTrue( field.started.await( 10, TimeUnit.SECONDS ) );
+            Assertions.assertTrue( future.cancel( true ) );
+            Assertions.assertThrows( CancellationException.class, future::join );
+
+            // Tasks stop at the next row
+            Thread.sleep( 50 );
+            long rowsRead = field.rowsRead.get( );
+            Thread.sleep( 100 );
+            Assertions.assertEquals( rowsRead, field.rowsRead.get( ) );
+            Assertions.assertTrue( rowsRead < 2 * 200 );
+        }
+    }
+
+    @Test
+    public void testDeadline( ) throws Exception
+    {
+        SlowField field = new SlowField( wavyField( 300, 20 ), 2 );
+
+        try ( AsyncMarchingSquares async = AsyncMarchingSquares.withDedicatedPool( 1 ) )
+        {
+            CompletableFuture<IsolineMap<Point>> future = async.computeIsoLines( field, new double[] { 0.0, 0.5, 0.7 }, Duration.ofMillis( 50 ) );
+            ExecutionException e = Assertions.assertThrows( ExecutionException.class, ( ) -> future.get( 10, TimeUnit.SECONDS ) );
+            Assertions.assertInstanceOf( TimeoutException.class, e.getCause( ) );
+
+            // Later jobs get the executor back
+            DoubleScalarField fast = wavyField( 30, 30 );
+            TestScalarField.assertSameIsolines( MarchingSquares.computeIsoLines( fast, new double[] { 0.1 } ),
+                    async.computeIsoLines( fast, new double[] { 0.1 } ).get( 10, TimeUnit.SECONDS ) );
+            Assertions.assertTrue( field.rowsRead.get( ) < 300 );
+        }
+    }
+}
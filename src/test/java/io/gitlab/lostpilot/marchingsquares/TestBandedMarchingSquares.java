@@ -0,0 +1,45 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class TestBandedMarchingSquares
+{
+    @Test
+    public void testSameAsSequentialForAnyNumberOfBands( )
+    {
+        int rows = 37;
+        int cols = 29;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0, 0, 1, 1 );
+
+        ForkJoinPool pool = new ForkJoinPool( 4 );
+        try
+        {
+            for ( double isovalue : new double[] { -0.7, -0.2, 0.0, 0.3, 0.9 } )
+            {
+                IsolineCollection<Point> expected = new MarchingSquares( field, isovalue ).computeIsoLines( );
+                for ( int nBands = 1; nBands <= rows; nBands++ )
+                {
+                    IsolineCollection<Point> actual = new BandedMarchingSquares( field, isovalue, pool, nBands ).computeIsoLines( );
+                    TestScalarField.assertSameIsolines( expected, actual );
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdown( );
+        }
+    }
+
+    @Test
+    public void testBandedComputeIsoLines( )
+    {
+        int rows = 300;
+        int cols = 120;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0, 0, 1, 1 );
+        double[] isovalues = new double[] { -0.4, 0.1 };
+
+        TestScalarField.assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), MarchingSquares.bandedComputeIsoLines( field, isovalues ) );
+    }
+}
@@ -0,0 +1,116 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestContourMetrics
+{
+    @AfterEach
+    public void tearDown( )
+    {
+        MarchingSquares.setMetricsListener( null );
+    }
+
+    @Test
+    public void testCounters( )
+    {
+        int rows = 28;
+        int cols = 35;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { -0.5, 0.0, 0.25 };
+
+        IsolineMap<Point> expected = MarchingSquares.computeIsoLines( field, isovalues );
+
+        List<ContourMetrics> reported = new ArrayList<>( );
+        MarchingSquares.setMetricsListener( reported::add );
+        IsolineMap<Point> actual = MarchingSquares.computeIsoLines( field, isovalues );
+        TestScalarField.assertSameIsolines( expected, actual );
+        Assertions.assertEquals( isovalues.length, reported.size( ) );
+
+        for ( int i = 0; i < isovalues.length; i++ )
+        {
+            ContourMetrics metrics = reported.get( i );
+            IsolineCollection<Point> isolines = actual.get( isovalues[i] );
+            Assertions.assertEquals( isovalues[i], metrics.getIsovalue( ) );
+            Assertions.assertEquals( ( rows - 1 ) * ( cols - 1 ), metrics.getCells( ) );
+
+            long segments = 0;
+            long closed = 0;
+            for ( Isoline<Point> isoline : isolines.getIsolines( ) )
+            {
+                segments += isoline.size( ) - 1;
+                closed += isoline.get( 0 ) == isoline.get( isoline.size( ) - 1 ) ? 1 : 0;
+            }
+            Assertions.assertEquals( isolines.size( ), metrics.getIsolines( ) );
+            Assertions.assertEquals( closed, metrics.getClosedIsolines( ) );
+            Assertions.assertEquals( segments, metrics.getSegments( ) );
+            Assertions.assertEquals( segments, metrics.getCrossingCells( ) + metrics.getSaddleCells( ) );
+            Assertions.assertTrue( metrics.getInterpolationNanos( ) >= 0 && metrics.getSegmentNanos( ) >= 0 && metrics.getTracingNanos( ) >= 0 );
+        }
+    }
+
+    @Test
+    public void testSaddlesAndOtherEntryPoints( )
+    {
+        // Checkerboard, every cell is a saddle
+        int rows = 6;
+        int cols = 9;
+        double[] z = new double[rows * cols];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            z[i] = ( i / cols + i % cols ) % 2;
+        }
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { 0.5 };
+
+        List<ContourMetrics> reported = new ArrayList<>( );
+        MarchingSquares.setMetricsListener( reported::add );
+        MarchingSquares.packedComputeIsoLines( field, isovalues, true );
+        MarchingSquares.computeIsoLines( field, isovalues, new WkbWriter( Channels.newChannel( new ByteArrayOutputStream( ) ) ) );
+
+        Assertions.assertEquals( 2, reported.size( ) );
+        for ( ContourMetrics metrics : reported )
+        {
+            Assertions.assertEquals( 40, metrics.getSaddleCells( ) );
+            Assertions.assertEquals( 40, metrics.getCrossingCells( ) );
+            Assertions.assertEquals( 80, metrics.getSegments( ) );
+        }
+        Assertions.assertEquals( 0, reported.get( 1 ).getInterpolationNanos( ) );
+
+        MarchingSquares.setMetricsListener( null );
+        MarchingSquares.computeIsoLines( field, isovalues );
+        Assertions.assertEquals( 2, reported.size( ) );
+    }
+
+    @Test
+    public void testMaskedCells( )
+    {
+        int rows = 30;
+        int cols = 24;
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        for ( int row = 0; row < rows; row++ )
+        {
+            for ( int col = 0; col < cols / 2; col++ )
+            {
+                z[row * cols + col] = Double.NaN;
+            }
+        }
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        ValidityMask mask = ValidityMask.of( field );
+
+        List<ContourMetrics> reported = new ArrayList<>( );
+        MarchingSquares.setMetricsListener( reported::add );
+        MarchingSquares.computeIsoLines( field, mask, new double[] { 0.0 } );
+
+        // Masked-out cells are not visited
+        Assertions.assertEquals( 1, reported.size( ) );
+        Assertions.assertEquals( ( rows - 1 ) * ( cols - cols / 2 - 1 ), mask.getValidCellCount( ) );
+        Assertions.assertEquals( mask.getValidCellCount( ), reported.get( 0 ).getCells( ) );
+    }
+}
@@ -0,0 +1,131 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Iterator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestContourStatistics
+{
+    @Test
+    public void testSameAsIsolines( )
+    {
+        int rows = 64;
+        int cols = 81;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 1000.0, -2000.0, 0.5, 0.25 );
+        double[] isovalues = new double[] { 0.6, -0.5, 0.0, 0.25, 5.0 };
+
+        ContourStatistics statistics = MarchingSquares.computeStatistics( field, isovalues );
+        IsolineMap<Point> isolineMap = MarchingSquares.computeIsoLines( field, isovalues );
+        Assertions.assertEquals( isovalues.length, statistics.size( ) );
+
+        Iterator<ContourStatistics.Summary> summaries = statistics.getSummaries( ).iterator( );
+        for ( double isovalue : isovalues )
+        {
+            ContourStatistics.Summary summary = summaries.next( );
+            Assertions.assertEquals( isovalue, summary.getIsovalue( ) );
+
+            long open = 0;
+            long closed = 0;
+            long vertices = 0;
+            double length = 0.0;
+            double area = 0.0;
+            double minX = Double.POSITIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for ( Isoline<Point> isoline : isolineMap.get( isovalue ).getIsolines( ) )
+            {
+                boolean isClosed = isoline.get( 0 ) == isoline.get( isoline.size( ) - 1 );
+                if ( isClosed )
+                {
+                    closed++;
+                }
+                else
+                {
+                    open++;
+                }
+                vertices += isoline.size( ) - ( isClosed ? 1 : 0 );
+
+                double doubleArea = 0.0;
+                Point origin = isoline.get( 0 );
+                for ( int i = 0; i < isoline.size( ); i++ )
+                {
+                    Point point = isoline.get( i );
+                    minX = Math.min( minX, point.getX( ) );
+                    maxY = Math.max( maxY, point.getY( ) );
+                    if ( i > 0 )
+                    {
+                        Point previous = isoline.get( i - 1 );
+                        length += Math.hypot( point.getX( ) - previous.getX( ), point.getY( ) - previous.getY( ) );
+                        doubleArea += ( previous.getX( ) - origin.getX( ) ) * ( point.getY( ) - origin.getY( ) )
+                                - ( point.getX( ) - origin.getX( ) ) * ( previous.getY( ) - origin.getY( ) );
+                    }
+                }
+                if ( isClosed )
+                {
+                    area += Math.abs( doubleArea ) / 2;
+                }
+            }
+
+            Assertions.assertEquals( open, summary.getOpenIsolineCount( ) );
+            Assertions.assertEquals( closed, summary.getClosedIsolineCount( ) );
+            Assertions.assertEquals( vertices, summary.getVertexCount( ) );
+            Assertions.assertEquals( length, summary.getLength( ), 1e-9 * Math.max( length, 1.0 ) );
+            Assertions.assertEquals( area, summary.getArea( ), 1e-9 * Math.max( area, 1.0 ) );
+            if ( vertices > 0 )
+            {
+                Assertions.assertEquals( minX, summary.getMinX( ) );
+                Assertions.assertEquals( maxY, summary.getMaxY( ) );
+            }
+            else
+            {
+                Assertions.assertTrue( summary.getMinX( ) > summary.getMaxX( ) );
+            }
+        }
+    }
+
+    @Test
+    public void testSquare( )
+    {
+        ContourStatistics statistics = new ContourStatistics( );
+        statistics.beginIsoline( 1.0, true );
+        statistics.vertex( 1.0, 1.0 );
+        statistics.vertex( 3.0, 1.0 );
+        statistics.vertex( 3.0, 3.0 );
+        statistics.vertex( 1.0, 3.0 );
+        statistics.endIsoline( );
+        statistics.beginIsoline( 1.0, false );
+        statistics.vertex( 0.0, 0.0 );
+        statistics.vertex( 3.0, 4.0 );
+        statistics.endIsoline( );
+
+        ContourStatistics.Summary summary = statistics.getSummary( 1.0 );
+        Assertions.assertEquals( 1, summary.getClosedIsolineCount( ) );
+        Assertions.assertEquals( 1, summary.getOpenIsolineCount( ) );
+        Assertions.assertEquals( 6, summary.getVertexCount( ) );
+        Assertions.assertEquals( 13.0, summary.getLength( ) );
+        Assertions.assertEquals( 4.0, summary.getArea( ) );
+        Assertions.assertEquals( 4.0, summary.getSignedArea( ) );
+        Assertions.assertEquals( 0.0, summary.getMinX( ) );
+        Assertions.assertEquals( 4.0, summary.getMaxY( ) );
+    }
+
+    @Test
+    public void testOrientation( )
+    {
+        // A single bump: the closed isoline around the peak encloses values above the isovalue, so it is clockwise
+        int n = 21;
+        double[] z = new double[n * n];
+        for ( int row = 0; row < n; row++ )
+        {
+            for ( int col = 0; col < n; col++ )
+            {
+                z[row * n + col] = -Math.hypot( row - 10, col - 10 );
+            }
+        }
+        ContourStatistics.Summary summary = MarchingSquares.computeStatistics( DoubleScalarField.regular( z, n, n, 0.0, 0.0, 1.0, 1.0 ),
+                new double[] { -5.0 } ).getSummary( -5.0 );
+        Assertions.assertEquals( 1, summary.getClosedIsolineCount( ) );
+        Assertions.assertEquals( -summary.getArea( ), summary.getSignedArea( ) );
+        Assertions.assertEquals( Math.PI * 25, summary.getArea( ), 2.0 );
+    }
+}
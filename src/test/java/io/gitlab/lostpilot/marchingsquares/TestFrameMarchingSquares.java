@@ -0,0 +1,88 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestFrameMarchingSquares
+{
+    static List<double[]> frames( int n, int rows, int cols )
+    {
+        List<double[]> frames = new ArrayList<>( );
+        for ( int frame = 0; frame < n; frame++ )
+        {
+            double[] z = new double[rows * cols];
+            for ( int row = 0; row < rows; row++ )
+            {
+                for ( int col = 0; col < cols; col++ )
+                {
+                    z[row * cols + col] = Math.sin( 0.3 * col + 0.4 * frame ) * Math.cos( 0.25 * row - 0.1 * frame );
+                }
+            }
+            frames.add( z );
+        }
+        return frames;
+    }
+
+    @Test
+    public void testSameAsEachFrame( )
+    {
+        int rows = 41;
+        int cols = 36;
+        double[] xAxis = ArrayScalarField.axis( 2.0, 0.5, cols );
+        double[] yAxis = ArrayScalarField.axis( -1.0, 0.25, rows );
+        double[] isovalues = new double[] { 0.5, -0.25, 0.0 };
+        List<double[]> frames = frames( 7, rows, cols );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            for ( FrameMarchingSquares frameMarchingSquares : new FrameMarchingSquares[] {
+                    new FrameMarchingSquares( xAxis, yAxis, isovalues ), new FrameMarchingSquares( xAxis, yAxis, isovalues, executor ) } )
+            {
+                List<Integer> seen = new ArrayList<>( );
+                frameMarchingSquares.computeIsoLines( frames.iterator( ), ( frame, isolines ) -> {
+                    seen.add( frame );
+                    DoubleScalarField field = new DoubleScalarField( frames.get( frame ), rows, cols, xAxis, yAxis );
+                    TestScalarField.assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), isolines );
+                } );
+                Assertions.assertEquals( Arrays.asList( 0, 1, 2, 3, 4, 5, 6 ), seen );
+
+                DoubleScalarField field = new DoubleScalarField( frames.get( 3 ), rows, cols, xAxis, yAxis );
+                TestScalarField.assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), frameMarchingSquares.computeIsoLines( frames.get( 3 ) ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown( );
+        }
+    }
+
+    @Test
+    public void testEdgeCases( )
+    {
+        int rows = 5;
+        int cols = 4;
+        double[] xAxis = ArrayScalarField.axis( 0.0, 1.0, cols );
+        double[] yAxis = ArrayScalarField.axis( 0.0, 1.0, rows );
+
+        List<Integer> seen = new ArrayList<>( );
+        new FrameMarchingSquares( xAxis, yAxis, new double[0] ).computeIsoLines( frames( 3, rows, cols ).iterator( ), ( frame, isolines ) -> {
+            Assertions.assertTrue( isolines.isEmpty( ) );
+            seen.add( frame );
+        } );
+        Assertions.assertEquals( 3, seen.size( ) );
+
+        FrameMarchingSquares frameMarchingSquares = new FrameMarchingSquares( xAxis, yAxis, new double[] { 0.0 } );
+        frameMarchingSquares.computeIsoLines( new ArrayList<double[]>( ).iterator( ), ( frame, isolines ) -> Assertions.fail( ) );
+
+        Iterator<double[]> badFrames = Arrays.asList( new double[rows * cols], new double[rows * cols + 1] ).iterator( );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> frameMarchingSquares.computeIsoLines( badFrames, ( frame, isolines ) -> { } ) );
+    }
+}
@@ -0,0 +1,157 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectMap;
+
+public class TestGridGeometry
+{
+    static void assertCloseIsolines( IsolineMap<Point> expected, IsolineMap<Point> actual, double tolerance )
+    {
+        Assertions.assertEquals( expected.size( ), actual.size( ) );
+        for ( Double2ObjectMap.Entry<IsolineCollection<Point>> entry : expected.entrySet( ) )
+        {
+            IsolineCollection<Point> expectedIsolines = entry.getValue( );
+            IsolineCollection<Point> actualIsolines = actual.get( entry.getDoubleKey( ) );
+            Assertions.assertEquals( expectedIsolines.size( ), actualIsolines.size( ) );
+            for ( int i = 0; i < expectedIsolines.size( ); i++ )
+            {
+                List<Point> expectedIsoline = expectedIsolines.get( i );
+                List<Point> actualIsoline = actualIsolines.get( i );
+                Assertions.assertEquals( expectedIsoline.size( ), actualIsoline.size( ) );
+                for ( int j = 0; j < expectedIsoline.size( ); j++ )
+                {
+                    Assertions.assertEquals( expectedIsoline.get( j ).getX( ), actualIsoline.get( j ).getX( ), tolerance );
+                    Assertions.assertEquals( expectedIsoline.get( j ).getY( ), actualIsoline.get( j ).getY( ), tolerance );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRegularMatchesAxes( )
+    {
+        int rows = 23;
+        int cols = 41;
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        double[] isovalues = new double[] { -0.5, 0.0, 0.25, 0.8 };
+
+        DoubleScalarField field = new DoubleScalarField( z, new GridGeometry.Regular( rows, cols, 10.0, -5.0, 0.5, 0.25 ) );
+        Assertions.assertNull( field.getXAxis( ) );
+        Assertions.assertEquals( 10.5, field.getX( 3, 1 ) );
+        Assertions.assertEquals( -4.25, field.getY( 3, 1 ) );
+
+        IsolineMap<Point> isolines = MarchingSquares.computeIsoLines( field, isovalues );
+        Assertions.assertFalse( isolines.get( 0.25 ).isEmpty( ) );
+        assertCloseIsolines( MarchingSquares.computeIsoLines( DoubleScalarField.regular( z, rows, cols, 10.0, -5.0, 0.5, 0.25 ), isovalues ),
+                isolines, 1e-12 );
+
+        // All engines interpolate in index space the same way
+        TestScalarField.assertSameIsolines( isolines, MarchingSquares.parallelComputeIsoLines( field, isovalues ) );
+        TestScalarField.assertSameIsolines( isolines, MarchingSquares.bandedComputeIsoLines( field, isovalues ) );
+        TestPackedIsolines.assertSameIsolines( isolines, MarchingSquares.packedComputeIsoLines( field, isovalues, false ), false );
+    }
+
+    @Test
+    public void testRectilinearMatchesAxes( )
+    {
+        int rows = 19;
+        int cols = 27;
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        double[] isovalues = new double[] { -0.3, 0.1, 0.6 };
+
+        double[] xAxis = new double[cols];
+        double[] yAxis = new double[rows];
+        for ( int col = 0; col < cols; col++ )
+        {
+            xAxis[col] = col * col * 0.1;
+        }
+        for ( int row = 0; row < rows; row++ )
+        {
+            yAxis[row] = Math.sqrt( row );
+        }
+
+        DoubleScalarField field = new DoubleScalarField( z, new GridGeometry.Rectilinear( xAxis, yAxis ) );
+        assertCloseIsolines( MarchingSquares.computeIsoLines( new DoubleScalarField( z, rows, cols, xAxis, yAxis ), isovalues ),
+                MarchingSquares.computeIsoLines( field, isovalues ), 1e-12 );
+    }
+
+    @Test
+    public void testCurvilinear( )
+    {
+        int rows = 21;
+        int cols = 16;
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        double[] isovalues = new double[] { -0.4, 0.2, 0.5 };
+
+        // On a rectilinear grid, the same isolines as the points
+        double[] xAxis = new double[cols];
+        double[] yAxis = new double[rows];
+        for ( int col = 0; col < cols; col++ )
+        {
+            xAxis[col] = Math.exp( 0.1 * col );
+        }
+        for ( int row = 0; row < rows; row++ )
+        {
+            yAxis[row] = -row * row;
+        }
+        Point[][] points = TestScalarField.toPoints( z, rows, cols, xAxis, yAxis );
+        DoubleScalarField field = new DoubleScalarField( z, GridGeometry.Curvilinear.of( points ) );
+        Assertions.assertEquals( points[5][7].getX( ), field.getX( 5, 7 ) );
+        Assertions.assertEquals( points[5][7].getY( ), field.getY( 5, 7 ) );
+        assertCloseIsolines( MarchingSquares.computeIsoLines( points, isovalues ), MarchingSquares.computeIsoLines( field, isovalues ), 1e-12 );
+
+        // On a sheared grid, the isolines of the unit grid sheared the same way
+        for ( int row = 0; row < rows; row++ )
+        {
+            for ( int col = 0; col < cols; col++ )
+            {
+                points[row][col] = new Point( col + 0.3 * row, 2.0 * row, z[row * cols + col] );
+            }
+        }
+        IsolineMap<Point> unit = MarchingSquares.computeIsoLines( new DoubleScalarField( z, new GridGeometry.Regular( rows, cols, 0.0, 0.0, 1.0, 1.0 ) ), isovalues );
+        IsolineMap<Point> sheared = new IsolineMap<>( );
+        for ( double isovalue : isovalues )
+        {
+            IsolineCollection<Point> isolines = new IsolineCollection<>( );
+            for ( Isoline<Point> isoline : unit.get( isovalue ).getIsolines( ) )
+            {
+                Isoline<Point> shearedIsoline = new Isoline<>( );
+                for ( Point point : isoline )
+                {
+                    shearedIsoline.add( new Point( point.getX( ) + 0.3 * point.getY( ), 2.0 * point.getY( ), isovalue ) );
+                }
+                isolines.add( shearedIsoline );
+            }
+            sheared.put( isovalue, isolines );
+        }
+        assertCloseIsolines( sheared, MarchingSquares.computeIsoLines( new DoubleScalarField( z, GridGeometry.Curvilinear.of( points ) ), isovalues ), 1e-12 );
+    }
+
+    @Test
+    public void testIndexSpaceInterpolation( )
+    {
+        // One crossed horizontal edge per row, at a quarter of the way from column 1 to column 2
+        double[] z = new double[] { 0.0, 0.0, 4.0, 4.0, 0.0, 0.0, 4.0, 4.0 };
+        DoubleScalarField field = new DoubleScalarField( z, new GridGeometry.Regular( 2, 4, 100.0, 0.0, 2.0, 3.0 ) );
+
+        IsolineCollection<Point> isolines = MarchingSquares.computeIsoLines( field, new double[] { 1.0 } ).get( 1.0 );
+        Assertions.assertEquals( 1, isolines.size( ) );
+        for ( Point point : isolines.get( 0 ) )
+        {
+            Assertions.assertEquals( 102.5, point.getX( ) );
+        }
+    }
+
+    @Test
+    public void testIllegalGeometry( )
+    {
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> new GridGeometry.Regular( 1, 4, 0.0, 0.0, 1.0, 1.0 ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> new GridGeometry.Curvilinear( new double[6], new double[5], 2, 3 ) );
+        Assertions.assertThrows( IllegalArgumentException.class,
+                ( ) -> new DoubleScalarField( new double[6], new GridGeometry.Regular( 2, 4, 0.0, 0.0, 1.0, 1.0 ) ) );
+    }
+}
@@ -0,0 +1,73 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestIncrementalMarchingSquares
+{
+    static void assertSameIsolines( DoubleScalarField field, IncrementalMarchingSquares marchingSquares )
+    {
+        double isovalue = marchingSquares.getIsovalue( );
+        IsolineMap<Point> expected = MarchingSquares.computeIsoLines( field, new double[] { isovalue } );
+        Map<Double, List<Isoline<Point>>> actual = new HashMap<>( );
+        actual.put( isovalue, marchingSquares.getIsoLines( ).getIsolines( ) );
+        TestStreamingMarchingSquares.assertSameIsolines( expected, actual );
+    }
+
+    @Test
+    public void testUpdates( )
+    {
+        int rows = 41;
+        int cols = 36;
+        Random random = new Random( 11 );
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 1.0, -2.0, 0.5, 0.25 );
+
+        IncrementalMarchingSquares[] marchingSquares = new IncrementalMarchingSquares[] {
+                new IncrementalMarchingSquares( field, -0.4 ),
+                new IncrementalMarchingSquares( field, 0.1 ),
+                new IncrementalMarchingSquares( field, 0.7 )
+        };
+        for ( IncrementalMarchingSquares engine : marchingSquares )
+        {
+            assertSameIsolines( field, engine );
+        }
+
+        for ( int update = 0; update < 60; update++ )
+        {
+            // Patches of bumps, pits and noise, including along the border
+            int fromRow = random.nextInt( rows );
+            int toRow = Math.min( rows, fromRow + 1 + random.nextInt( 8 ) );
+            int fromCol = random.nextInt( cols );
+            int toCol = Math.min( cols, fromCol + 1 + random.nextInt( 8 ) );
+            double offset = random.nextGaussian( );
+            for ( int row = fromRow; row < toRow; row++ )
+            {
+                for ( int col = fromCol; col < toCol; col++ )
+                {
+                    z[row * cols + col] = offset + 0.5 * random.nextDouble( );
+                }
+            }
+
+            for ( IncrementalMarchingSquares engine : marchingSquares )
+            {
+                engine.update( fromRow, toRow, fromCol, toCol );
+                assertSameIsolines( field, engine );
+            }
+        }
+    }
+
+    @Test
+    public void testIllegalRectangle( )
+    {
+        DoubleScalarField field = DoubleScalarField.regular( new double[9], 3, 3, 0.0, 0.0, 1.0, 1.0 );
+        IncrementalMarchingSquares marchingSquares = new IncrementalMarchingSquares( field, 0.5 );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> marchingSquares.update( 0, 4, 0, 3 ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> marchingSquares.update( 1, 1, 0, 3 ) );
+    }
+}
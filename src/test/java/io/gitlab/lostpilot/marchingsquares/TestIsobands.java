@@ -0,0 +1,138 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestIsobands
+{
+    /**
+     * Even-odd ray casting.
+     */
+    static boolean contains( List<Point> ring, double x, double y )
+    {
+        boolean inside = false;
+        for ( int i = 0; i + 1 < ring.size( ); i++ )
+        {
+            Point a = ring.get( i );
+            Point b = ring.get( i + 1 );
+            if ( ( a.getY( ) > y ) != ( b.getY( ) > y ) && x < a.getX( ) + ( y - a.getY( ) ) * ( b.getX( ) - a.getX( ) ) / ( b.getY( ) - a.getY( ) ) )
+            {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    static int countContaining( IsobandCollection isoband, double x, double y )
+    {
+        int count = 0;
+        for ( IsobandPolygon polygon : isoband.getPolygons( ) )
+        {
+            if ( contains( polygon.getShell( ), x, y ) && polygon.getHoles( ).stream( ).noneMatch( hole -> contains( hole, x, y ) ) )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Every interior vertex is covered by exactly one polygon if its value is within the band and by none otherwise,
+     * and every hole lies within its shell.
+     */
+    static void assertCovers( DoubleScalarField field, double lower, double upper )
+    {
+        IsobandCollection isoband = MarchingSquares.computeIsoBand( field, lower, upper );
+        Assertions.assertEquals( lower, isoband.getLower( ) );
+        Assertions.assertEquals( upper, isoband.getUpper( ) );
+
+        for ( IsobandPolygon polygon : isoband.getPolygons( ) )
+        {
+            Assertions.assertSame( polygon.getShell( ).get( 0 ), polygon.getShell( ).get( polygon.getShell( ).size( ) - 1 ) );
+            for ( Isoline<Point> hole : polygon.getHoles( ) )
+            {
+                Assertions.assertSame( hole.get( 0 ), hole.get( hole.size( ) - 1 ) );
+                Point point = hole.get( 0 );
+                Assertions.assertTrue( contains( polygon.getShell( ), point.getX( ), point.getY( ) ) );
+            }
+        }
+
+        for ( int row = 1; row < field.getRows( ) - 1; row++ )
+        {
+            for ( int col = 1; col < field.getCols( ) - 1; col++ )
+            {
+                double z = field.getZ( row, col );
+                if ( z == lower || z == upper )
+                {
+                    continue;
+                }
+                boolean within = lower <= z && z < upper;
+                Assertions.assertEquals( within ? 1 : 0, countContaining( isoband, field.getX( row, col ), field.getY( row, col ) ),
+                        "Vertex (" + row + ", " + col + ")" );
+            }
+        }
+    }
+
+    @Test
+    public void testWavyField( )
+    {
+        int rows = 45;
+        int cols = 52;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 1.0, 2.0, 0.5, 0.25 );
+        double[] thresholds = new double[] { -1.5, -0.6, -0.1, 0.3, 0.9, 1.5 };
+        for ( int i = 0; i + 1 < thresholds.length; i++ )
+        {
+            assertCovers( field, thresholds[i], thresholds[i + 1] );
+        }
+        Assertions.assertEquals( thresholds.length - 1, MarchingSquares.computeIsoBands( field, thresholds ).size( ) );
+    }
+
+    @Test
+    public void testSaddles( )
+    {
+        // Random values have plenty of saddles for both isovalues, and many nested holes
+        Random random = new Random( 9 );
+        for ( int trial = 0; trial < 20; trial++ )
+        {
+            int rows = 20 + random.nextInt( 20 );
+            int cols = 20 + random.nextInt( 20 );
+            double[] z = new double[rows * cols];
+            for ( int i = 0; i < z.length; i++ )
+            {
+                z[i] = random.nextDouble( );
+            }
+            assertCovers( DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 ), 0.35, 0.65 );
+        }
+    }
+
+    @Test
+    public void testAnnulus( )
+    {
+        // A cone: the band is a ring around the peak
+        int rows = 21;
+        int cols = 21;
+        double[] z = new double[rows * cols];
+        for ( int row = 0; row < rows; row++ )
+        {
+            for ( int col = 0; col < cols; col++ )
+            {
+                z[row * cols + col] = 10.0 - Math.hypot( row - 10.0, col - 10.0 );
+            }
+        }
+        IsobandCollection isoband = MarchingSquares.computeIsoBand( DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 ), 4.5, 7.5 );
+        Assertions.assertEquals( 1, isoband.size( ) );
+        Assertions.assertEquals( 1, isoband.get( 0 ).getHoles( ).size( ) );
+
+        // The whole grid within the band is its border
+        isoband = MarchingSquares.computeIsoBand( DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 ), -10.0, 20.0 );
+        Assertions.assertEquals( 1, isoband.size( ) );
+        Assertions.assertEquals( 2 * ( rows - 1 ) + 2 * ( cols - 1 ) + 1, isoband.get( 0 ).getShell( ).size( ) );
+        Assertions.assertTrue( isoband.get( 0 ).getHoles( ).isEmpty( ) );
+
+        Assertions.assertThrows( IllegalArgumentException.class,
+                ( ) -> MarchingSquares.computeIsoBand( DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 ), 1.0, 1.0 ) );
+    }
+}
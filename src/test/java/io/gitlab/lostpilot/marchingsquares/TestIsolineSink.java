@@ -0,0 +1,99 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestIsolineSink
+{
+    /**
+     * Packs what it receives, checking that callbacks come in the documented order.
+     */
+    static class PackingSink implements IsolineSink
+    {
+        final PackedIsolineMap isolineMap = new PackedIsolineMap( );
+        PackedIsolines.Builder builder;
+        boolean inIsoline;
+
+        @Override
+        public void beginIsoline( double isovalue, boolean closed )
+        {
+            Assertions.assertFalse( inIsoline );
+            if ( builder == null || builder.isovalue != isovalue )
+            {
+                flush( );
+                builder = new PackedIsolines.Builder( isovalue, false );
+            }
+            builder.beginIsoline( closed );
+            inIsoline = true;
+        }
+
+        @Override
+        public void vertex( double x, double y )
+        {
+            Assertions.assertTrue( inIsoline );
+            builder.addVertex( x, y );
+        }
+
+        @Override
+        public void endIsoline( )
+        {
+            Assertions.assertTrue( inIsoline );
+            builder.endIsoline( );
+            inIsoline = false;
+        }
+
+        void flush( )
+        {
+            if ( builder != null )
+            {
+                isolineMap.put( builder.isovalue, builder.build( ) );
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsIsolines( )
+    {
+        int rows = 33;
+        int cols = 52;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, -4.0, 2.0, 0.25, 0.5 );
+        double[] isovalues = new double[] { 0.0, 0.8, -0.5, 0.25 };
+
+        PackingSink sink = new PackingSink( );
+        MarchingSquares.computeIsoLines( field, isovalues, sink );
+        sink.flush( );
+
+        TestPackedIsolines.assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), sink.isolineMap, false );
+    }
+
+    @Test
+    public void testSaddlesAndBorders( )
+    {
+        // Checkerboard with isolines running into every border
+        int rows = 7;
+        int cols = 6;
+        double[] z = new double[rows * cols];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            z[i] = ( ( i / cols + i % cols ) % 2 ) + 0.01 * i;
+        }
+        FloatScalarField field = FloatScalarField.regular( toFloats( z ), rows, cols, 0.0, 0.0, 1.0, 2.0 );
+        double[] isovalues = new double[] { 0.2, 0.5, 1.1 };
+
+        PackingSink sink = new PackingSink( );
+        MarchingSquares.computeIsoLines( field, isovalues, sink );
+        sink.flush( );
+
+        TestPackedIsolines.assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), sink.isolineMap, false );
+    }
+
+    static float[] toFloats( double[] z )
+    {
+        float[] floats = new float[z.length];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            floats[i] = (float) z[i];
+        }
+        return floats;
+    }
+}
@@ -0,0 +1,140 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestIsolineWriters
+{
+    @Test
+    public void testGeoJsonLayout( ) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream( );
+        GeoJsonWriter writer = new GeoJsonWriter( Channels.newChannel( out ), 3, 256 );
+
+        writer.beginIsoline( 0.5, true );
+        writer.vertex( 1.0, 0.5 );
+        writer.vertex( 1.5, 1.0 );
+        writer.vertex( 1.0, 1.5 );
+        writer.endIsoline( );
+        writer.beginIsoline( 2.0, false );
+        writer.vertex( -0.25, 3.0001 );
+        writer.vertex( 12.0, 1234.5678 );
+        writer.endIsoline( );
+        writer.beginIsoline( 2.0, false );
+        writer.vertex( 0.0, 0.0 );
+        writer.vertex( 1.0, 0.0 );
+        writer.endIsoline( );
+        writer.beginIsoline( -0.0, false );
+        writer.vertex( 0.0, 1.0 );
+        writer.vertex( 1.0, 1.0 );
+        writer.endIsoline( );
+        writer.finish( );
+
+        Assertions.assertEquals( "{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"properties\":{\"level\":0.5},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[[1,0.5],[1.5,1],[1,1.5],[1,0.5]]]}},"
+                + "{\"type\":\"Feature\",\"properties\":{\"level\":2.0},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[-0.25,3],[12,1234.568]]}},"
+                + "{\"type\":\"Feature\",\"properties\":{\"level\":2.0},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[0,0],[1,0]]}},"
+                + "{\"type\":\"Feature\",\"properties\":{\"level\":-0.0},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[0,1],[1,1]]}}"
+                + "]}", out.toString( StandardCharsets.US_ASCII ) );
+    }
+
+    @Test
+    public void testNumbers( )
+    {
+        GeoJsonWriter writer = new GeoJsonWriter( Channels.newChannel( new ByteArrayOutputStream( ) ) );
+        Assertions.assertEquals( "0", format( writer, -1e-7 ) );
+        Assertions.assertEquals( "-3.25", format( writer, -3.25 ) );
+        Assertions.assertEquals( "100", format( writer, 99.9999996 ) );
+        Assertions.assertEquals( "0.000001", format( writer, 1e-6 ) );
+        Assertions.assertEquals( "1.0E20", format( writer, 1e20 ) );
+        Assertions.assertEquals( "null", format( writer, Double.NaN ) );
+
+        Random random = new Random( 7 );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            double value = ( random.nextDouble( ) - 0.5 ) * Math.pow( 10, random.nextInt( 12 ) - 3 );
+            Assertions.assertEquals( value, Double.parseDouble( format( writer, value ) ), 0.5e-6 * ( 1 + 1e-9 ) + Math.ulp( value ) );
+        }
+    }
+
+    static String format( GeoJsonWriter writer, double value )
+    {
+        ByteBuffer buffer = writer.buffer;
+        buffer.clear( );
+        writer.putDouble( value );
+        return new String( buffer.array( ), 0, buffer.position( ), StandardCharsets.US_ASCII );
+    }
+
+    @Test
+    public void testGeoJsonFromEngine( ) throws IOException
+    {
+        int rows = 30;
+        int cols = 40;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { -0.5, 0.0, 0.25 };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream( );
+        GeoJsonWriter writer = new GeoJsonWriter( Channels.newChannel( out ), 4, 256 );
+        MarchingSquares.computeIsoLines( field, isovalues, writer );
+        writer.finish( );
+        String json = out.toString( StandardCharsets.US_ASCII );
+
+        int nIsolines = 0;
+        for ( var entry : MarchingSquares.computeIsoLines( field, isovalues ).entrySet( ) )
+        {
+            nIsolines += entry.getValue( ).size( );
+        }
+        Assertions.assertEquals( nIsolines, json.split( "\"Feature\"", -1 ).length - 1 );
+        Assertions.assertEquals( json.chars( ).filter( c -> c == '[' ).count( ), json.chars( ).filter( c -> c == ']' ).count( ) );
+        Assertions.assertTrue( json.endsWith( "]]}}]}" ) );
+    }
+
+    @Test
+    public void testWkbRoundTrip( ) throws IOException
+    {
+        int rows = 41;
+        int cols = 27;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, -1.0, 3.0, 0.5, 0.5 );
+        double[] isovalues = new double[] { 0.25, -0.5, 0.0, 0.8 };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream( );
+        WkbWriter writer = new WkbWriter( Channels.newChannel( out ), 256 );
+        MarchingSquares.computeIsoLines( field, isovalues, writer );
+        writer.finish( );
+
+        TestIsolineSink.PackingSink sink = new TestIsolineSink.PackingSink( );
+        WkbWriter.read( ByteBuffer.wrap( out.toByteArray( ) ), sink );
+        sink.flush( );
+
+        TestPackedIsolines.assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), sink.isolineMap, false );
+    }
+
+    @Test
+    public void testWritePacked( ) throws IOException
+    {
+        int rows = 20;
+        int cols = 20;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { 0.1, 0.6 };
+
+        ByteArrayOutputStream direct = new ByteArrayOutputStream( );
+        WkbWriter writer = new WkbWriter( Channels.newChannel( direct ) );
+        MarchingSquares.computeIsoLines( field, isovalues, writer );
+        writer.finish( );
+
+        ByteArrayOutputStream packed = new ByteArrayOutputStream( );
+        writer = new WkbWriter( Channels.newChannel( packed ) );
+        writer.write( MarchingSquares.packedComputeIsoLines( field, isovalues, false ) );
+        writer.finish( );
+
+        Assertions.assertArrayEquals( direct.toByteArray( ), packed.toByteArray( ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> new WkbWriter( Channels.newChannel( packed ), 16 ) );
+    }
+}
@@ -0,0 +1,80 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestMappedScalarField
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSameAsArrayField( ) throws IOException
+    {
+        int rows = 31;
+        int cols = 44;
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        double[] isovalues = new double[] { -0.5, 0.0, 0.25, 0.8 };
+
+        float[] floats = new float[z.length];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            floats[i] = (float) z[i];
+        }
+        IsolineMap<Point> expected64 = MarchingSquares.computeIsoLines( DoubleScalarField.regular( z, rows, cols, 3.0, -1.0, 0.5, 0.25 ), isovalues );
+        IsolineMap<Point> expected32 = MarchingSquares.computeIsoLines( FloatScalarField.regular( floats, rows, cols, 3.0, -1.0, 0.5, 0.25 ), isovalues );
+
+        for ( ByteOrder order : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN } )
+        {
+            Path path64 = directory.resolve( "z64" + order );
+            MappedScalarField.write( path64, z, rows, cols, 3.0, -1.0, 0.5, 0.25, MappedScalarField.ValueType.FLOAT64, order );
+            MappedScalarField field64 = MappedScalarField.open( path64 );
+            Assertions.assertEquals( MappedScalarField.ValueType.FLOAT64, field64.getType( ) );
+            TestScalarField.assertSameIsolines( expected64, MarchingSquares.computeIsoLines( field64, isovalues ) );
+
+            Path path32 = directory.resolve( "z32" + order );
+            MappedScalarField.write( path32, z, rows, cols, 3.0, -1.0, 0.5, 0.25, MappedScalarField.ValueType.FLOAT32, order );
+            TestScalarField.assertSameIsolines( expected32, MarchingSquares.computeIsoLines( MappedScalarField.open( path32 ), isovalues ) );
+
+            // The same values read as a raw raster past the header
+            MappedScalarField raw = MappedScalarField.open( path32, MappedScalarField.ValueType.FLOAT32, order, MappedScalarField.HEADER_SIZE, rows, cols, 3.0, -1.0, 0.5, 0.25 );
+            TestScalarField.assertSameIsolines( expected32, MarchingSquares.computeIsoLines( raw, isovalues ) );
+        }
+    }
+
+    @Test
+    public void testIllegalFiles( ) throws IOException
+    {
+        Path path = directory.resolve( "z" );
+        Files.write( path, new byte[] { 'M', 'S', 'Q', 'R' } );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> MappedScalarField.open( path ) );
+
+        MappedScalarField.write( path, new double[4], 2, 2, 0.0, 0.0, 1.0, 1.0, MappedScalarField.ValueType.FLOAT64, ByteOrder.BIG_ENDIAN );
+        Assertions.assertThrows( IllegalArgumentException.class,
+                ( ) -> MappedScalarField.open( path, MappedScalarField.ValueType.FLOAT64, ByteOrder.BIG_ENDIAN, MappedScalarField.HEADER_SIZE, 3, 3, 0.0, 0.0, 1.0, 1.0 ) );
+    }
+
+    @Test
+    public void testIllegalHeaders( ) throws IOException
+    {
+        // Header of a 2 x 2 raster whose size is patched in place
+        Path path = directory.resolve( "z" );
+        MappedScalarField.write( path, new double[4], 2, 2, 0.0, 0.0, 1.0, 1.0, MappedScalarField.ValueType.FLOAT64, ByteOrder.BIG_ENDIAN );
+        byte[] bytes = Files.readAllBytes( path );
+        int[][] sizes = new int[][] { { 1, 2 }, { 2, 0 }, { -3, 2 }, { 2, 3 }, { 100000, 100000 } };
+        for ( int[] size : sizes )
+        {
+            ByteBuffer.wrap( bytes ).order( ByteOrder.BIG_ENDIAN ).putInt( 8, size[0] ).putInt( 12, size[1] );
+            Files.write( path, bytes );
+            IllegalArgumentException exception = Assertions.assertThrows( IllegalArgumentException.class, ( ) -> MappedScalarField.open( path ) );
+            Assertions.assertTrue( exception.getMessage( ).endsWith( path.toString( ) ) );
+        }
+    }
+}
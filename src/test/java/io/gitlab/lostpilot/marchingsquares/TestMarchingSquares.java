@@ -89,8 +89,8 @@ public class TestMarchingSquares
     /**
      * <strong>NOTA BENE</strong>:
      * Assertions in this test are highly dependent on the ordering (arbitrarily) enforced in:
-     * {@link MarchingSquares#resolveAmbiguity(int, Point, Point, Point, Point, Cell) MarchingSquares.resolveAmbiguity()}
-     * and the stack created in {@link MarchingSquares#computeContours()}.
+     * {@link MarchingSquares#SEGMENT_SIDES MarchingSquares.SEGMENT_SIDES}
+     * and the order in which {@link EdgeTracer#trace(EdgeTracer.Visitor)} visits starting edges.
      */
     @Test
     public void testAsymptoticDecider5( )
@@ -155,8 +155,8 @@ public class TestMarchingSquares
     /**
      * <strong>NOTA BENE</strong>:
      * Assertions in this test are highly dependent on the ordering (arbitrarily) enforced in:
-     * {@link MarchingSquares#resolveAmbiguity(int, Point, Point, Point, Point, Cell) MarchingSquares.resolveAmbiguity()}
-     * and the stack created in {@link MarchingSquares#computeContours()}.
+     * {@link MarchingSquares#SEGMENT_SIDES MarchingSquares.SEGMENT_SIDES}
+     * and the order in which {@link EdgeTracer#trace(EdgeTracer.Visitor)} visits starting edges.
      */
     @Test
     public void testAsymptoticDecider10( )
@@ -0,0 +1,56 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestMinMaxIndex
+{
+    @Test
+    public void testSameAsWithoutIndex( )
+    {
+        int rows = 70;
+        int cols = 45;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { -1.05, -0.6, 0.0, 0.35, 0.95, 1.05 };
+
+        IsolineMap<Point> expected = MarchingSquares.computeIsoLines( field, isovalues );
+        for ( int blockSize : new int[] { 1, 3, 16, 100 } )
+        {
+            MinMaxIndex index = new MinMaxIndex( field, blockSize );
+            TestScalarField.assertSameIsolines( expected, MarchingSquares.computeIsoLines( field, index, isovalues ) );
+        }
+    }
+
+    @Test
+    public void testFindBlocks( )
+    {
+        // A single bump in the middle of a flat field
+        int rows = 65;
+        int cols = 65;
+        double[] z = new double[rows * cols];
+        z[32 * cols + 32] = 1.0;
+        MinMaxIndex index = new MinMaxIndex( DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 ), 8 );
+
+        Assertions.assertEquals( 0.0, index.getMin( ) );
+        Assertions.assertEquals( 1.0, index.getMax( ) );
+        Assertions.assertEquals( 0, index.findBlocks( 1.5 ).length );
+
+        // The vertex is shared by the 4 blocks around it
+        int[] blocks = index.findBlocks( 0.5 );
+        Assertions.assertArrayEquals( new int[] { 27, 28, 35, 36 }, blocks );
+        Assertions.assertEquals( 24, index.fromRow( blocks[0] ) );
+        Assertions.assertEquals( 32, index.toRow( blocks[0] ) );
+        Assertions.assertEquals( 32, index.fromCol( blocks[1] ) );
+        Assertions.assertEquals( 40, index.toCol( blocks[1] ) );
+    }
+
+    @Test
+    public void testIndexOfOtherField( )
+    {
+        DoubleScalarField small = DoubleScalarField.regular( TestScalarField.wavyValues( 5, 5 ), 5, 5, 0.0, 0.0, 1.0, 1.0 );
+        DoubleScalarField large = DoubleScalarField.regular( TestScalarField.wavyValues( 20, 20 ), 20, 20, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { 0.0 };
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> MarchingSquares.computeIsoLines( large, new MinMaxIndex( small ), isovalues ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> MarchingSquares.computeIsoLines( small, new MinMaxIndex( large ), isovalues ) );
+    }
+}
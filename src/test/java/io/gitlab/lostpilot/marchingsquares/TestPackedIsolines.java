@@ -0,0 +1,119 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectMap;
+
+public class TestPackedIsolines
+{
+    static void assertSameIsolines( IsolineMap<Point> expected, PackedIsolineMap actual, boolean floats )
+    {
+        Assertions.assertEquals( expected.size( ), actual.size( ) );
+        for ( Double2ObjectMap.Entry<IsolineCollection<Point>> entry : expected.entrySet( ) )
+        {
+            IsolineCollection<Point> expectedIsolines = entry.getValue( );
+            PackedIsolines actualIsolines = actual.get( entry.getDoubleKey( ) );
+            Assertions.assertEquals( entry.getDoubleKey( ), actualIsolines.getIsovalue( ) );
+            Assertions.assertEquals( floats, actualIsolines.isFloat( ) );
+            Assertions.assertEquals( expectedIsolines.size( ), actualIsolines.size( ) );
+
+            for ( int i = 0; i < expectedIsolines.size( ); i++ )
+            {
+                List<Point> expectedIsoline = expectedIsolines.get( i );
+                boolean closed = expectedIsoline.get( 0 ) == expectedIsoline.get( expectedIsoline.size( ) - 1 );
+                Assertions.assertEquals( closed, actualIsolines.isClosed( i ) );
+                Assertions.assertEquals( expectedIsoline.size( ) - ( closed ? 1 : 0 ), actualIsolines.getVertexCount( i ) );
+                for ( int j = 0; j < actualIsolines.getVertexCount( i ); j++ )
+                {
+                    double x = expectedIsoline.get( j ).getX( );
+                    double y = expectedIsoline.get( j ).getY( );
+                    Assertions.assertEquals( floats ? (float) x : x, actualIsolines.getX( i, j ) );
+                    Assertions.assertEquals( floats ? (float) y : y, actualIsolines.getY( i, j ) );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsIsolines( )
+    {
+        int rows = 47;
+        int cols = 38;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 2.0, 1.0, 0.5, 0.25 );
+        double[] isovalues = new double[] { 0.8, -0.5, 0.0, 0.25, 5.0 };
+
+        IsolineMap<Point> expected = MarchingSquares.computeIsoLines( field, isovalues );
+        for ( boolean floats : new boolean[] { false, true } )
+        {
+            assertSameIsolines( expected, MarchingSquares.packedComputeIsoLines( field, isovalues, floats ), floats );
+            assertSameIsolines( expected, MarchingSquares.singlePassPackedComputeIsoLines( field, isovalues, floats ), floats );
+        }
+    }
+
+    @Test
+    public void testFloatPipeline( )
+    {
+        int rows = 33;
+        int cols = 52;
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        float[] floats = new float[z.length];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            floats[i] = (float) z[i];
+        }
+        FloatScalarField field = FloatScalarField.regular( floats, rows, cols, -3.0, 7.0, 0.125, 0.5 );
+        double[] isovalues = new double[] { -0.6, 0.0, 0.35, 0.9 };
+
+        Workspace workspace = Workspace.of( field );
+        PackedIsolineMap packed = MarchingSquares.packedComputeIsoLines( field, isovalues, true, workspace );
+        assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), packed, true );
+
+        // Single-precision edge points only, no Point
+        for ( Point[] row : workspace.horizontalEdgePoints )
+        {
+            for ( Point point : row )
+            {
+                Assertions.assertNull( point );
+            }
+        }
+        for ( Point[] row : workspace.verticalEdgePoints )
+        {
+            for ( Point point : row )
+            {
+                Assertions.assertNull( point );
+            }
+        }
+
+        // Same workspace, double precision
+        assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), MarchingSquares.packedComputeIsoLines( field, isovalues, false, workspace ), false );
+    }
+
+    @Test
+    public void testLayout( )
+    {
+        PackedIsolines.Builder builder = new PackedIsolines.Builder( 1.0, false );
+        builder.beginIsoline( false );
+        builder.addVertex( 0.0, 1.0 );
+        builder.addVertex( 2.0, 3.0 );
+        builder.endIsoline( );
+        builder.beginIsoline( true );
+        for ( int i = 0; i < 100; i++ )
+        {
+            builder.addVertex( i, -i );
+        }
+        builder.endIsoline( );
+
+        PackedIsolines isolines = builder.build( );
+        Assertions.assertEquals( 2, isolines.size( ) );
+        Assertions.assertArrayEquals( new int[] { 0, 2, 102 }, isolines.getOffsets( ) );
+        Assertions.assertEquals( 204, isolines.getXY( ).length );
+        Assertions.assertFalse( isolines.isClosed( 0 ) );
+        Assertions.assertTrue( isolines.isClosed( 1 ) );
+        Assertions.assertEquals( 99.0, isolines.getX( 1, 99 ) );
+        Assertions.assertEquals( -99.0, isolines.getY( 1, 99 ) );
+        Assertions.assertNull( isolines.getFloatXY( ) );
+    }
+}
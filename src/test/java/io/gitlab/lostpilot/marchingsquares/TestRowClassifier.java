@@ -0,0 +1,74 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestRowClassifier
+{
+    @Test
+    public void testVectorSameAsScalar( )
+    {
+        // Surefire adds the incubator module
+        Assertions.assertInstanceOf( VectorRowClassifier.class, RowClassifier.getInstance( ) );
+
+        RowClassifier scalar = new RowClassifier( );
+        RowClassifier vector = new VectorRowClassifier( );
+        Random random = new Random( 12 );
+        for ( int trial = 0; trial < 200; trial++ )
+        {
+            int n = 1 + random.nextInt( 300 );
+            int offset = random.nextInt( 5 );
+            double[] z = new double[offset + n];
+            float[] zFloat = new float[offset + n];
+            for ( int i = 0; i < z.length; i++ )
+            {
+                z[i] = random.nextInt( 10 ) == 0 ? Double.NaN : random.nextInt( 4 ) * 0.25;
+                zFloat[i] = (float) z[i];
+            }
+            double isovalue = random.nextBoolean( ) ? 0.5 : 0.1;
+
+            long[] expected = new long[RowClassifier.words( n )];
+            long[] actual = new long[expected.length];
+            scalar.classify( z, offset, n, isovalue, expected );
+            vector.classify( z, offset, n, isovalue, actual );
+            Assertions.assertArrayEquals( expected, actual );
+
+            scalar.classify( zFloat, offset, n, isovalue, expected );
+            vector.classify( zFloat, offset, n, isovalue, actual );
+            Assertions.assertArrayEquals( expected, actual );
+        }
+    }
+
+    @Test
+    public void testCellCodes( )
+    {
+        Random random = new Random( 13 );
+        for ( int trial = 0; trial < 100; trial++ )
+        {
+            int nCells = 1 + random.nextInt( 200 );
+            boolean[] bottom = new boolean[nCells + 1];
+            boolean[] top = new boolean[nCells + 1];
+            long[] bottomBits = new long[RowClassifier.words( nCells + 1 )];
+            long[] topBits = new long[bottomBits.length];
+            for ( int i = 0; i <= nCells; i++ )
+            {
+                bottom[i] = random.nextBoolean( );
+                top[i] = random.nextBoolean( );
+                bottomBits[i >>> 6] |= ( bottom[i] ? 1L : 0L ) << ( i & 63 );
+                topBits[i >>> 6] |= ( top[i] ? 1L : 0L ) << ( i & 63 );
+            }
+
+            int[] codes = new int[nCells + 2];
+            long[] saddles = new long[RowClassifier.words( nCells )];
+            RowClassifier.cellCodes( bottomBits, topBits, nCells, codes, 2, saddles );
+            for ( int i = 0; i < nCells; i++ )
+            {
+                int expected = ( bottom[i] ? 1 : 0 ) | ( bottom[i + 1] ? 2 : 0 ) | ( top[i + 1] ? 4 : 0 ) | ( top[i] ? 8 : 0 );
+                Assertions.assertEquals( expected, codes[i + 2] );
+                Assertions.assertEquals( expected == 5 || expected == 10, ( ( saddles[i >>> 6] >>> ( i & 63 ) ) & 1L ) != 0L );
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectMap;
+
+public class TestScalarField
+{
+    /**
+     * A smooth field with several bumps, pits and saddles.
+     */
+    static double[] wavyValues( int rows, int cols )
+    {
+        double[] z = new double[rows * cols];
+        for ( int row = 0; row < rows; row++ )
+        {
+            for ( int col = 0; col < cols; col++ )
+            {
+                z[row * cols + col] = Math.sin( 0.35 * col ) * Math.cos( 0.27 * row ) + 0.1 * Math.sin( 0.05 * row * col );
+            }
+        }
+        return z;
+    }
+
+    static Point[][] toPoints( double[] z, int rows, int cols, double[] xAxis, double[] yAxis )
+    {
+        Point[][] points = new Point[rows][cols];
+        for ( int row = 0; row < rows; row++ )
+        {
+            for ( int col = 0; col < cols; col++ )
+            {
+                points[row][col] = new Point( xAxis[col], yAxis[row], z[row * cols + col] );
+            }
+        }
+        return points;
+    }
+
+    static void assertSameIsolines( IsolineMap<Point> expected, IsolineMap<Point> actual )
+    {
+        Assertions.assertEquals( expected.size( ), actual.size( ) );
+        for ( Double2ObjectMap.Entry<IsolineCollection<Point>> entry : expected.entrySet( ) )
+        {
+            assertSameIsolines( entry.getValue( ), actual.get( entry.getDoubleKey( ) ) );
+        }
+    }
+
+    static void assertSameIsolines( IsolineCollection<Point> expected, IsolineCollection<Point> actual )
+    {
+        Assertions.assertEquals( expected.size( ), actual.size( ) );
+        for ( int i = 0; i < expected.size( ); i++ )
+        {
+            List<Point> expectedIsoline = expected.get( i );
+            List<Point> actualIsoline = actual.get( i );
+            Assertions.assertEquals( expectedIsoline.size( ), actualIsoline.size( ) );
+            for ( int j = 0; j < expectedIsoline.size( ); j++ )
+            {
+                Assertions.assertEquals( expectedIsoline.get( j ).getX( ), actualIsoline.get( j ).getX( ) );
+                Assertions.assertEquals( expectedIsoline.get( j ).getY( ), actualIsoline.get( j ).getY( ) );
+            }
+        }
+    }
+
+    @Test
+    public void testDoubleFieldMatchesPoints( )
+    {
+        // More columns than rows on purpose
+        int rows = 23;
+        int cols = 41;
+        double[] z = wavyValues( rows, cols );
+        double[] isovalues = new double[] { -0.5, 0.0, 0.25, 0.8 };
+
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 10.0, -5.0, 0.5, 0.25 );
+        Point[][] points = toPoints( z, rows, cols, field.getXAxis( ), field.getYAxis( ) );
+
+        IsolineMap<Point> expected = MarchingSquares.computeIsoLines( points, isovalues );
+        Assertions.assertFalse( expected.get( 0.25 ).isEmpty( ) );
+
+        assertSameIsolines( expected, MarchingSquares.computeIsoLines( field, isovalues ) );
+        assertSameIsolines( expected, MarchingSquares.parallelComputeIsoLines( field, isovalues ) );
+    }
+
+    @Test
+    public void testFloatFieldMatchesPoints( )
+    {
+        int rows = 31;
+        int cols = 17;
+        double[] z = wavyValues( rows, cols );
+        float[] floats = new float[z.length];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            floats[i] = (float) z[i];
+            z[i] = floats[i];
+        }
+        double[] isovalues = new double[] { -0.3, 0.1, 0.6 };
+
+        FloatScalarField field = FloatScalarField.regular( floats, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        Point[][] points = toPoints( z, rows, cols, field.getXAxis( ), field.getYAxis( ) );
+
+        assertSameIsolines( MarchingSquares.computeIsoLines( points, isovalues ), MarchingSquares.computeIsoLines( field, isovalues ) );
+    }
+
+    @Test
+    public void testIllegalDimensions( )
+    {
+        Assertions.assertThrows( IllegalArgumentException.class,
+                ( ) -> DoubleScalarField.regular( new double[5], 2, 3, 0, 0, 1, 1 ) );
+        Assertions.assertThrows( IllegalArgumentException.class,
+                ( ) -> new DoubleScalarField( new double[6], 2, 3, new double[2], new double[2] ) );
+    }
+
+    @Test
+    public void testSinglePassMatchesPerIsovalue( )
+    {
+        int rows = 40;
+        int cols = 55;
+        DoubleScalarField field = DoubleScalarField.regular( wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+
+        double[] isovalues = new double[41];
+        for ( int i = 0; i < isovalues.length; i++ )
+        {
+            // Unsorted, and including levels hitting vertices exactly
+            isovalues[i] = ( ( i * 17 ) % 41 - 20 ) * 0.05;
+        }
+
+        assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), MarchingSquares.singlePassComputeIsoLines( field, isovalues ) );
+    }
+
+    @Test
+    public void testSinglePassSaddles( )
+    {
+        // Checkerboard, every interior cell is a saddle
+        int rows = 6;
+        int cols = 7;
+        double[] z = new double[rows * cols];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            z[i] = ( ( i / cols + i % cols ) % 2 ) + 0.01 * i;
+        }
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { 0.2, 0.5, 0.7, 1.1 };
+
+        assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), MarchingSquares.singlePassComputeIsoLines( field, isovalues ) );
+    }
+
+    @Test
+    public void testSinglePassNaN( )
+    {
+        // Cells with NaN corners are crossed like cells with positive infinity
+        int rows = 30;
+        int cols = 35;
+        double[] z = wavyValues( rows, cols );
+        for ( int i = 0; i < z.length; i += 23 )
+        {
+            z[i] = Double.NaN;
+        }
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { -0.6, -0.1, 0.0, 0.35, 0.9 };
+
+        assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), MarchingSquares.singlePassComputeIsoLines( field, isovalues ) );
+    }
+}
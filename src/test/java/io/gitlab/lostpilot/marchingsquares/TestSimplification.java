@@ -0,0 +1,156 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestSimplification
+{
+    static DoubleScalarField smoothField( int rows, int cols, double spacing )
+    {
+        double[] z = new double[rows * cols];
+        for ( int row = 0; row < rows; row++ )
+        {
+            for ( int col = 0; col < cols; col++ )
+            {
+                z[row * cols + col] = Math.sin( 0.02 * col ) * Math.cos( 0.015 * row ) + 0.2 * Math.sin( 0.01 * ( row + col ) );
+            }
+        }
+        return DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, spacing, spacing );
+    }
+
+    static int vertexCount( IsolineMap<Point> isolineMap )
+    {
+        int n = 0;
+        for ( var entry : isolineMap.entrySet( ) )
+        {
+            for ( Isoline<Point> isoline : entry.getValue( ).getIsolines( ) )
+            {
+                n += isoline.size( );
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Checks that each simplified isoline keeps a subsequence of the vertices of an original isoline, in order, and returns
+     * the number of original isolines that were dropped.
+     */
+    static int assertSubsequences( IsolineCollection<Point> original, IsolineCollection<Point> simplified )
+    {
+        int j = 0;
+        for ( int i = 0; i < original.size( ); i++ )
+        {
+            List<Point> isoline = original.get( i );
+            if ( j == simplified.size( ) || !sameXY( isoline.get( 0 ), simplified.get( j ).get( 0 ) ) )
+            {
+                continue;
+            }
+            List<Point> kept = simplified.get( j++ );
+            int k = 0;
+            for ( Point point : isoline )
+            {
+                if ( k < kept.size( ) && sameXY( point, kept.get( k ) ) )
+                {
+                    k++;
+                }
+            }
+            Assertions.assertEquals( kept.size( ), k );
+
+            boolean closed = isoline.get( 0 ) == isoline.get( isoline.size( ) - 1 );
+            Assertions.assertEquals( closed, kept.get( 0 ) == kept.get( kept.size( ) - 1 ) );
+            Assertions.assertTrue( kept.size( ) >= ( closed ? 4 : 2 ) || isoline.size( ) < 2 );
+            Assertions.assertTrue( sameXY( isoline.get( isoline.size( ) - 1 ), kept.get( kept.size( ) - 1 ) ) );
+        }
+        Assertions.assertEquals( simplified.size( ), j );
+        return original.size( ) - j;
+    }
+
+    static boolean sameXY( Point a, Point b )
+    {
+        return a.getX( ) == b.getX( ) && a.getY( ) == b.getY( );
+    }
+
+    @Test
+    public void testZeroTolerance( )
+    {
+        int rows = 37;
+        int cols = 44;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { -0.5, 0.0, 0.25, 0.8 };
+
+        IsolineMap<Point> expected = MarchingSquares.computeIsoLines( field, isovalues );
+        for ( SimplifyingSink.Method method : SimplifyingSink.Method.values( ) )
+        {
+            TestScalarField.assertSameIsolines( expected, MarchingSquares.simplifiedComputeIsoLines( field, isovalues, 0.0, method ) );
+        }
+    }
+
+    @Test
+    public void testRadialDistance( )
+    {
+        DoubleScalarField field = smoothField( 400, 500, 1.0 );
+        double[] isovalues = new double[] { -0.6, -0.2, 0.1, 0.5 };
+        double tolerance = 4.0;
+
+        IsolineMap<Point> original = MarchingSquares.computeIsoLines( field, isovalues );
+        IsolineMap<Point> simplified = MarchingSquares.simplifiedComputeIsoLines( field, isovalues, tolerance, SimplifyingSink.Method.RADIAL_DISTANCE );
+
+        for ( double isovalue : isovalues )
+        {
+            assertSubsequences( original.get( isovalue ), simplified.get( isovalue ) );
+            for ( Isoline<Point> isoline : simplified.get( isovalue ).getIsolines( ) )
+            {
+                // All kept vertices are at least the tolerance apart, but for the last one of open isolines
+                boolean closed = isoline.get( 0 ) == isoline.get( isoline.size( ) - 1 );
+                int n = closed ? isoline.size( ) - 1 : isoline.size( ) - 2;
+                for ( int i = 1; i < n; i++ )
+                {
+                    Point a = isoline.get( i - 1 );
+                    Point b = isoline.get( i );
+                    Assertions.assertTrue( Math.hypot( b.getX( ) - a.getX( ), b.getY( ) - a.getY( ) ) >= tolerance );
+                }
+            }
+        }
+        Assertions.assertTrue( vertexCount( original ) > 3 * vertexCount( simplified ) );
+    }
+
+    @Test
+    public void testArea( )
+    {
+        DoubleScalarField field = smoothField( 400, 500, 1.0 );
+        double[] isovalues = new double[] { -0.6, -0.2, 0.1, 0.5 };
+
+        IsolineMap<Point> original = MarchingSquares.computeIsoLines( field, isovalues );
+        IsolineMap<Point> simplified = MarchingSquares.simplifiedComputeIsoLines( field, isovalues, 1.0, SimplifyingSink.Method.AREA );
+
+        for ( double isovalue : isovalues )
+        {
+            assertSubsequences( original.get( isovalue ), simplified.get( isovalue ) );
+        }
+        Assertions.assertTrue( vertexCount( original ) > 5 * vertexCount( simplified ) );
+    }
+
+    @Test
+    public void testSmallLoopsDropped( )
+    {
+        // A single bump spanning a few cells
+        int rows = 9;
+        int cols = 9;
+        double[] z = new double[rows * cols];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            double dx = i % cols - 4;
+            double dy = i / cols - 4;
+            z[i] = Math.exp( -( dx * dx + dy * dy ) / 4 );
+        }
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { 0.5 };
+
+        Assertions.assertEquals( 1, MarchingSquares.simplifiedComputeIsoLines( field, isovalues, 1.0, SimplifyingSink.Method.RADIAL_DISTANCE ).get( 0.5 ).size( ) );
+        Assertions.assertTrue( MarchingSquares.simplifiedComputeIsoLines( field, isovalues, 10.0, SimplifyingSink.Method.RADIAL_DISTANCE ).get( 0.5 ).isEmpty( ) );
+        Assertions.assertTrue( MarchingSquares.simplifiedComputeIsoLines( field, isovalues, 10.0, SimplifyingSink.Method.AREA ).get( 0.5 ).isEmpty( ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> new SimplifyingSink( null, Double.NaN, SimplifyingSink.Method.AREA ) );
+    }
+}
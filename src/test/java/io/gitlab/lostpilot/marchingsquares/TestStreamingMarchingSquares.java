@@ -0,0 +1,138 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectMap;
+
+public class TestStreamingMarchingSquares
+{
+    /**
+     * Streamed isolines come in the order they are completed, so they are compared by their points only.
+     */
+    static void assertSameIsolines( IsolineMap<Point> expected, Map<Double, List<Isoline<Point>>> actual )
+    {
+        for ( Double2ObjectMap.Entry<IsolineCollection<Point>> entry : expected.entrySet( ) )
+        {
+            double isovalue = entry.getDoubleKey( );
+            IsolineCollection<Point> expectedIsolines = entry.getValue( );
+            List<Isoline<Point>> actualIsolines = actual.getOrDefault( isovalue, new ArrayList<>( ) );
+            Assertions.assertEquals( expectedIsolines.size( ), actualIsolines.size( ) );
+
+            List<String> expectedKeys = new ArrayList<>( );
+            expectedIsolines.getIsolines( ).forEach( isoline -> expectedKeys.add( key( isoline ) ) );
+            List<String> actualKeys = new ArrayList<>( );
+            actualIsolines.forEach( isoline -> actualKeys.add( key( isoline ) ) );
+            expectedKeys.sort( null );
+            actualKeys.sort( null );
+            Assertions.assertEquals( expectedKeys, actualKeys );
+
+            for ( Isoline<Point> isoline : actualIsolines )
+            {
+                Point first = isoline.get( 0 );
+                Point last = isoline.get( isoline.size( ) - 1 );
+                if ( first.getX( ) == last.getX( ) && first.getY( ) == last.getY( ) )
+                {
+                    Assertions.assertSame( first, last );
+                }
+            }
+        }
+    }
+
+    static String key( List<Point> isoline )
+    {
+        StringBuilder key = new StringBuilder( );
+        for ( Point point : isoline )
+        {
+            key.append( point.getX( ) ).append( ',' ).append( point.getY( ) ).append( ';' );
+        }
+        return key.toString( );
+    }
+
+    static Map<Double, List<Isoline<Point>>> stream( double[] z, int rows, int cols, DoubleScalarField field, double[] isovalues )
+    {
+        Map<Double, List<Isoline<Point>>> actual = new HashMap<>( );
+        List<double[]> zRows = new ArrayList<>( );
+        for ( int row = 0; row < rows; row++ )
+        {
+            zRows.add( Arrays.copyOfRange( z, row * cols, ( row + 1 ) * cols ) );
+        }
+        Iterator<double[]> iterator = zRows.iterator( );
+        double[] yAxis = field.getYAxis( );
+        StreamingMarchingSquares.computeIsoLines( iterator, field.getXAxis( ), yAxis[0], yAxis[1] - yAxis[0], isovalues,
+                ( isovalue, isoline ) -> actual.computeIfAbsent( isovalue, k -> new ArrayList<>( ) ).add( isoline ) );
+        return actual;
+    }
+
+    @Test
+    public void testSameAsMarchingSquares( )
+    {
+        int rows = 57;
+        int cols = 33;
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        double[] isovalues = new double[] { -0.9, -0.5, 0.0, 0.25, 0.8 };
+
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 10.0, -5.0, 0.5, 0.25 );
+        assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), stream( z, rows, cols, field, isovalues ) );
+    }
+
+    @Test
+    public void testSaddles( )
+    {
+        // Random values have plenty of saddles and small closed isolines
+        int rows = 40;
+        int cols = 25;
+        Random random = new Random( 6 );
+        double[] z = new double[rows * cols];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            z[i] = random.nextDouble( );
+        }
+        double[] isovalues = new double[] { 0.3, 0.5, 0.7 };
+
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), stream( z, rows, cols, field, isovalues ) );
+    }
+
+    @Test
+    public void testNaN( )
+    {
+        // Cells with NaN corners are crossed like cells with positive infinity
+        int rows = 45;
+        int cols = 38;
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        Random random = new Random( 11 );
+        for ( int i = 0; i < z.length / 20; i++ )
+        {
+            z[random.nextInt( z.length )] = Double.NaN;
+        }
+        double[] isovalues = new double[] { -0.5, 0.0, 0.4 };
+
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ), stream( z, rows, cols, field, isovalues ) );
+    }
+
+    @Test
+    public void testIllegalRows( )
+    {
+        StreamingMarchingSquares marchingSquares = new StreamingMarchingSquares( new double[] { 0.0, 1.0 }, new double[] { 0.5 }, ( isovalue, isoline ) -> {
+        } );
+        marchingSquares.addRow( 0.0, new double[] { 0.0, 1.0 } );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> marchingSquares.addRow( 1.0, new double[] { 0.0 } ) );
+        marchingSquares.finish( );
+        Assertions.assertThrows( IllegalStateException.class, ( ) -> marchingSquares.addRow( 1.0, new double[] { 0.0, 1.0 } ) );
+
+        Iterator<double[]> rows = List.of( new double[] { 0.0, 1.0 }, new double[] { 0.0, 1.0, 2.0 } ).iterator( );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> StreamingMarchingSquares.computeIsoLines( rows, new double[] { 0.0, 1.0 }, 0.0, 1.0,
+                new double[] { 0.5 }, ( isovalue, isoline ) -> {
+                } ) );
+    }
+}
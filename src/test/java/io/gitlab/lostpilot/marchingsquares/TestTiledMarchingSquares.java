@@ -0,0 +1,141 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestTiledMarchingSquares
+{
+    static void addSegments( PackedIsolines isolines, Set<String> segments )
+    {
+        for ( int i = 0; i < isolines.size( ); i++ )
+        {
+            int n = isolines.getVertexCount( i );
+            int nSegments = isolines.isClosed( i ) ? n : n - 1;
+            for ( int j = 0; j < nSegments; j++ )
+            {
+                int k = ( j + 1 ) % n;
+                Assertions.assertTrue( segments.add( isolines.getX( i, j ) + "," + isolines.getY( i, j ) + ";" + isolines.getX( i, k ) + "," + isolines.getY( i, k ) ) );
+            }
+        }
+    }
+
+    @Test
+    public void testTilesMatchWholeLevels( )
+    {
+        int rows = 150;
+        int cols = 101;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 5.0, -3.0, 0.5, 0.25 );
+        double[] isovalues = new double[] { -0.5, 0.0, 0.25 };
+
+        TiledMarchingSquares tiles = new TiledMarchingSquares( field, 16, false, 1L << 30 );
+        FieldPyramid pyramid = new FieldPyramid( field, 16 );
+        Assertions.assertEquals( pyramid.getLevelCount( ) - 1, tiles.getMaxZoom( ) );
+        Assertions.assertEquals( 1, tiles.getTileCountX( 0 ) );
+        Assertions.assertEquals( 1, tiles.getTileCountY( 0 ) );
+        Assertions.assertEquals( 7, tiles.getTileCountX( tiles.getMaxZoom( ) ) );
+        Assertions.assertEquals( 10, tiles.getTileCountY( tiles.getMaxZoom( ) ) );
+
+        for ( int zoom = 0; zoom <= tiles.getMaxZoom( ); zoom++ )
+        {
+            ScalarField level = pyramid.getLevel( tiles.getMaxZoom( ) - zoom );
+            PackedIsolineMap expected = MarchingSquares.packedComputeIsoLines( level, isovalues, false );
+            for ( double isovalue : isovalues )
+            {
+                Set<String> expectedSegments = new HashSet<>( );
+                addSegments( expected.get( isovalue ), expectedSegments );
+
+                Set<String> actualSegments = new HashSet<>( );
+                for ( int x = 0; x < tiles.getTileCountX( zoom ); x++ )
+                {
+                    for ( int y = 0; y < tiles.getTileCountY( zoom ); y++ )
+                    {
+                        addSegments( tiles.getTile( zoom, x, y, isovalues ).get( isovalue ), actualSegments );
+                    }
+                }
+                Assertions.assertEquals( expectedSegments, actualSegments );
+            }
+        }
+    }
+
+    @Test
+    public void testPyramid( )
+    {
+        int rows = 20;
+        int cols = 7;
+        double[] z = new double[rows * cols];
+        Arrays.fill( z, 3.5 );
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 1.0, 2.0, 0.5, 0.25 );
+
+        FieldPyramid pyramid = new FieldPyramid( field, 4 );
+        Assertions.assertEquals( 4, pyramid.getLevelCount( ) );
+        Assertions.assertSame( field, pyramid.getLevel( 0 ) );
+        int[] expectedRows = new int[] { 20, 11, 6, 4 };
+        int[] expectedCols = new int[] { 7, 4, 3, 2 };
+        for ( int k = 1; k < pyramid.getLevelCount( ); k++ )
+        {
+            ScalarField level = pyramid.getLevel( k );
+            Assertions.assertEquals( expectedRows[k], level.getRows( ) );
+            Assertions.assertEquals( expectedCols[k], level.getCols( ) );
+
+            // Same extent, constant values
+            Assertions.assertEquals( field.getX( 0, cols - 1 ), level.getX( 0, level.getCols( ) - 1 ) );
+            Assertions.assertEquals( field.getY( rows - 1, 0 ), level.getY( level.getRows( ) - 1, 0 ) );
+            for ( int row = 0; row < level.getRows( ); row++ )
+            {
+                for ( int col = 0; col < level.getCols( ); col++ )
+                {
+                    Assertions.assertEquals( 3.5, level.getZ( row, col ) );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCache( )
+    {
+        int rows = 70;
+        int cols = 70;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { 0.0, 0.5 };
+
+        TiledMarchingSquares tiles = new TiledMarchingSquares( field, 32, true, 1L << 20 );
+        int maxZoom = tiles.getMaxZoom( );
+        PackedIsolineMap tile = tiles.getTile( maxZoom, 1, 0, isovalues );
+        Assertions.assertSame( tile, tiles.getTile( maxZoom, 1, 0, new double[] { 0.0, 0.5 } ) );
+        Assertions.assertNotSame( tile, tiles.getTile( maxZoom, 1, 0, new double[] { 0.5, 0.0 } ) );
+        Assertions.assertEquals( 1, tiles.getHitCount( ) );
+        Assertions.assertEquals( 2, tiles.getMissCount( ) );
+        Assertions.assertEquals( 2, tiles.getCachedTileCount( ) );
+        Assertions.assertTrue( tile.get( 0.0 ).isFloat( ) );
+
+        // A new version evicts everything
+        tiles.update( DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 2.0, 2.0 ) );
+        Assertions.assertEquals( 1, tiles.getVersion( ) );
+        Assertions.assertEquals( 0, tiles.getCachedTileCount( ) );
+        Assertions.assertEquals( 0, tiles.getCachedBytes( ) );
+        PackedIsolineMap updated = tiles.getTile( maxZoom, 1, 0, isovalues );
+        Assertions.assertNotSame( tile, updated );
+        Assertions.assertEquals( 2 * tile.get( 0.0 ).getX( 0, 0 ), updated.get( 0.0 ).getX( 0, 0 ) );
+
+        // Bounded by size, least recently used first
+        long bytes = tiles.getCachedBytes( );
+        TiledMarchingSquares small = new TiledMarchingSquares( field, 32, true, 2 * bytes + bytes / 2 );
+        small.getTile( maxZoom, 1, 0, isovalues );
+        small.getTile( maxZoom, 0, 0, isovalues );
+        small.getTile( maxZoom, 1, 0, isovalues );
+        for ( int x = 0; x < small.getTileCountX( maxZoom ); x++ )
+        {
+            for ( int y = 0; y < small.getTileCountY( maxZoom ); y++ )
+            {
+                small.getTile( maxZoom, x, y, isovalues );
+                Assertions.assertTrue( small.getCachedBytes( ) <= 2 * bytes + bytes / 2 );
+            }
+        }
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> small.getTile( maxZoom, 3, 0, isovalues ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> small.getTile( maxZoom + 1, 0, 0, isovalues ) );
+    }
+}
@@ -0,0 +1,165 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestValidityMask
+{
+    /**
+     * Wavy values with a disk and a band of NaN, plus scattered nodata vertices.
+     */
+    static double[] maskedValues( int rows, int cols, double nodata )
+    {
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        for ( int row = 0; row < rows; row++ )
+        {
+            for ( int col = 0; col < cols; col++ )
+            {
+                double dx = col - 0.3 * cols;
+                double dy = row - 0.6 * rows;
+                if ( dx * dx + dy * dy < 0.04 * rows * cols || ( col >= 70 && col < 140 ) )
+                {
+                    z[row * cols + col] = Double.NaN;
+                }
+                else if ( ( row * 31 + col * 17 ) % 97 == 0 )
+                {
+                    z[row * cols + col] = nodata;
+                }
+            }
+        }
+        return z;
+    }
+
+    static Set<String> segments( IsolineCollection<Point> isolines )
+    {
+        Set<String> segments = new HashSet<>( );
+        for ( Isoline<Point> isoline : isolines.getIsolines( ) )
+        {
+            for ( int i = 1; i < isoline.size( ); i++ )
+            {
+                Point a = isoline.get( i - 1 );
+                Point b = isoline.get( i );
+                segments.add( a.getX( ) + "," + a.getY( ) + ";" + b.getX( ) + "," + b.getY( ) );
+            }
+        }
+        return segments;
+    }
+
+    @Test
+    public void testMaskedCellsSkipped( )
+    {
+        int rows = 60;
+        int cols = 200;
+        double nodata = -9999.0;
+        double[] z = maskedValues( rows, cols, nodata );
+        DoubleScalarField field = DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        ValidityMask mask = ValidityMask.of( field, nodata );
+
+        // Valid cells do not depend on what invalid vertices hold
+        double[] filled = z.clone( );
+        for ( int i = 0; i < filled.length; i++ )
+        {
+            filled[i] = Double.isNaN( filled[i] ) || filled[i] == nodata ? 0.0 : filled[i];
+        }
+        DoubleScalarField filledField = DoubleScalarField.regular( filled, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+
+        double[] isovalues = new double[] { -0.5, 0.0, 0.25 };
+        IsolineMap<Point> masked = MarchingSquares.computeIsoLines( field, mask, isovalues );
+        IsolineMap<Point> unmasked = MarchingSquares.computeIsoLines( filledField, isovalues );
+
+        for ( double isovalue : isovalues )
+        {
+            MarchingSquares reference = new MarchingSquares( filledField, isovalue );
+            reference.computeSegments( );
+            int expectedSegments = 0;
+            for ( int gridRow = 0; gridRow < rows - 1; gridRow++ )
+            {
+                for ( int gridCol = 0; gridCol < cols - 1; gridCol++ )
+                {
+                    if ( mask.isCellValid( gridRow, gridCol ) )
+                    {
+                        expectedSegments += MarchingSquares.segmentSides( reference.binary[gridRow][gridCol] ).length / 2;
+                    }
+                }
+            }
+
+            int actualSegments = 0;
+            for ( List<Point> isoline : masked.get( isovalue ).getIsolines( ) )
+            {
+                actualSegments += isoline.size( ) - 1;
+                for ( Point point : isoline )
+                {
+                    Assertions.assertTrue( Double.isFinite( point.getX( ) ) && Double.isFinite( point.getY( ) ) );
+                }
+            }
+
+            Set<String> maskedSegments = segments( masked.get( isovalue ) );
+            Assertions.assertTrue( expectedSegments > 0 );
+            Assertions.assertEquals( expectedSegments, actualSegments );
+            Assertions.assertEquals( expectedSegments, maskedSegments.size( ) );
+            Assertions.assertTrue( segments( unmasked.get( isovalue ) ).containsAll( maskedSegments ) );
+        }
+    }
+
+    @Test
+    public void testSinkAndFullMask( )
+    {
+        int rows = 33;
+        int cols = 130;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        ValidityMask mask = ValidityMask.of( field );
+        Assertions.assertEquals( ( rows - 1 ) * ( cols - 1 ), mask.getValidCellCount( ) );
+
+        double[] isovalues = new double[] { -0.2, 0.4 };
+        IsolineMap<Point> expected = MarchingSquares.computeIsoLines( field, isovalues );
+        TestScalarField.assertSameIsolines( expected, MarchingSquares.computeIsoLines( field, mask, isovalues ) );
+
+        for ( double isovalue : isovalues )
+        {
+            PackedIsolines.Builder builder = new PackedIsolines.Builder( isovalue, false );
+            MarchingSquares.computeIsoLines( field, mask, new double[] { isovalue }, builder );
+            PackedIsolineMap packed = new PackedIsolineMap( );
+            packed.put( isovalue, builder.build( ) );
+            IsolineMap<Point> single = new IsolineMap<>( );
+            single.put( isovalue, expected.get( isovalue ) );
+            TestPackedIsolines.assertSameIsolines( single, packed, false );
+        }
+
+        Assertions.assertThrows( IllegalArgumentException.class,
+                ( ) -> MarchingSquares.computeIsoLines( field, ValidityMask.of( DoubleScalarField.regular( new double[4], 2, 2, 0, 0, 1, 1 ) ), isovalues ) );
+    }
+
+    @Test
+    public void testRuns( )
+    {
+        int rows = 3;
+        int cols = 151;
+        double[] z = new double[rows * cols];
+        for ( int col : new int[] { 5, 63, 64, 65, 128 } )
+        {
+            z[cols + col] = Float.NaN;
+        }
+        FloatScalarField field = FloatScalarField.regular( TestIsolineSink.toFloats( z ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        ValidityMask mask = ValidityMask.of( field );
+
+        Assertions.assertFalse( mask.isValid( 1, 63 ) );
+        Assertions.assertTrue( mask.isValid( 1, 62 ) );
+        for ( int gridRow = 0; gridRow < 2; gridRow++ )
+        {
+            Assertions.assertEquals( 0, mask.nextValidCell( gridRow, 0 ) );
+            Assertions.assertEquals( 4, mask.nextInvalidCell( gridRow, 0 ) );
+            Assertions.assertEquals( 6, mask.nextValidCell( gridRow, 4 ) );
+            Assertions.assertEquals( 62, mask.nextInvalidCell( gridRow, 6 ) );
+            Assertions.assertEquals( 66, mask.nextValidCell( gridRow, 62 ) );
+            Assertions.assertEquals( 127, mask.nextInvalidCell( gridRow, 66 ) );
+            Assertions.assertEquals( 129, mask.nextValidCell( gridRow, 127 ) );
+            Assertions.assertEquals( 150, mask.nextInvalidCell( gridRow, 129 ) );
+            Assertions.assertEquals( 150, mask.nextValidCell( gridRow, 150 ) );
+        }
+        Assertions.assertEquals( 2 * ( 150 - 8 ), mask.getValidCellCount( ) );
+    }
+}
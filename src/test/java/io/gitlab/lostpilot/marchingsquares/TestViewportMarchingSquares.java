@@ -0,0 +1,290 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestViewportMarchingSquares
+{
+    /**
+     * Describes each isoline as a string, in the order they are passed.
+     */
+    static class DescribingSink implements IsolineSink
+    {
+        protected final List<String> isolines = new ArrayList<>( );
+        protected StringBuilder isoline;
+
+        @Override
+        public void beginIsoline( double isovalue, boolean closed )
+        {
+            isoline = new StringBuilder( isovalue + ( closed ? " closed:" : " open:" ) );
+        }
+
+        @Override
+        public void vertex( double x, double y )
+        {
+            isoline.append( ' ' ).append( x ).append( ',' ).append( y );
+        }
+
+        @Override
+        public void endIsoline( )
+        {
+            isolines.add( isoline.toString( ) );
+        }
+    }
+
+    static Set<String> segments( IsolineCollection<Point> isolines, double minX, double minY, double maxX, double maxY )
+    {
+        Set<String> segments = new HashSet<>( );
+        for ( Isoline<Point> isoline : isolines.getIsolines( ) )
+        {
+            for ( int i = 0; i + 1 < isoline.size( ); i++ )
+            {
+                Point a = isoline.get( i );
+                Point b = isoline.get( i + 1 );
+                if ( a.getX( ) >= minX && a.getX( ) <= maxX && a.getY( ) >= minY && a.getY( ) <= maxY
+                        && b.getX( ) >= minX && b.getX( ) <= maxX && b.getY( ) >= minY && b.getY( ) <= maxY )
+                {
+                    Assertions.assertTrue( segments.add( a.getX( ) + "," + a.getY( ) + ";" + b.getX( ) + "," + b.getY( ) ) );
+                }
+            }
+        }
+        return segments;
+    }
+
+    @Test
+    public void testWholeField( )
+    {
+        int rows = 60;
+        int cols = 45;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 1.0, 2.0, 0.5, 0.25 );
+        double[] isovalues = new double[] { -0.5, 0.0, 0.25, 0.8 };
+
+        IsolineMap<Point> expected = MarchingSquares.computeIsoLines( field, isovalues );
+        TestScalarField.assertSameIsolines( expected, new ViewportMarchingSquares( field ).computeIsoLines( 0, rows - 1, 0, cols - 1, isovalues ) );
+        TestScalarField.assertSameIsolines( expected,
+                new ViewportMarchingSquares( field, new MinMaxIndex( field, 8 ) ).computeIsoLines( 0, rows - 1, 0, cols - 1, isovalues ) );
+    }
+
+    @Test
+    public void testWindows( )
+    {
+        int rows = 80;
+        int cols = 67;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { -0.4, 0.1, 0.6 };
+        IsolineMap<Point> whole = MarchingSquares.computeIsoLines( field, isovalues );
+
+        ViewportMarchingSquares viewport = new ViewportMarchingSquares( field );
+        ViewportMarchingSquares indexed = new ViewportMarchingSquares( field, new MinMaxIndex( field, 4 ) );
+        int[][] windows = new int[][] { { 10, 30, 5, 40 }, { 0, 1, 0, 66 }, { 33, 79, 20, 21 }, { 41, 58, 17, 59 } };
+        for ( int[] window : windows )
+        {
+            IsolineMap<Point> isolines = viewport.computeIsoLines( window[0], window[1], window[2], window[3], isovalues );
+            TestScalarField.assertSameIsolines( isolines, indexed.computeIsoLines( window[0], window[1], window[2], window[3], isovalues ) );
+            for ( double isovalue : isovalues )
+            {
+                Assertions.assertEquals( segments( whole.get( isovalue ), window[2], window[0], window[3], window[1] ),
+                        segments( isolines.get( isovalue ), Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY ) );
+            }
+        }
+    }
+
+    @Test
+    public void testBox( )
+    {
+        int rows = 70;
+        int cols = 90;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, -10.0, 5.0, 0.5, 0.25 );
+        double[] isovalues = new double[] { -0.5, 0.0, 0.3 };
+        double minX = 3.3;
+        double minY = 9.1;
+        double maxX = 21.7;
+        double maxY = 17.45;
+
+        DescribingSink expected = new DescribingSink( );
+        MarchingSquares.computeIsoLines( field, isovalues, new ClippingSink( expected, minX, minY, maxX, maxY ) );
+        DescribingSink actual = new DescribingSink( );
+        new ViewportMarchingSquares( field, new MinMaxIndex( field ) ).computeIsoLinesInBox( minX, minY, maxX, maxY, isovalues, actual );
+        Assertions.assertFalse( expected.isolines.isEmpty( ) );
+        Collections.sort( expected.isolines );
+        Collections.sort( actual.isolines );
+        Assertions.assertEquals( expected.isolines, actual.isolines );
+
+        int onBorder = 0;
+        IsolineMap<Point> isolines = new ViewportMarchingSquares( field ).computeIsoLinesInBox( minX, minY, maxX, maxY, isovalues );
+        for ( double isovalue : isovalues )
+        {
+            for ( Isoline<Point> isoline : isolines.get( isovalue ).getIsolines( ) )
+            {
+                for ( Point point : isoline )
+                {
+                    Assertions.assertTrue( point.getX( ) >= minX && point.getX( ) <= maxX && point.getY( ) >= minY && point.getY( ) <= maxY );
+                    if ( point.getX( ) == minX || point.getX( ) == maxX || point.getY( ) == minY || point.getY( ) == maxY )
+                    {
+                        onBorder++;
+                    }
+                }
+            }
+        }
+        Assertions.assertTrue( onBorder > 0 );
+
+        // Outside of the field
+        Assertions.assertTrue( new ViewportMarchingSquares( field ).computeIsoLinesInBox( 100.0, 0.0, 200.0, 100.0, isovalues ).get( 0.0 ).isEmpty( ) );
+    }
+
+    @Test
+    public void testClippingSink( )
+    {
+        DescribingSink sink = new DescribingSink( );
+        ClippingSink clippingSink = new ClippingSink( sink, 1.0, -1.0, 3.0, 5.0 );
+
+        // Starts outside: two parts
+        clippingSink.beginIsoline( 0.0, true );
+        clippingSink.vertex( 0.0, 0.0 );
+        clippingSink.vertex( 4.0, 0.0 );
+        clippingSink.vertex( 4.0, 4.0 );
+        clippingSink.vertex( 0.0, 4.0 );
+        clippingSink.endIsoline( );
+        Assertions.assertEquals( List.of( "0.0 open: 1.0,0.0 3.0,0.0", "0.0 open: 3.0,4.0 1.0,4.0" ), sink.isolines );
+        sink.isolines.clear( );
+
+        // Starts inside: the first part is appended to the last one
+        clippingSink.beginIsoline( 1.0, true );
+        clippingSink.vertex( 2.0, 0.0 );
+        clippingSink.vertex( 4.0, 0.0 );
+        clippingSink.vertex( 4.0, 4.0 );
+        clippingSink.vertex( 0.0, 4.0 );
+        clippingSink.vertex( 0.0, 0.0 );
+        clippingSink.endIsoline( );
+        Assertions.assertEquals( List.of( "1.0 open: 3.0,4.0 1.0,4.0", "1.0 open: 1.0,0.0 2.0,0.0 3.0,0.0" ), sink.isolines );
+        sink.isolines.clear( );
+
+        // Inside: unchanged
+        clippingSink.beginIsoline( 2.0, true );
+        clippingSink.vertex( 1.5, 0.0 );
+        clippingSink.vertex( 2.5, 0.0 );
+        clippingSink.vertex( 2.5, 1.0 );
+        clippingSink.endIsoline( );
+        clippingSink.beginIsoline( 2.0, false );
+        clippingSink.vertex( 2.0, -3.0 );
+        clippingSink.vertex( 2.0, 0.0 );
+        clippingSink.vertex( 5.0, 0.0 );
+        clippingSink.endIsoline( );
+        Assertions.assertEquals( List.of( "2.0 closed: 1.5,0.0 2.5,0.0 2.5,1.0", "2.0 open: 2.0,-1.0 2.0,0.0 3.0,0.0" ), sink.isolines );
+    }
+
+    @Test
+    public void testClippingSinkBorderVertices( )
+    {
+        DescribingSink sink = new DescribingSink( );
+        ClippingSink clippingSink = new ClippingSink( sink, 0.0, 0.0, 1.0, 1.0 );
+
+        // Enters through a vertex on the border
+        clippingSink.beginIsoline( 0.0, false );
+        clippingSink.vertex( -1.0, 0.5 );
+        clippingSink.vertex( 0.0, 0.5 );
+        clippingSink.vertex( 0.5, 0.5 );
+        clippingSink.vertex( 2.0, 0.5 );
+        clippingSink.endIsoline( );
+        Assertions.assertEquals( List.of( "0.0 open: 0.0,0.5 0.5,0.5 1.0,0.5" ), sink.isolines );
+        sink.isolines.clear( );
+
+        // Starts on the border and comes back to it from outside: the held back first part is kept
+        clippingSink.beginIsoline( 1.0, true );
+        clippingSink.vertex( 0.0, 0.5 );
+        clippingSink.vertex( 0.5, 0.5 );
+        clippingSink.vertex( 0.5, 2.0 );
+        clippingSink.vertex( -1.0, 2.0 );
+        clippingSink.vertex( -1.0, 0.5 );
+        clippingSink.endIsoline( );
+        Assertions.assertEquals( List.of( "1.0 open: 0.0,0.5 0.5,0.5 0.5,1.0" ), sink.isolines );
+        sink.isolines.clear( );
+
+        // Leaves and enters again through the same vertex on the border
+        clippingSink.beginIsoline( 2.0, false );
+        clippingSink.vertex( 0.5, 0.5 );
+        clippingSink.vertex( 1.0, 0.5 );
+        clippingSink.vertex( 2.0, 0.5 );
+        clippingSink.vertex( 1.0, 0.5 );
+        clippingSink.vertex( 0.5, 0.25 );
+        clippingSink.endIsoline( );
+        Assertions.assertEquals( List.of( "2.0 open: 0.5,0.5 1.0,0.5", "2.0 open: 1.0,0.5 0.5,0.25" ), sink.isolines );
+        sink.isolines.clear( );
+
+        // Only touches the border
+        clippingSink.beginIsoline( 3.0, false );
+        clippingSink.vertex( -1.0, 0.5 );
+        clippingSink.vertex( 0.0, 0.5 );
+        clippingSink.vertex( -1.0, 0.0 );
+        clippingSink.endIsoline( );
+        Assertions.assertTrue( sink.isolines.isEmpty( ) );
+    }
+
+    @Test
+    public void testEmptyBox( )
+    {
+        int rows = 40;
+        int cols = 50;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { -0.3, 0.0, 0.4 };
+        ViewportMarchingSquares viewport = new ViewportMarchingSquares( field );
+
+        // Zero width on a vertex column, zero height on a vertex row, and a single point
+        double[][] boxes = new double[][] { { 12.0, 5.0, 12.0, 30.0 }, { 3.0, 17.0, 45.0, 17.0 }, { 49.0, 39.0, 49.0, 39.0 }, { 20.5, 0.0, 20.5, 39.0 } };
+        for ( double[] box : boxes )
+        {
+            IsolineMap<Point> isolines = viewport.computeIsoLinesInBox( box[0], box[1], box[2], box[3], isovalues );
+            for ( double isovalue : isovalues )
+            {
+                for ( Isoline<Point> isoline : isolines.get( isovalue ).getIsolines( ) )
+                {
+                    for ( Point point : isoline )
+                    {
+                        Assertions.assertTrue( point.getX( ) >= box[0] && point.getX( ) <= box[2] && point.getY( ) >= box[1] && point.getY( ) <= box[3] );
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIndexWindow( )
+    {
+        int rows = 100;
+        int cols = 130;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        MinMaxIndex index = new MinMaxIndex( field, 8 );
+
+        int[] all = index.findBlocks( 0.2 );
+        int[] window = index.findBlocks( 0.2, 20, 50, 70, 100 );
+        Assertions.assertTrue( window.length > 0 && window.length < all.length );
+        int expected = 0;
+        for ( int block : all )
+        {
+            if ( index.fromRow( block ) < 50 && index.toRow( block ) > 20 && index.fromCol( block ) < 100 && index.toCol( block ) > 70 )
+            {
+                Assertions.assertEquals( block, window[expected++] );
+            }
+        }
+        Assertions.assertEquals( expected, window.length );
+    }
+
+    @Test
+    public void testIllegalViewports( )
+    {
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( 10, 10 ), 10, 10, 0.0, 0.0, 1.0, 1.0 );
+        ViewportMarchingSquares viewport = new ViewportMarchingSquares( field );
+        double[] isovalues = new double[] { 0.0 };
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> viewport.computeIsoLines( 0, 10, 0, 5, isovalues ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> viewport.computeIsoLines( 3, 3, 0, 5, isovalues ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> viewport.computeIsoLinesInBox( 5.0, 0.0, 1.0, 5.0, isovalues ) );
+        DoubleScalarField other = DoubleScalarField.regular( TestScalarField.wavyValues( 11, 10 ), 11, 10, 0.0, 0.0, 1.0, 1.0 );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> new ViewportMarchingSquares( field, new MinMaxIndex( other ) ) );
+    }
+}
@@ -0,0 +1,65 @@
+package io.gitlab.lostpilot.marchingsquares;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestWorkspace
+{
+    @Test
+    public void testReuseAcrossFieldsAndIsovalues( )
+    {
+        int rows = 36;
+        int cols = 29;
+        double[] z = TestScalarField.wavyValues( rows, cols );
+        double[] shifted = new double[z.length];
+        for ( int i = 0; i < z.length; i++ )
+        {
+            shifted[i] = z[z.length - 1 - i] * 1.5;
+        }
+        DoubleScalarField first = DoubleScalarField.regular( z, rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        DoubleScalarField second = DoubleScalarField.regular( shifted, rows, cols, 3.0, -2.0, 0.5, 0.5 );
+        double[] isovalues = new double[] { 0.25, -0.5, 0.0, 0.8, 5.0 };
+
+        Workspace workspace = Workspace.of( first );
+        for ( int i = 0; i < 3; i++ )
+        {
+            for ( DoubleScalarField field : new DoubleScalarField[] { first, second } )
+            {
+                IsolineMap<Point> expected = MarchingSquares.computeIsoLines( field, isovalues );
+                TestScalarField.assertSameIsolines( expected, MarchingSquares.computeIsoLines( field, isovalues, workspace ) );
+                TestPackedIsolines.assertSameIsolines( expected, MarchingSquares.packedComputeIsoLines( field, isovalues, false, workspace ), false );
+                TestPackedIsolines.assertSameIsolines( expected, MarchingSquares.packedComputeIsoLines( field, isovalues, true, workspace ), true );
+            }
+            workspace.reset( );
+        }
+    }
+
+    @Test
+    public void testResetRecoversTracer( )
+    {
+        int rows = 12;
+        int cols = 15;
+        DoubleScalarField field = DoubleScalarField.regular( TestScalarField.wavyValues( rows, cols ), rows, cols, 0.0, 0.0, 1.0, 1.0 );
+        double[] isovalues = new double[] { 0.1 };
+
+        // Leave segments behind, as an interrupted call would
+        Workspace workspace = Workspace.of( field );
+        workspace.getTracer( ).addSegment( 0, 1 );
+        workspace.reset( );
+
+        Assertions.assertEquals( 0, workspace.getTracer( ).getSegmentCount( ) );
+        TestScalarField.assertSameIsolines( MarchingSquares.computeIsoLines( field, isovalues ),
+                MarchingSquares.computeIsoLines( field, isovalues, workspace ) );
+    }
+
+    @Test
+    public void testShapeMismatch( )
+    {
+        DoubleScalarField field = DoubleScalarField.regular( new double[12], 3, 4, 0, 0, 1, 1 );
+        Workspace workspace = new Workspace( 4, 3 );
+
+        Assertions.assertFalse( workspace.fits( field ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> MarchingSquares.computeIsoLines( field, new double[] { 0.5 }, workspace ) );
+        Assertions.assertThrows( IllegalArgumentException.class, ( ) -> new Workspace( 0, 3 ) );
+    }
+}